@@ -0,0 +1,411 @@
+package core;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The AlphaBetaStrategy class searches the game tree with iterative deepening alpha-beta.
+ * Each iteration searches one ply deeper until the budget runs out, and the move of the
+ * deepest completed iteration is played. Captures are searched before quiet moves,
+ * and a position that repeats along the searched line is scored as a draw.
+ * The principal variation of every completed iteration is kept and can be reported to a SearchListener.
+ * With a TranspositionTable, results are reused across transpositions, iterations and strategies sharing the table,
+ * and the stored best move is searched first.
+ * @author Samuel White
+ */
+public class AlphaBetaStrategy implements MoveStrategy {
+    public static final int WIN_SCORE = 100_000;
+    public static final int MAX_DEPTH = 64;
+    public static final int DRAW_SCORE = 0;
+
+    private final Evaluator evaluator;
+    private final int[] rootMoves = new int[Position.MAX_MOVES];
+    private final MoveCursor[] cursors = new MoveCursor[MAX_DEPTH + 1];
+    private final HashHistory history = new HashHistory(MAX_DEPTH + 2);
+    private final int[][] pvTable = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+    private final int[] pvLength = new int[MAX_DEPTH + 1];
+    private final int[] scratchMoves = new int[Position.MAX_MOVES];
+    private TranspositionTable table;
+    private int[] principalVariation = new int[0];
+    private SearchListener listener;
+    private SearchBudget budget;
+    private int lastScore;
+    private int lastDepth;
+
+    /**
+     * Constructs an AlphaBetaStrategy using the material evaluation.
+     */
+    public AlphaBetaStrategy() {
+        this(new MaterialEvaluator());
+    }
+
+    /**
+     * Constructs an AlphaBetaStrategy using the given evaluation.
+     *
+     * @param evaluator The evaluator used to score leaf positions.
+     */
+    public AlphaBetaStrategy(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+            this.cursors[ply] = new MoveCursor();
+        }
+    }
+
+    /**
+     * Checks if a search score is a forced win or loss rather than an evaluation.
+     *
+     * @param score The score.
+     * @return true if the score is within MAX_DEPTH plies of WIN_SCORE or -WIN_SCORE.
+     */
+    public static boolean isWinScore(int score) {
+        return WIN_SCORE - Math.abs(score) <= MAX_DEPTH;
+    }
+
+    /**
+     * Converts a win or loss score into the number of moves of the player to move until the game is decided.
+     *
+     * @param score The score, for which isWinScore is true.
+     * @return The moves until the player to move wins, or minus the moves until it loses.
+     */
+    public static int movesToWin(int score) {
+        int moves = (WIN_SCORE - Math.abs(score) + 1) / 2;
+        return score > 0 ? moves : -moves;
+    }
+
+    /**
+     * Selects the best move found within the budget.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    @Override
+    public int selectMove(Position position, SearchBudget budget) {
+        int[] rootMoves = this.rootMoves;
+        int count = startSearch(position, budget, rootMoves);
+        if (count == 0) {
+            return Moves.NONE;
+        }
+        int bestMove = rootMoves[0];
+        this.lastScore = 0;
+        this.lastDepth = 0;
+        this.principalVariation = new int[] {bestMove};
+
+        int[] lineMoves = new int[1];
+        int[] lineScores = new int[1];
+        int[][] linePvs = new int[1][];
+        int maxDepth = Math.min(MAX_DEPTH, budget.getLimits().getMaxDepth());
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (iterate(position, rootMoves, count, depth, 1, lineMoves, lineScores, linePvs) == 0) {
+                break;
+            }
+            bestMove = lineMoves[0];
+            this.lastScore = lineScores[0];
+            this.lastDepth = depth;
+            this.principalVariation = linePvs[0];
+            if (this.listener != null) {
+                this.listener.iterationCompleted(depth, lineScores[0], budget.getNodes(), budget.getElapsedMillis(), linePvs[0].clone());
+            }
+            if (isWinScore(lineScores[0])) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Finds the best few moves of a position with their scores and expected lines of play (multi-PV).
+     * Every iteration ranks the root moves and reports the best ones to the listener as soon as it completes,
+     * so a long analysis shows its progress. Only the listed moves get exact scores; the other moves are only
+     * proven to be worse than the last listed one.
+     *
+     * @param position The position to analyze.
+     * @param budget The budget limiting the analysis.
+     * @param lines The number of moves to rank.
+     * @param listener The listener told about every completed iteration, or null.
+     * @return The ranked lines of the deepest completed iteration, empty if the player has no legal move.
+     */
+    public List<AnalysisLine> analyze(Position position, SearchBudget budget, int lines, AnalysisListener listener) {
+        int[] rootMoves = this.rootMoves;
+        int count = startSearch(position, budget, rootMoves);
+        int wanted = Math.min(lines, count);
+        int[] lineMoves = new int[wanted];
+        int[] lineScores = new int[wanted];
+        int[][] linePvs = new int[wanted][];
+        List<AnalysisLine> result = Collections.emptyList();
+        int maxDepth = Math.min(MAX_DEPTH, budget.getLimits().getMaxDepth());
+        for (int depth = 1; depth <= maxDepth && wanted > 0; depth++) {
+            int found = iterate(position, rootMoves, count, depth, wanted, lineMoves, lineScores, linePvs);
+            if (found == 0) {
+                break;
+            }
+            List<AnalysisLine> ranked = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                ranked.add(new AnalysisLine(depth, lineScores[i], linePvs[i]));
+            }
+            result = Collections.unmodifiableList(ranked);
+            this.lastScore = lineScores[0];
+            this.lastDepth = depth;
+            this.principalVariation = linePvs[0];
+            if (listener != null) {
+                listener.depthCompleted(depth, result, budget.getNodes(), budget.getElapsedMillis());
+            }
+            if (isWinScore(lineScores[found - 1])) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Shares a transposition table with this strategy, e.g. one table between several strategies on different threads.
+     *
+     * @param table The table, or null to search without one.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    private int startSearch(Position position, SearchBudget budget, int[] rootMoves) {
+        this.budget = budget;
+        this.history.clear();
+        this.history.push(position.hash(), true);
+        this.evaluator.reset(position);
+        return orderMoves(rootMoves, position.generateMoves(rootMoves), Moves.NONE);
+    }
+
+    /**
+     * Searches every root move to the given depth and ranks the best ones. A move is searched with a window just
+     * above the score of the last of the wanted lines, so only moves that make the list get exact scores.
+     * The ranked moves are moved to the front of rootMoves, in rank order, for the next iteration.
+     * Returns the number of ranked lines, or 0 if the budget ran out before the iteration completed.
+     */
+    private int iterate(Position position, int[] rootMoves, int count, int depth, int lines,
+                        int[] lineMoves, int[] lineScores, int[][] linePvs) {
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int alpha = found < lines ? -WIN_SCORE - 1 : lineScores[lines - 1];
+            int score = -child(position, rootMoves[i], depth - 1, -WIN_SCORE - 1, -alpha, 1);
+            if (this.budget.isExhausted()) {
+                return 0;
+            }
+            if (score > alpha) {
+                int rank = found < lines ? found++ : lines - 1;
+                while (rank > 0 && lineScores[rank - 1] < score) {
+                    lineMoves[rank] = lineMoves[rank - 1];
+                    lineScores[rank] = lineScores[rank - 1];
+                    linePvs[rank] = linePvs[rank - 1];
+                    rank--;
+                }
+                int[] line = new int[this.pvLength[1]];
+                line[0] = rootMoves[i];
+                System.arraycopy(this.pvTable[1], 1, line, 1, this.pvLength[1] - 1);
+                lineMoves[rank] = rootMoves[i];
+                lineScores[rank] = score;
+                linePvs[rank] = line;
+            }
+        }
+        if (found == 0) {
+            return 0;
+        }
+
+        int next = 0;
+        for (int rank = 0; rank < found; rank++) {
+            for (int i = next; i < count; i++) {
+                if (rootMoves[i] == lineMoves[rank]) {
+                    System.arraycopy(rootMoves, next, rootMoves, next + 1, i - next);
+                    rootMoves[next++] = lineMoves[rank];
+                    break;
+                }
+            }
+        }
+        if (this.table != null) {
+            for (int rank = 0; rank < found; rank++) {
+                linePvs[rank] = extendFromTable(position, linePvs[rank], depth);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Continues a line with the best moves stored in the transposition table, where a cutoff on a stored
+     * result ended it early, up to the given length.
+     */
+    private int[] extendFromTable(Position position, int[] line, int length) {
+        Position current = position;
+        for (int move : line) {
+            current = current.play(move);
+        }
+        int[] extended = line;
+        while (extended.length < length) {
+            long entry = this.table.probe(current.canonicalHash());
+            int move = Symmetry.fromCanonical(current, TranspositionTable.move(entry));
+            if (entry == 0 || move == Moves.NONE || !isLegal(current, move)) {
+                break;
+            }
+            extended = Arrays.copyOf(extended, extended.length + 1);
+            extended[extended.length - 1] = move;
+            current = current.play(move);
+        }
+        return extended;
+    }
+
+    private boolean isLegal(Position position, int move) {
+        int count = position.generateMoves(this.scratchMoves);
+        for (int i = 0; i < count; i++) {
+            if (this.scratchMoves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the score of the last completed iteration, from the point of view of the player who moved.
+     *
+     * @return The score of the last selected move.
+     */
+    public int getLastScore() {
+        return this.lastScore;
+    }
+
+    /**
+     * Retrieves the depth of the last completed iteration.
+     *
+     * @return The search depth in plies.
+     */
+    public int getLastDepth() {
+        return this.lastDepth;
+    }
+
+    /**
+     * Retrieves the expected line of play found by the last completed iteration.
+     *
+     * @return The packed moves of the line, starting with the selected move.
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation.clone();
+    }
+
+    /**
+     * Sets the listener told about every completed iteration.
+     *
+     * @param listener The listener, or null to stop reporting.
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    private int child(Position position, int move, int depth, int alpha, int beta, int ply) {
+        Position next = position.play(move);
+        this.history.push(next.hash(), Moves.isIrreversible(move));
+        this.evaluator.push(position, move);
+        int score = search(next, depth, alpha, beta, ply);
+        this.evaluator.pop();
+        this.history.pop();
+        return score;
+    }
+
+    private int search(Position position, int depth, int alpha, int beta, int ply) {
+        this.pvLength[ply] = ply;
+        if (!this.budget.visit()) {
+            return 0;
+        }
+        if (this.history.countRepetitions() > 0) {
+            return DRAW_SCORE;
+        }
+        if (!position.hasMoves()) {
+            return -WIN_SCORE + ply;
+        }
+        if (depth == 0 || ply == MAX_DEPTH) {
+            return this.evaluator.evaluate(position);
+        }
+        int tableMove = Moves.NONE;
+        if (this.table != null) {
+            long entry = this.table.probe(position.canonicalHash());
+            if (entry != 0) {
+                tableMove = Symmetry.fromCanonical(position, TranspositionTable.move(entry));
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+        }
+        // moves are generated as they are searched, so a cutoff skips generating the rest
+        MoveCursor moves = this.cursors[ply].reset(position, tableMove);
+        int originalAlpha = alpha;
+        int bestMove = Moves.NONE;
+        for (int move = moves.next(); move != Moves.NONE; move = moves.next()) {
+            int score = -child(position, move, depth - 1, -beta, -alpha, ply + 1);
+            if (score >= beta) {
+                store(position, depth, TranspositionTable.LOWER_BOUND, score, move, ply);
+                return score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                this.pvTable[ply][ply] = move;
+                System.arraycopy(this.pvTable[ply + 1], ply + 1, this.pvTable[ply], ply + 1, this.pvLength[ply + 1] - ply - 1);
+                this.pvLength[ply] = this.pvLength[ply + 1];
+            }
+        }
+        if (alpha > originalAlpha) {
+            store(position, depth, TranspositionTable.EXACT, alpha, bestMove, ply);
+        } else {
+            store(position, depth, TranspositionTable.UPPER_BOUND, alpha, tableMove, ply);
+        }
+        return alpha;
+    }
+
+    /**
+     * Stores a search result unless the search was stopped, in which case the result may be wrong.
+     * Win scores are stored relative to the position, so they stay right wherever the position is reached.
+     * The entry is shared with the position's flipped twin, see Symmetry, so the move is stored canonical.
+     */
+    private void store(Position position, int depth, int bound, int score, int move, int ply) {
+        if (this.table == null || this.budget.isStopped()) {
+            return;
+        }
+        if (isWinScore(score)) {
+            score += score > 0 ? ply : -ply;
+        }
+        this.table.store(position.canonicalHash(), depth, bound, score, Symmetry.toCanonical(position, move));
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (isWinScore(score)) {
+            return score > 0 ? score - ply : score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Moves captures to the front, and then the given move, e.g. the best move stored in the transposition table, to the very front.
+     */
+    private int orderMoves(int[] moves, int count, int first) {
+        int captures = 0;
+        for (int i = 0; i < count; i++) {
+            if (Moves.isCapture(moves[i])) {
+                int move = moves[i];
+                moves[i] = moves[captures];
+                moves[captures++] = move;
+            }
+        }
+        if (first != Moves.NONE) {
+            for (int i = 0; i < count; i++) {
+                if (moves[i] == first) {
+                    System.arraycopy(moves, 0, moves, 1, i);
+                    moves[0] = first;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
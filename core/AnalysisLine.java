@@ -0,0 +1,75 @@
+package core;
+
+/**
+ * The AnalysisLine class is one ranked move of a multi-PV analysis: the move, its score and the expected line of play.
+ * @author Samuel White
+ */
+public final class AnalysisLine {
+    private final int depth;
+    private final int score;
+    private final int[] principalVariation;
+
+    /**
+     * Constructs an AnalysisLine.
+     *
+     * @param depth The depth the line was searched to in plies.
+     * @param score The score, from the point of view of the player to move.
+     * @param principalVariation The expected line of play, starting with the move.
+     */
+    public AnalysisLine(int depth, int score, int[] principalVariation) {
+        this.depth = depth;
+        this.score = score;
+        this.principalVariation = principalVariation.clone();
+    }
+
+    /**
+     * Retrieves the move of this line.
+     *
+     * @return The packed move.
+     */
+    public int getMove() {
+        return this.principalVariation[0];
+    }
+
+    /**
+     * Retrieves the depth the line was searched to.
+     *
+     * @return The depth in plies.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Retrieves the score of the move.
+     *
+     * @return The score, from the point of view of the player to move.
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Retrieves the expected line of play.
+     *
+     * @return A copy of the packed moves, starting with the move of this line.
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation.clone();
+    }
+
+    /**
+     * Converts the line into text, e.g. "3a-4b 60 3a-4b 6b-5a".
+     *
+     * @return The move, the score and the line of play in notation.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(Moves.toNotation(getMove())).append(' ').append(this.score);
+        for (int move : this.principalVariation) {
+            builder.append(' ').append(Moves.toNotation(move));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package core;
+import java.util.List;
+
+/**
+ * The AnalysisListener interface receives the ranked lines of a multi-PV analysis as every iteration completes.
+ * It is called on the thread running the analysis, so implementations should return quickly.
+ * @author Samuel White
+ */
+public interface AnalysisListener {
+
+    /**
+     * Receives the result of a completed iteration.
+     *
+     * @param depth The depth of the iteration in plies.
+     * @param lines The best moves found, best first.
+     * @param nodes The number of positions visited so far.
+     * @param elapsedMillis The time spent so far in milliseconds.
+     */
+    void depthCompleted(int depth, List<AnalysisLine> lines, long nodes, long elapsedMillis);
+}
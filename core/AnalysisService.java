@@ -0,0 +1,170 @@
+package core;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The AnalysisService class runs many multi-PV analyses at once on a shared pool of threads.
+ * Every pool thread keeps its own AlphaBetaStrategy, and all of them share one TranspositionTable, so the
+ * lines of one analysis and analyses of related positions reuse each other's results.
+ * A request streams its ranked lines to its listener as every iteration completes and can be cancelled on its own;
+ * its time limit only starts counting when a thread picks it up.
+ * @author Samuel White
+ */
+public class AnalysisService implements AutoCloseable {
+    private final ExecutorService pool;
+    private final TranspositionTable table;
+    private final ThreadLocal<AlphaBetaStrategy> strategies;
+    private final Set<Request> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * One submitted analysis.
+     */
+    public static class Request {
+        private final Position position;
+        private final int lines;
+        private final SearchLimits limits;
+        private final AnalysisListener listener;
+        private final CompletableFuture<List<AnalysisLine>> result = new CompletableFuture<>();
+        private SearchBudget budget;
+        private boolean cancelled;
+
+        private Request(Position position, int lines, SearchLimits limits, AnalysisListener listener) {
+            this.position = position;
+            this.lines = lines;
+            this.limits = limits;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops the analysis. Its result is the deepest iteration completed before it stopped.
+         */
+        public synchronized void cancel() {
+            this.cancelled = true;
+            if (this.budget != null) {
+                this.budget.stop();
+            }
+        }
+
+        /**
+         * Checks if the analysis was cancelled.
+         *
+         * @return true if cancel was called, false otherwise.
+         */
+        public synchronized boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        /**
+         * Retrieves the analyzed position.
+         *
+         * @return The position.
+         */
+        public Position getPosition() {
+            return this.position;
+        }
+
+        /**
+         * Retrieves the result, completed when the analysis ends.
+         *
+         * @return A future for the ranked lines of the deepest completed iteration.
+         */
+        public CompletableFuture<List<AnalysisLine>> getResult() {
+            return this.result;
+        }
+
+        private void run(AlphaBetaStrategy strategy) {
+            SearchBudget budget;
+            synchronized (this) {
+                if (this.cancelled) {
+                    this.result.complete(Collections.emptyList());
+                    return;
+                }
+                budget = new SearchBudget(this.limits);
+                this.budget = budget;
+            }
+            try {
+                this.result.complete(strategy.analyze(this.position, budget, this.lines, this.listener));
+            } catch (RuntimeException e) {
+                this.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Constructs an AnalysisService evaluating with the material evaluation.
+     *
+     * @param threads The number of analyses run at the same time.
+     * @param tableBytes The size of the shared transposition table in bytes.
+     */
+    public AnalysisService(int threads, long tableBytes) {
+        this(threads, tableBytes, MaterialEvaluator::new);
+    }
+
+    /**
+     * Constructs an AnalysisService.
+     *
+     * @param threads The number of analyses run at the same time.
+     * @param tableBytes The size of the shared transposition table in bytes.
+     * @param evaluators Creates the evaluator of every pool thread.
+     */
+    public AnalysisService(int threads, long tableBytes, Supplier<Evaluator> evaluators) {
+        this.table = new TranspositionTable(tableBytes);
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "analysis-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.strategies = ThreadLocal.withInitial(() -> {
+            AlphaBetaStrategy strategy = new AlphaBetaStrategy(evaluators.get());
+            strategy.setTranspositionTable(this.table);
+            return strategy;
+        });
+    }
+
+    /**
+     * Queues an analysis.
+     *
+     * @param position The position to analyze.
+     * @param lines The number of moves to rank.
+     * @param limits The limits of the analysis, which start counting when it starts running.
+     * @param listener The listener told about every completed iteration, or null.
+     * @return The request, to cancel it or wait for its result.
+     */
+    public Request submit(Position position, int lines, SearchLimits limits, AnalysisListener listener) {
+        if (lines <= 0) {
+            throw new IllegalArgumentException("The number of lines must be positive.");
+        }
+        Request request = new Request(position, lines, limits, listener);
+        this.running.add(request);
+        request.result.whenComplete((result, error) -> this.running.remove(request));
+        this.pool.execute(() -> request.run(this.strategies.get()));
+        return request;
+    }
+
+    /**
+     * Forgets every stored search result, e.g. before analyzing unrelated games.
+     * Only call this while no analysis is running.
+     */
+    public void clearTable() {
+        this.table.clear();
+    }
+
+    /**
+     * Cancels every queued and running analysis and stops the pool threads.
+     */
+    @Override
+    public void close() {
+        for (Request request : this.running) {
+            request.cancel();
+        }
+        this.pool.shutdown();
+    }
+}
@@ -0,0 +1,158 @@
+package core;
+
+/**
+ * The BatchEvaluator class computes legal move counts, capture flags and static evaluations for a whole PositionBatch.
+ * The kernel works on all pieces of a position at once with shifted bitboards and population counts,
+ * so it does no per-square loop, no allocation per position and no branching on the board contents.
+ * {@link #evaluateScalar} produces the same results one Position at a time through the regular engine code.
+ * Scores match a MaterialEvaluator with the same weights and move counts match Position.generateMoves.
+ * @author Samuel White
+ */
+public final class BatchEvaluator {
+    private static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+    private static final long FIRST_ROW = 0xFFL;
+
+    private BatchEvaluator() {
+    }
+
+    /**
+     * Evaluates every position of a batch with the bitboard kernel.
+     *
+     * @param batch The positions to evaluate.
+     * @param weights The evaluation weights the scores use.
+     * @param moveCounts Receives the number of legal moves of the player to move, or null.
+     * @param captures Receives whether the player to move can capture, or null.
+     * @param scores Receives the static evaluation from the point of view of the player to move, or null.
+     */
+    public static void evaluate(PositionBatch batch, EvaluationWeights weights, int[] moveCounts, boolean[] captures, int[] scores) {
+        long[] xs = batch.xPieces;
+        long[] os = batch.oPieces;
+        boolean[] xToMove = batch.xToMove;
+        int size = batch.size;
+
+        if (scores != null) {
+            int pieceValue = weights.getPieceValue();
+            // a piece on row r has advanced 7 - r rows if it is 'x' and r rows if it is 'o'
+            int[] xAdvance = new int[EvaluationWeights.ROWS];
+            int[] oAdvance = new int[EvaluationWeights.ROWS];
+            for (int row = 0; row < EvaluationWeights.ROWS; row++) {
+                xAdvance[row] = weights.getAdvanceValue(7 - row);
+                oAdvance[row] = weights.getAdvanceValue(row);
+            }
+            for (int i = 0; i < size; i++) {
+                long x = xs[i];
+                long o = os[i];
+                int score = pieceValue * (Long.bitCount(x) - Long.bitCount(o));
+                for (int row = 0; row < EvaluationWeights.ROWS; row++) {
+                    long mask = FIRST_ROW << (row << 3);
+                    score += xAdvance[row] * Long.bitCount(x & mask) - oAdvance[row] * Long.bitCount(o & mask);
+                }
+                scores[i] = xToMove[i] ? score : -score;
+            }
+        }
+
+        if (moveCounts == null && captures == null) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            long x = xs[i];
+            long o = os[i];
+            long empty = ~(x | o);
+            int count;
+            long landings;
+            if (xToMove[i]) {
+                long rightLandings = xRight(xRight(x) & o) & empty;
+                long leftLandings = xLeft(xLeft(x) & o) & empty;
+                long canJumpBoth = xJumpSources(true, o, empty) & xJumpSources(false, o, empty);
+                count = Long.bitCount(xRight(x) & empty) + Long.bitCount(xLeft(x) & empty)
+                        + Long.bitCount(rightLandings) + Long.bitCount(rightLandings & canJumpBoth)
+                        + Long.bitCount(leftLandings) + Long.bitCount(leftLandings & canJumpBoth);
+                landings = rightLandings | leftLandings;
+            } else {
+                long rightLandings = oRight(oRight(o) & x) & empty;
+                long leftLandings = oLeft(oLeft(o) & x) & empty;
+                long canJumpBoth = oJumpSources(true, x, empty) & oJumpSources(false, x, empty);
+                count = Long.bitCount(oRight(o) & empty) + Long.bitCount(oLeft(o) & empty)
+                        + Long.bitCount(rightLandings) + Long.bitCount(rightLandings & canJumpBoth)
+                        + Long.bitCount(leftLandings) + Long.bitCount(leftLandings & canJumpBoth);
+                landings = rightLandings | leftLandings;
+            }
+            if (moveCounts != null) {
+                moveCounts[i] = count;
+            }
+            if (captures != null) {
+                captures[i] = landings != 0;
+            }
+        }
+    }
+
+    /**
+     * Evaluates every position of a batch one Position at a time. This is the reference the kernel is checked against.
+     *
+     * @param batch The positions to evaluate.
+     * @param weights The evaluation weights the scores use.
+     * @param moveCounts Receives the number of legal moves of the player to move, or null.
+     * @param captures Receives whether the player to move can capture, or null.
+     * @param scores Receives the static evaluation from the point of view of the player to move, or null.
+     */
+    public static void evaluateScalar(PositionBatch batch, EvaluationWeights weights, int[] moveCounts, boolean[] captures, int[] scores) {
+        Evaluator evaluator = new MaterialEvaluator(weights);
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int i = 0; i < batch.size; i++) {
+            Position position = batch.get(i);
+            int count = position.generateMoves(moves);
+            if (moveCounts != null) {
+                moveCounts[i] = count;
+            }
+            if (captures != null) {
+                boolean capture = false;
+                for (int m = 0; m < count && !capture; m++) {
+                    capture = Moves.isCapture(moves[m]);
+                }
+                captures[i] = capture;
+            }
+            if (scores != null) {
+                scores[i] = evaluator.evaluate(position);
+            }
+        }
+    }
+
+    // 'x' moves towards row 0: right is square - 7, left is square - 9
+    private static long xRight(long pieces) {
+        return (pieces & NOT_H_FILE) >>> 7;
+    }
+
+    private static long xLeft(long pieces) {
+        return (pieces & NOT_A_FILE) >>> 9;
+    }
+
+    // 'o' moves towards row 7: right is square + 9, left is square + 7
+    private static long oRight(long pieces) {
+        return (pieces & NOT_H_FILE) << 9;
+    }
+
+    private static long oLeft(long pieces) {
+        return (pieces & NOT_A_FILE) << 7;
+    }
+
+    /**
+     * Retrieves every square from which an 'x' piece could jump in one direction.
+     */
+    private static long xJumpSources(boolean right, long enemy, long empty) {
+        if (right) {
+            return ((((empty << 7) & NOT_H_FILE) & enemy) << 7) & NOT_H_FILE;
+        }
+        return ((((empty << 9) & NOT_A_FILE) & enemy) << 9) & NOT_A_FILE;
+    }
+
+    /**
+     * Retrieves every square from which an 'o' piece could jump in one direction.
+     */
+    private static long oJumpSources(boolean right, long enemy, long empty) {
+        if (right) {
+            return ((((empty >>> 9) & NOT_H_FILE) & enemy) >>> 9) & NOT_H_FILE;
+        }
+        return ((((empty >>> 7) & NOT_A_FILE) & enemy) >>> 7) & NOT_A_FILE;
+    }
+}
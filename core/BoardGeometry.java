@@ -0,0 +1,271 @@
+package core;
+import java.util.Random;
+
+/**
+ * The BoardGeometry class describes a square board of any even size: its playable dark squares, where the men
+ * start, which squares a man steps and jumps to, the Zobrist keys of the squares and the square notation.
+ * The playable squares are numbered densely row by row from the top, size / 2 per row, so an 8x8 board has 32,
+ * a 10x10 board 50 and a 12x12 board 72. Boards of up to 64 playable squares keep each side's pieces in one
+ * long; larger ones, up to 16x16, use a pair of longs, see VariantPosition.
+ * The 8x8 board played by CheckersLogic and Position is STANDARD; its engine numbers squares row * 8 + column
+ * instead, see Moves.
+ * Squares are named by row, counted from the bottom starting at 1, and column letter, e.g. "3a" or "10b".
+ * @author Samuel White
+ */
+public final class BoardGeometry {
+    public static final int MIN_SIZE = 6;
+    public static final int MAX_SIZE = 16;
+
+    static final int RIGHT = 0;
+    static final int LEFT = 1;
+
+    private static final BoardGeometry[] SIZES = new BoardGeometry[MAX_SIZE + 1];
+
+    public static final BoardGeometry STANDARD = of(8);
+
+    private final int size;
+    private final int squares;
+    private final int menPerSide;
+    // [side][direction][index] -> target index or -1, side 0 is 'x' moving up, side 1 is 'o' moving down
+    final int[][][] step;
+    final int[][][] jump;
+    private final long[][] pieceKeys;
+    private final long sideKey;
+
+    private BoardGeometry(int size) {
+        this.size = size;
+        this.squares = size * size / 2;
+        this.menPerSide = (size / 2 - 1) * (size / 2);
+        this.step = new int[2][2][this.squares];
+        this.jump = new int[2][2][this.squares];
+        for (int side = 0; side < 2; side++) {
+            int direction = side == 0 ? -1 : 1;
+            for (int index = 0; index < this.squares; index++) {
+                int row = row(index);
+                int column = column(index);
+                this.step[side][RIGHT][index] = index(row + direction, column + 1);
+                this.step[side][LEFT][index] = index(row + direction, column - 1);
+                this.jump[side][RIGHT][index] = index(row + 2 * direction, column + 2);
+                this.jump[side][LEFT][index] = index(row + 2 * direction, column - 2);
+            }
+        }
+        Random random = new Random(0x5EED_C0DEL ^ size);
+        this.pieceKeys = new long[2][this.squares];
+        for (int color = 0; color < 2; color++) {
+            for (int index = 0; index < this.squares; index++) {
+                this.pieceKeys[color][index] = random.nextLong();
+            }
+        }
+        this.sideKey = random.nextLong();
+    }
+
+    /**
+     * Retrieves the geometry of a board size.
+     *
+     * @param size The number of rows and columns, even and between MIN_SIZE and MAX_SIZE.
+     * @return The shared geometry of that size.
+     * @throws IllegalArgumentException If the size is not supported.
+     */
+    public static synchronized BoardGeometry of(int size) throws IllegalArgumentException {
+        if (size < MIN_SIZE || size > MAX_SIZE || size % 2 != 0) {
+            throw new IllegalArgumentException("Unsupported board size: " + size);
+        }
+        if (SIZES[size] == null) {
+            SIZES[size] = new BoardGeometry(size);
+        }
+        return SIZES[size];
+    }
+
+    /**
+     * Retrieves the number of rows and columns.
+     *
+     * @return The board size.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the number of playable squares.
+     *
+     * @return The number of dark squares.
+     */
+    public int getSquareCount() {
+        return this.squares;
+    }
+
+    /**
+     * Retrieves the number of men each side starts with, filling every row but the two middle ones.
+     *
+     * @return The starting piece count of one side.
+     */
+    public int getMenPerSide() {
+        return this.menPerSide;
+    }
+
+    /**
+     * Retrieves the most moves a position on this board can have: every man stepping or jumping either way,
+     * with a jump continuing either way.
+     *
+     * @return The size a move array must have.
+     */
+    public int getMaxMoves() {
+        return 4 * this.menPerSide;
+    }
+
+    /**
+     * Checks if the pieces of one side need a pair of longs instead of one.
+     *
+     * @return true if there are more than 64 playable squares, false otherwise.
+     */
+    public boolean isWide() {
+        return this.squares > 64;
+    }
+
+    /**
+     * Checks if a row and column are on the board.
+     *
+     * @param row The row index from the top.
+     * @param column The column index from the left.
+     * @return true if both are within the board, false otherwise.
+     */
+    public boolean withinBoard(int row, int column) {
+        return row >= 0 && row < this.size && column >= 0 && column < this.size;
+    }
+
+    /**
+     * Checks if a square is a dark square pieces are played on.
+     *
+     * @param row The row index from the top.
+     * @param column The column index from the left.
+     * @return true if the square is on the board and playable, false otherwise.
+     */
+    public boolean isPlayable(int row, int column) {
+        return withinBoard(row, column) && (row + column) % 2 == 1;
+    }
+
+    /**
+     * Converts a row and column into a playable square index.
+     *
+     * @param row The row index from the top.
+     * @param column The column index from the left.
+     * @return The square index, or -1 if the square is not playable.
+     */
+    public int index(int row, int column) {
+        return isPlayable(row, column) ? row * (this.size / 2) + column / 2 : -1;
+    }
+
+    /**
+     * Retrieves the row of a playable square.
+     *
+     * @param index The square index.
+     * @return The row index from the top.
+     */
+    public int row(int index) {
+        return index / (this.size / 2);
+    }
+
+    /**
+     * Retrieves the column of a playable square.
+     *
+     * @param index The square index.
+     * @return The column index from the left.
+     */
+    public int column(int index) {
+        int row = row(index);
+        return 2 * (index - row * (this.size / 2)) + (row % 2 == 0 ? 1 : 0);
+    }
+
+    /**
+     * Retrieves the Zobrist key of a piece on a square.
+     *
+     * @param icon The icon of the piece, 'x' or 'o'.
+     * @param index The square index.
+     * @return The key to XOR into the hash.
+     */
+    public long pieceKey(char icon, int index) {
+        return this.pieceKeys[icon == 'x' ? 0 : 1][index];
+    }
+
+    /**
+     * Retrieves the Zobrist key of the side to move.
+     *
+     * @param sideToMove The icon of the player to move.
+     * @return The key to XOR into the hash, zero when 'x' is to move.
+     */
+    public long sideKey(char sideToMove) {
+        return sideToMove == 'o' ? this.sideKey : 0L;
+    }
+
+    /**
+     * Names a square, e.g. "3a" or "10b".
+     *
+     * @param row The row index from the top.
+     * @param column The column index from the left.
+     * @return The square name.
+     */
+    public String squareName(int row, int column) {
+        return "" + (this.size - row) + (char) ('a' + column);
+    }
+
+    /**
+     * Parses a square name written by squareName.
+     *
+     * @param name The square name.
+     * @return The {row, column} indices, or null if the name is not a square of this board.
+     */
+    public int[] parseSquare(String name) {
+        int split = 0;
+        while (split < name.length() && Character.isDigit(name.charAt(split))) {
+            split++;
+        }
+        if (split == 0 || split > 2 || split != name.length() - 1) {
+            return null;
+        }
+        int row = this.size - Integer.parseInt(name.substring(0, split));
+        int column = name.charAt(split) - 'a';
+        return withinBoard(row, column) ? new int[] {row, column} : null;
+    }
+
+    /**
+     * Writes a packed variant move in notation, e.g. "4b-5c" or "7a-5c-3e" for a double jump.
+     *
+     * @param move The packed move, see VariantPosition.encode.
+     * @return The move in notation.
+     */
+    public String toNotation(int move) {
+        int from = VariantPosition.from(move);
+        int to = VariantPosition.to(move);
+        int second = VariantPosition.second(move);
+        String text = squareName(row(from), column(from)) + "-" + squareName(row(to), column(to));
+        return second < 0 ? text : text + "-" + squareName(row(second), column(second));
+    }
+
+    /**
+     * Parses a move written by toNotation. Only the squares are checked, not whether the move is legal.
+     *
+     * @param text The move in notation.
+     * @return The packed move, or Moves.NONE if the text does not name playable squares of this board.
+     */
+    public int parseMove(String text) {
+        String[] names = text.trim().split("-");
+        if (names.length < 2 || names.length > 3) {
+            return Moves.NONE;
+        }
+        int[] indices = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int[] square = parseSquare(names[i]);
+            indices[i] = square == null ? -1 : index(square[0], square[1]);
+            if (indices[i] < 0) {
+                return Moves.NONE;
+            }
+        }
+        return names.length == 2 ? VariantPosition.encode(indices[0], indices[1])
+                : VariantPosition.encode(indices[0], indices[1], indices[2]);
+    }
+
+    @Override
+    public String toString() {
+        return this.size + "x" + this.size;
+    }
+}
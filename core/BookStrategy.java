@@ -0,0 +1,76 @@
+package core;
+import java.util.HashMap;
+
+/**
+ * The BookStrategy class plays stored moves for known positions and asks a fallback strategy otherwise.
+ * It is used to back the computer with an opening book or endgame table. The book holds canonical positions and
+ * moves (see Symmetry), so a line stored for one color is also played by the other in the flipped position.
+ * @author Samuel White
+ */
+public class BookStrategy implements MoveStrategy {
+    private final HashMap<Position, Integer> book = new HashMap<>();
+    private final MoveStrategy fallback;
+
+    /**
+     * Constructs a BookStrategy with the given fallback.
+     *
+     * @param fallback The strategy used for positions that are not in the book.
+     */
+    public BookStrategy(MoveStrategy fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Adds a move to the book.
+     *
+     * @param position The position the move is played in.
+     * @param move The packed move to play.
+     */
+    public void put(Position position, int move) {
+        this.book.put(Symmetry.canonical(position), Symmetry.toCanonical(position, move));
+    }
+
+    /**
+     * Adds a line of moves from the given position to the book.
+     *
+     * @param start The position the line starts from.
+     * @param line The moves of the line in notation, e.g. "6b-5a".
+     */
+    public void putLine(Position start, String... line) {
+        Position position = start;
+        for (String notation : line) {
+            int move = Moves.parse(notation);
+            if (move == Moves.NONE) {
+                throw new IllegalArgumentException("Invalid book move: " + notation);
+            }
+            put(position, move);
+            position = position.play(move);
+        }
+    }
+
+    /**
+     * Retrieves the number of positions stored in the book, counting a position and its flipped twin once.
+     *
+     * @return The book size.
+     */
+    public int size() {
+        return this.book.size();
+    }
+
+    /**
+     * Plays the book move for a known position, or asks the fallback strategy.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    @Override
+    public int selectMove(Position position, SearchBudget budget) {
+        Integer move = this.book.get(Symmetry.canonical(position));
+        if (move != null) {
+            budget.visit();
+            return Symmetry.fromCanonical(position, move);
+        }
+        return this.fallback.selectMove(position, budget);
+    }
+}
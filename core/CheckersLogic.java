@@ -1,5 +1,4 @@
 package core;
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -10,9 +9,25 @@ import java.util.Arrays;
  * @author Samuel White
  */
 public class CheckersLogic {
+    public static final int DEFAULT_NO_PROGRESS_LIMIT = 80;
+    private static final int HISTORY_SIZE = 256;
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
+
     Player player1;
     Player player2;
     Player currentPlayersTurn;
+    private long xPieces;
+    private long oPieces;
+    private long piecesHash;
+    private MoveCache moveCache = MoveCache.shared();
+    private final MobilityTracker mobility = new MobilityTracker();
+    private final HashHistory history = new HashHistory(HISTORY_SIZE);
+    private int noProgressLimit = DEFAULT_NO_PROGRESS_LIMIT;
+    private boolean turnWasIrreversible;
+    private int turnCount;
+    private NeuralEvaluator.Accumulator accumulator;
+    private volatile Position snapshot;
+    private volatile GameListener[] listeners = NO_LISTENERS;
 
     /**
      * Constructs a CheckersLogic object and initializes the game with the standard setup.
@@ -23,6 +38,29 @@ public class CheckersLogic {
         } else {
             computerGameSetup();
         }
+        trackBoardState();
+    }
+
+    /**
+     * Constructs a CheckersLogic object for a game against the computer using the given strategy and search limits.
+     *
+     * @param strategy The strategy the computer uses to select its moves.
+     * @param limits The node and time budget the computer may spend on every move.
+     */
+    public CheckersLogic(MoveStrategy strategy, SearchLimits limits) {
+        computerGameSetup(strategy, limits);
+        trackBoardState();
+    }
+
+    /**
+     * Constructs a CheckersLogic object for a two player game set up in the given position,
+     * e.g. to analyze or continue a position instead of starting from the standard setup.
+     *
+     * @param position The position to set up, with the player to move.
+     */
+    public CheckersLogic(Position position) {
+        standardGameSetup();
+        restorePosition(position);
     }
 
 
@@ -57,8 +95,18 @@ public class CheckersLogic {
      * It incorporates a new Computer class as player 2.
      */
     public void computerGameSetup() {
+        computerGameSetup(new GreedyStrategy(), Difficulty.CASUAL.limits());
+    }
+
+    /**
+     * Sets up the player vs computer game configuration with a computer using the given strategy and search limits.
+     *
+     * @param strategy The strategy the computer uses to select its moves.
+     * @param limits The node and time budget the computer may spend on every move.
+     */
+    public void computerGameSetup(MoveStrategy strategy, SearchLimits limits) {
         this.player1 = new Player('x');
-        this.player2 = new Computer('o', this);
+        this.player2 = new Computer('o', this, strategy, limits);
         this.player1.setOtherPlayer(this.player2);
         this.player2.setOtherPlayer(this.player1);
         this.currentPlayersTurn = this.player1;
@@ -66,6 +114,8 @@ public class CheckersLogic {
 
     /**
      * Retrieves the current state of the game board.
+     * The array is the live board, all changes must go through setBoardState so the piece masks stay in step.
+     * Other threads must read the game through getSnapshot instead.
      *
      * @return The game board state as a 2D char array.
      */
@@ -82,7 +132,179 @@ public class CheckersLogic {
     public void setBoardState(int[] location, char value) {
         int row = location[0];
         int column = location[1];
+        int square = Moves.square(row, column);
+        char previous = this.boardState[row][column];
+        if (previous != '_') {
+            togglePiece(previous, square);
+            if (this.accumulator != null) {
+                this.accumulator.removePiece(previous, square);
+            }
+        }
+        if (value != '_') {
+            togglePiece(value, square);
+            if (this.accumulator != null) {
+                this.accumulator.addPiece(value, square);
+            }
+        }
         this.boardState[row][column] = value;
+        if (previous != value) {
+            this.mobility.squareChanged(square, this.xPieces, this.oPieces);
+        }
+    }
+
+    /**
+     * Retrieves the Zobrist hash of the board with the given player to move.
+     *
+     * @param sideToMove The icon of the player to move.
+     * @return The position hash.
+     */
+    public long getPositionHash(char sideToMove) {
+        return this.piecesHash ^ Zobrist.sideKey(sideToMove);
+    }
+
+    /**
+     * Retrieves the board as an engine Position with the given player to move.
+     *
+     * @param sideToMove The icon of the player to move.
+     * @return The position.
+     */
+    public Position getPosition(char sideToMove) {
+        return new Position(this.xPieces, this.oPieces, sideToMove);
+    }
+
+    /**
+     * Retrieves every legal move of a player on the current board from the shared move cache.
+     *
+     * @param player The player whose moves are wanted.
+     * @return The packed legal moves, shared and not to be modified.
+     */
+    public int[] getLegalMoves(Player player) {
+        char icon = player.getPlayerIcon();
+        return this.moveCache.get(getPositionHash(icon), this.xPieces, this.oPieces, icon);
+    }
+
+    /**
+     * Replaces the move cache this game looks its legal moves up in.
+     *
+     * @param moveCache The cache to use.
+     */
+    public void setMoveCache(MoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
+    /**
+     * Attaches a network accumulator that is updated every time a piece is placed or removed.
+     * The accumulator must already hold the current board, see NeuralEvaluator.attach.
+     *
+     * @param accumulator The accumulator to keep in step with the board, or null to detach it.
+     */
+    public void setAccumulator(NeuralEvaluator.Accumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    private void togglePiece(char icon, int square) {
+        if (icon == 'x') {
+            this.xPieces ^= 1L << square;
+        } else {
+            this.oPieces ^= 1L << square;
+        }
+        this.piecesHash ^= Zobrist.pieceKey(icon, square);
+    }
+
+    private void trackBoardState() {
+        Position position = Position.fromBoard(this.boardState, 'x');
+        this.xPieces = position.getPieces('x');
+        this.oPieces = position.getPieces('o');
+        this.piecesHash = position.hash();
+        this.mobility.reset(this.xPieces, this.oPieces);
+        this.history.clear();
+        this.history.push(getPositionHash(this.currentPlayersTurn.getPlayerIcon()), true);
+        this.turnCount = 0;
+        publishSnapshot();
+    }
+
+    /**
+     * Retrieves the last published snapshot of the game. A new snapshot is published after every move,
+     * double jump and turn change, so other threads can read a consistent position without locking
+     * while this game is being played. The player to move is the player whose turn it was at that point.
+     *
+     * @return The immutable position snapshot.
+     */
+    public Position getSnapshot() {
+        return this.snapshot;
+    }
+
+    private void publishSnapshot() {
+        this.snapshot = new Position(this.xPieces, this.oPieces, this.currentPlayersTurn.getPlayerIcon());
+    }
+
+    /**
+     * Registers a listener for the changes made to this game. Listeners may be added and removed from any thread,
+     * while events are being delivered; the change takes effect from the next event.
+     *
+     * @param listener The listener to add.
+     */
+    public synchronized void addListener(GameListener listener) {
+        GameListener[] current = this.listeners;
+        GameListener[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = listener;
+        this.listeners = next;
+    }
+
+    /**
+     * Unregisters a listener added with addListener.
+     *
+     * @param listener The listener to remove.
+     */
+    public synchronized void removeListener(GameListener listener) {
+        GameListener[] current = this.listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                GameListener[] next = new GameListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                this.listeners = next.length == 0 ? NO_LISTENERS : next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners the game is over if the current player's completed move won it.
+     */
+    private void announceWin() {
+        GameListener[] listeners = this.listeners;
+        if (listeners.length == 0 || this.currentPlayersTurn.goAgain || !checkWin()) {
+            return;
+        }
+        for (GameListener listener : listeners) {
+            listener.gameOver(this.currentPlayersTurn.getPlayerIcon());
+        }
+    }
+
+    /**
+     * Replaces the board with a saved position, e.g. a checkpoint recovered from a journal.
+     * Any pending double jump is cancelled and the repetition history starts again from this position.
+     *
+     * @param position The position to restore, with the player to move.
+     */
+    public void restorePosition(Position position) {
+        for (int square = 0; square < 64; square++) {
+            setBoardState(new int[] {Moves.row(square), Moves.column(square)}, position.pieceAt(square));
+        }
+        for (Player player : new Player[] {this.player1, this.player2}) {
+            player.goAgain = false;
+            player.doubleJumpOptions = null;
+            player.doubleJumpLocations = null;
+            player.doubleJumpPiece = null;
+            player.setPieceCount(position.pieceCount(player.getPlayerIcon()));
+        }
+        this.currentPlayersTurn = this.player1.getPlayerIcon() == position.getSideToMove() ? this.player1 : this.player2;
+        this.turnWasIrreversible = false;
+        trackBoardState();
+        for (GameListener listener : this.listeners) {
+            listener.positionRestored(position);
+        }
     }
 
     /**
@@ -117,19 +339,87 @@ public class CheckersLogic {
             int[][] jumpOptions = getPossibleJumps(destination);
             doubleJump(destination, jumpOptions);
         }
+        publishSnapshot();
+        announceWin();
 
         return true;
     }
 
+    /**
+     * Plays a complete engine move for the current player, including any double jump choice, and ends the turn.
+     * A move written without the second landing square is accepted when the jump can only continue one way.
+     *
+     * @param move The packed move.
+     * @return The move as it was played, with the second landing square filled in.
+     * @throws IllegalArgumentException If the move is not legal for the current player.
+     */
+    public int playMove(int move) throws IllegalArgumentException {
+        int[] legal = getLegalMoves(this.currentPlayersTurn);
+        int resolved = Moves.resolve(legal, legal.length, move);
+
+        makeMove(Moves.toNotation(Moves.encode(Moves.from(resolved), Moves.to(resolved))));
+        if (this.currentPlayersTurn.goAgain) {
+            selectDoubleOption(Moves.doubleJumpOption(resolved));
+        }
+        swapTurn();
+        return resolved;
+    }
+
+    /**
+     * Retrieves the number of turns ended since the game was set up or its position was restored.
+     *
+     * @return The number of swapTurn calls since then.
+     */
+    public int getTurnCount() {
+        return this.turnCount;
+    }
+
     /**
      * Swaps the turn between the current player and the opponent.
      */
     public void swapTurn() {
         this.currentPlayersTurn = this.currentPlayersTurn.getOtherPlayer();
+        this.history.push(getPositionHash(this.currentPlayersTurn.getPlayerIcon()), this.turnWasIrreversible);
+        this.turnWasIrreversible = false;
+        this.turnCount++;
+        publishSnapshot();
+        GameListener[] listeners = this.listeners;
+        if (listeners.length == 0) {
+            return;
+        }
+        char icon = this.currentPlayersTurn.getPlayerIcon();
+        for (GameListener listener : listeners) {
+            listener.turnChanged(icon);
+        }
+        if (checkDraw()) {
+            for (GameListener listener : listeners) {
+                listener.gameOver('d');
+            }
+        }
+    }
+
+    /**
+     * Checks if the game is drawn, either because the current position occurred for the third time
+     * or because no irreversible move was made within the no-progress limit.
+     *
+     * @return true if the game is drawn, false otherwise.
+     */
+    public boolean checkDraw() {
+        return this.history.countRepetitions() >= 2 || this.history.getPliesSinceProgress() >= this.noProgressLimit;
+    }
+
+    /**
+     * Sets the number of plies without a capture or a man moving forward after which the game is drawn.
+     *
+     * @param noProgressLimit The limit in plies.
+     */
+    public void setNoProgressLimit(int noProgressLimit) {
+        this.noProgressLimit = noProgressLimit;
     }
 
     /**
      * Checks if the current player has won the game.
+     * The opponent's mobility is tracked as the board changes, so this is a constant time check.
      *
      * @return true if the current player has won, false otherwise.
      */
@@ -144,46 +434,27 @@ public class CheckersLogic {
      * @return true if the player can make a valid move at all, false otherwise.
      */
     public boolean canMove(Player currentPlayer) {
-        char playerIcon = currentPlayer.getPlayerIcon();
-        char enemyIcon = currentPlayer.getOtherPlayer().getPlayerIcon();
-        int direction;
-
-        if (playerIcon == 'x') {
-            direction = -1;
-        } else {
-            direction = 1;
-        }
+        return this.mobility.getMovableCount(currentPlayer.getPlayerIcon()) > 0;
+    }
 
-        int[] rightMove;
-        int[] leftMove;
-        int[] rightJump;
-        int[] leftJump;
-
-        for (int y = 0; y < this.boardState.length; y++) {
-            for (int x = 0; x < this.boardState[0].length; x++) {
-                if (this.getPiece(new int[] {y, x}) == playerIcon) {
-                    rightMove = new int[] {y + direction, x + 1};
-                    leftMove = new int[] {y + direction, x - 1};
-                    if (canMoveHere(rightMove) || canMoveHere(leftMove)) {
-                        return true;
-                    }
-                    if (withinBoard(rightMove) && this.getPiece(rightMove) == enemyIcon) {
-                        rightJump = new int[]{rightMove[0] + direction, rightMove[1] + 1};
-                        if (canMoveHere(rightJump)) {
-                            return true;
-                        }
-                    }
-                    else if (withinBoard(leftMove) && this.getPiece(leftMove) == enemyIcon) {
-                        leftJump = new int[] {leftMove[0] + direction, leftMove[1] - 1};
-                        if (canMoveHere(leftJump)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-    return false;
+    /**
+     * Retrieves the number of pieces a player can move.
+     *
+     * @param player The player to check.
+     * @return The number of the player's pieces that have a legal move.
+     */
+    public int getMovablePieceCount(Player player) {
+        return this.mobility.getMovableCount(player.getPlayerIcon());
+    }
 
+    /**
+     * Checks if a player has a capture available.
+     *
+     * @param player The player to check.
+     * @return true if at least one of the player's pieces can jump, false otherwise.
+     */
+    public boolean hasPendingCapture(Player player) {
+        return this.mobility.getCaptureCount(player.getPlayerIcon()) > 0;
     }
 
     /**
@@ -215,6 +486,10 @@ public class CheckersLogic {
             currentPlayersTurn.doubleJumpOptions = createJumpOptionsString(jumpOptions);
             currentPlayersTurn.doubleJumpLocations = jumpOptions;
             currentPlayersTurn.doubleJumpPiece = destination;
+            for (GameListener listener : this.listeners) {
+                listener.jumpChoicePending(currentPlayersTurn.getPlayerIcon(), Moves.square(destination[0], destination[1]),
+                        Moves.square(jumpOptions[0][0], jumpOptions[0][1]), Moves.square(jumpOptions[1][0], jumpOptions[1][1]));
+            }
         }
     }
 
@@ -238,6 +513,8 @@ public class CheckersLogic {
         currentPlayersTurn.doubleJumpOptions = null;
         currentPlayersTurn.doubleJumpLocations = null;
         currentPlayersTurn.doubleJumpPiece = null;
+        publishSnapshot();
+        announceWin();
     }
 
     /**
@@ -248,19 +525,9 @@ public class CheckersLogic {
      */
     public String createJumpOptionsString(int[][] jumpOptions) {
         String outputString = "";
-        HashMap<Integer, Character> hashmap = new HashMap<>();
-        hashmap.put(0, 'a');
-        hashmap.put(1, 'b');
-        hashmap.put(2, 'c');
-        hashmap.put(3, 'd');
-        hashmap.put(4, 'e');
-        hashmap.put(5, 'f');
-        hashmap.put(6, 'g');
-        hashmap.put(7, 'h');
-
         int count = 1;
         for (int[] index : jumpOptions) {
-            outputString += "Option " + count + ": " + (8 - index[0]) + hashmap.get(index[1]) + "\n";
+            outputString += "Option " + count + ": " + BoardGeometry.STANDARD.squareName(index[0], index[1]) + "\n";
             count++;
         }
 
@@ -284,16 +551,18 @@ public class CheckersLogic {
         }
         // had my indices swapped so I was creating an inverted jump
         // if pieces position - destinations position > 0 it must have moved to the right
+        int newY = piece[0] + direction;
+        int newX;
         if (piece[1] - destination[1] < 0) {
-            int newY = piece[0] + direction;
-            int newX = piece[1] + 1;
-            removePiece(new int[]{newY, newX});
+            newX = piece[1] + 1;
         } else {
-            int newY = piece[0] + direction;
-            int newX = piece[1] - 1;
-            removePiece(new int[]{newY, newX});
+            newX = piece[1] - 1;
         }
+        removePiece(new int[]{newY, newX});
         this.currentPlayersTurn.getOtherPlayer().removePiece();
+        for (GameListener listener : this.listeners) {
+            listener.pieceCaptured(this.currentPlayersTurn.getOtherPlayer().getPlayerIcon(), Moves.square(newY, newX));
+        }
     }
 
 
@@ -309,6 +578,11 @@ public class CheckersLogic {
         char pieceIcon = this.currentPlayersTurn.getPlayerIcon();
         setBoardState(destination, pieceIcon);
         removePiece(piece);
+        // every piece is a man that only moves forward, so no earlier position can come back
+        this.turnWasIrreversible = true;
+        for (GameListener listener : this.listeners) {
+            listener.pieceMoved(pieceIcon, Moves.square(piece[0], piece[1]), Moves.square(destination[0], destination[1]));
+        }
     }
 
     /**
@@ -355,30 +629,14 @@ public class CheckersLogic {
      * @throws NullPointerException If the move string is null.
      */
     public int[][] convertToIndices(String move) throws NullPointerException {
-        HashMap<Character, Integer> hashmap = new HashMap<>();
-        hashmap.put('a', 0);
-        hashmap.put('b', 1);
-        hashmap.put('c', 2);
-        hashmap.put('d', 3);
-        hashmap.put('e', 4);
-        hashmap.put('f', 5);
-        hashmap.put('g', 6);
-        hashmap.put('h', 7);
-
-        int pieceRow = 8 - Character.getNumericValue(move.charAt(0));
-        int pieceColumn;
-        int locationRow = 8 - Character.getNumericValue(move.charAt(3));
-        int locationColumn;
-
-        try {
-            pieceColumn = hashmap.get(move.charAt(1));
-            locationColumn = hashmap.get(move.charAt(4));
-        } catch (NullPointerException e) {
+        int[] piece = BoardGeometry.STANDARD.parseSquare(move.substring(0, 2));
+        int[] location = BoardGeometry.STANDARD.parseSquare(move.substring(3, 5));
+        if (piece == null || location == null) {
             System.out.println("Invalid move: Character not found in board coordinates.");
             return null;
         }
 
-        return new int[][]{{pieceRow, pieceColumn}, {locationRow, locationColumn}};
+        return new int[][]{piece, location};
     }
 
     /**
@@ -396,30 +654,19 @@ public class CheckersLogic {
      * @return {@code true} if the move is legal, {@code false} otherwise.
      */
     public boolean moveIsLegal(int[] piece, int[] location) {
-        if (currentPlayersTurn.getPlayerIcon() != getBoardState()[piece[0]][piece[1]]) return false;
-
-
         if (!withinBoard(piece)) return false;
         if (!withinBoard(location)) return false;
 
-        if (Arrays.equals(piece, location)) return false;
+        if (currentPlayersTurn.getPlayerIcon() != getPiece(piece)) return false;
 
-        if (!(spotIsOpen(location))) return false;
-
-        if (currentPlayersTurn.getPlayerIcon() == 'x' && !(location[0] - piece[0] <= -1)) {
-            return false;
-        } else if (currentPlayersTurn.getPlayerIcon() == 'o' && !(location[0] - piece[0] >= 1)) {
-            return false;
-        }
-
-        if (Math.abs(piece[0] - location[0]) == 1 && Math.abs(piece[1] - location[1]) == 1) {
-            return true;
+        int from = Moves.square(piece[0], piece[1]);
+        int to = Moves.square(location[0], location[1]);
+        for (int move : getLegalMoves(currentPlayersTurn)) {
+            if (Moves.from(move) == from && Moves.to(move) == to) {
+                return true;
+            }
         }
-
-        int[][] possibleJumps = getPossibleJumps(piece);
-
-        return arrayInside2dArray(location, possibleJumps);
-
+        return false;
     }
 
     /**
@@ -447,33 +694,17 @@ public class CheckersLogic {
      * @return A two-dimensional array representing the possible jump moves for the piece.
      */
     public int[][] getPossibleJumps(int[] piece) {
-        int y = piece[0];
-        int x = piece[1];
-        char playerPiece = currentPlayersTurn.getPlayerIcon();
+        int from = Moves.square(piece[0], piece[1]);
         ArrayList<int[]> list = new ArrayList<>();
-        int direction;
+        int lastLanding = -1;
 
-        if (playerPiece == 'x') {
-            direction = -1;
-        } else {
-            direction = 1;
+        for (int move : getLegalMoves(currentPlayersTurn)) {
+            if (Moves.from(move) == from && Moves.isCapture(move) && Moves.to(move) != lastLanding) {
+                lastLanding = Moves.to(move);
+                list.add(new int[] {Moves.row(lastLanding), Moves.column(lastLanding)});
+            }
         }
 
-        int[] rightPiece = {y + direction, x + 1};
-        int[] leftPiece = {y + direction, x - 1};
-        int[] rightJump = {y + (2 * direction), x + 2};
-        int[] leftJump = {y + (2 * direction), x - 2};
-
-        if (withinBoard(rightJump) &&
-                getPiece(rightPiece) != playerPiece &&
-                getPiece(rightPiece) != '_' &&
-                spotIsOpen(rightJump)) list.add(rightJump);
-
-        if (withinBoard(leftJump) &&
-                getPiece(leftPiece) != playerPiece &&
-                getPiece(leftPiece) != '_' &&
-                spotIsOpen(leftJump)) list.add(leftJump);
-
         return convertToArray(list);
     }
 
@@ -512,7 +743,7 @@ public class CheckersLogic {
         int locationRow = location[0];
         int locationColumn = location[1];
 
-        return locationRow >= 0 && locationRow < 8 && locationColumn >= 0 && locationColumn < 8;
+        return BoardGeometry.STANDARD.withinBoard(locationRow, locationColumn);
     }
 
     /**
@@ -1,22 +1,38 @@
 package core;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Random;
 /**
  * The Computer class represents the Computer/AI player you can select to play against.
+ * How the computer picks its moves is decided by its MoveStrategy, and how long it may think by its SearchLimits.
  * @author Samuel White
  */
 public class Computer extends Player{
     private CheckersLogic game;
+    private MoveStrategy strategy;
+    private SearchLimits limits;
+    private int lastMove = Moves.NONE;
+    private long lastNodes;
 
     /**
      * Constructs a new Computer player with the specified computerIcon and game.
+     * The computer plays greedily at the casual difficulty.
      * @param computerIcon the icon representing the computer player.
      * @param game the CheckersLogic instance representing the game.
      */
     public Computer(char computerIcon, CheckersLogic game) {
+        this(computerIcon, game, new GreedyStrategy(), Difficulty.CASUAL.limits());
+    }
+
+    /**
+     * Constructs a new Computer player with the specified strategy and search limits.
+     * @param computerIcon the icon representing the computer player.
+     * @param game the CheckersLogic instance representing the game.
+     * @param strategy the strategy used to select moves.
+     * @param limits the node and time budget for every move.
+     */
+    public Computer(char computerIcon, CheckersLogic game, MoveStrategy strategy, SearchLimits limits) {
         super(computerIcon);
         this.game = game;
+        this.strategy = strategy;
+        this.limits = limits;
     }
 
     /**
@@ -24,80 +40,58 @@ public class Computer extends Player{
      * @return a string representing the move command for the computer player.
      */
     public String takeTurn() {
-        int[][] movablePieces = allPieces();
-        int[][] move = assessMoves(movablePieces);
-        String moveCommand = indexConversion(move);
-        return moveCommand;
+        Position position = game.getSnapshot();
+        if (position.getSideToMove() != getPlayerIcon()) {
+            position = game.getPosition(getPlayerIcon());
+        }
+        SearchBudget budget = new SearchBudget(limits);
+        lastMove = strategy.selectMove(position, budget);
+        lastNodes = budget.getNodes();
+        if (lastMove == Moves.NONE) {
+            return null;
+        }
+        return indexConversion(Moves.toIndices(lastMove));
     }
 
     /**
-     * Retrieves all possible pieces that the computer player can move.
-     * @return a 2D array containing the coordinates of all movable pieces.
+     * Retrieves the double jump option the computer chose on its last turn.
+     * @return the option number to pass to CheckersLogic.selectDoubleOption, or 0 if the last move had no choice.
      */
-    public int[][] allPieces() {
-        int direction = 1;
-        ArrayList<int[]> output = new ArrayList<>();
-
-        int[] rightMove;
-        int[] leftMove;
-        int[] rightJump;
-        int[] leftJump;
+    public int getDoubleJumpSelection() {
+        return lastMove == Moves.NONE ? 0 : Moves.doubleJumpOption(lastMove);
+    }
 
-        for (int y = 0; y < 8; y++) {
-            for (int x = 0; x < 8; x++) {
-                int[] currentIndex = {y, x};
-                if (game.getPiece(new int[] {y, x}) == 'o') {
-                    rightMove = new int[] {y + direction, x + 1};
-                    leftMove = new int[] {y + direction, x - 1};
-                    if (game.canMoveHere(rightMove) || game.canMoveHere(leftMove)) {
-                        output.add(currentIndex);
-                        continue;
-                    }
-                    if (game.withinBoard(rightMove) && game.getPiece(rightMove) == 'x') {
-                        rightJump = new int[]{rightMove[0] + direction, rightMove[1] + 1};
-                        if (game.canMoveHere(rightJump)) {
-                            output.add(currentIndex);
-                            continue;
-                        }
-                    }
-                    else if (game.withinBoard(leftMove) && game.getPiece(leftMove) == 'x') {
-                        leftJump = new int[] {leftMove[0] + direction, leftMove[1] - 1};
-                        if (game.canMoveHere(leftJump)) {
-                            output.add(currentIndex);
-                            continue;
-                        }
-                    }
-                }
-            }
-        }
+    /**
+     * Retrieves the number of positions the strategy visited on the computer's last turn.
+     * @return the node count of the last search.
+     */
+    public long getLastNodes() {
+        return lastNodes;
+    }
 
-        return game.convertToArray(output);
+    /**
+     * Replaces the strategy and search limits used for the following turns.
+     * @param strategy the strategy used to select moves.
+     * @param limits the node and time budget for every move.
+     */
+    public void setStrategy(MoveStrategy strategy, SearchLimits limits) {
+        this.strategy = strategy;
+        this.limits = limits;
     }
 
     /**
-     * Assesses the available moves for the computer player and selects the best move.
-     * @param movablePieces a 2D array containing the coordinates of all movable pieces.
-     * @return a 2D array representing the selected move coordinates.
+     * Retrieves all possible pieces that the computer player can move.
+     * @return a 2D array containing the coordinates of all movable pieces.
      */
-    public int[][] assessMoves(int[][] movablePieces) {
-        for (int[] piece : movablePieces) {
-            int[][] possibleJumps = game.getPossibleJumps(piece);
-            if (possibleJumps.length != 0) {
-                return new int[][] {piece, possibleJumps[0]};
-            }
-        }
-        Random randomGenerator = new Random();
-        int[] selectedPiece = movablePieces[randomGenerator.nextInt(movablePieces.length)];
-        int y = selectedPiece[0];
-        int x = selectedPiece[1];
-        int[] rightMove = new int[] {y + 1, x + 1};
-        int[] leftMove = new int[] {y + 1, x - 1};
-        if (game.canMoveHere(rightMove)) {
-            return new int[][] {selectedPiece, rightMove};
-        } else if (game.canMoveHere(leftMove)) {
-            return new int[][] {selectedPiece, leftMove};
+    public int[][] allPieces() {
+        long movable = MoveCursor.movablePieces(game.getPosition(getPlayerIcon()));
+        int[][] output = new int[Long.bitCount(movable)][];
+        for (int i = 0; movable != 0; i++, movable &= movable - 1) {
+            int square = Long.numberOfTrailingZeros(movable);
+            output[i] = new int[] {Moves.row(square), Moves.column(square)};
         }
-        return null;
+
+        return output;
     }
 
     /**
@@ -106,22 +100,8 @@ public class Computer extends Player{
      * @return a string representing the move command.
      */
     public String indexConversion(int[][] index) {
-        String outputString = "";
-        HashMap<Integer, Character> hashmap = new HashMap<>();
-        hashmap.put(0, 'a');
-        hashmap.put(1, 'b');
-        hashmap.put(2, 'c');
-        hashmap.put(3, 'd');
-        hashmap.put(4, 'e');
-        hashmap.put(5, 'f');
-        hashmap.put(6, 'g');
-        hashmap.put(7, 'h');
-        String l1 = String.valueOf(8 - index[0][0]);
-        String l2 = "" + hashmap.get(index[0][1]);
-        String l3 = String.valueOf(8 - index[1][0]);
-        String l4 = "" + hashmap.get(index[1][1]);
-        String output = l1 + l2 + "-" + l3 + l4;
-        return output;
+        BoardGeometry geometry = BoardGeometry.STANDARD;
+        return geometry.squareName(index[0][0], index[0][1]) + "-" + geometry.squareName(index[1][0], index[1][1]);
     }
 
 }
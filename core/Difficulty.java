@@ -0,0 +1,28 @@
+package core;
+
+/**
+ * The Difficulty enum defines the computer's playing levels as search budgets.
+ * Every level runs the same strategy; stronger levels are simply allowed to look at more positions.
+ * @author Samuel White
+ */
+public enum Difficulty {
+    BEGINNER(200, 10),
+    CASUAL(5_000, 50),
+    CLUB(100_000, 250),
+    MASTER(2_000_000, 2_000);
+
+    private final SearchLimits limits;
+
+    Difficulty(long maxNodes, long maxMillis) {
+        this.limits = new SearchLimits(maxNodes, maxMillis);
+    }
+
+    /**
+     * Retrieves the search limits of this level.
+     *
+     * @return The search limits.
+     */
+    public SearchLimits limits() {
+        return this.limits;
+    }
+}
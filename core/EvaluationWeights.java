@@ -0,0 +1,125 @@
+package core;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * The EvaluationWeights class holds the tunable values MaterialEvaluator scores positions with:
+ * the value of a piece and a bonus for every number of rows it has advanced from its own back row.
+ * Weights are stored as a properties file with the keys "piece" and "advance.1" to "advance.7".
+ * @author Samuel White
+ */
+public class EvaluationWeights {
+    public static final int ROWS = 8;
+
+    private static final EvaluationWeights STANDARD = createStandard();
+
+    private final int pieceValue;
+    private final int[] advanceValues;
+
+    /**
+     * Constructs EvaluationWeights.
+     *
+     * @param pieceValue The value of a piece.
+     * @param advanceValues The bonus for a piece that has advanced 0 to 7 rows. The bonus for 0 rows is always 0.
+     */
+    public EvaluationWeights(int pieceValue, int[] advanceValues) {
+        if (advanceValues.length != ROWS) {
+            throw new IllegalArgumentException("Expected " + ROWS + " advance values, got " + advanceValues.length);
+        }
+        this.pieceValue = pieceValue;
+        this.advanceValues = advanceValues.clone();
+        this.advanceValues[0] = 0;
+    }
+
+    /**
+     * Retrieves the hand-set weights: 100 per piece and 3 per row advanced.
+     *
+     * @return The standard weights.
+     */
+    public static EvaluationWeights standard() {
+        return STANDARD;
+    }
+
+    /**
+     * Loads weights from a properties file. Missing keys keep their standard value.
+     *
+     * @param file The properties file.
+     * @return The weights.
+     * @throws IOException If the file cannot be read or holds a value that is not a number.
+     */
+    public static EvaluationWeights load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        try {
+            int pieceValue = Integer.parseInt(properties.getProperty("piece", "" + STANDARD.pieceValue).trim());
+            int[] advanceValues = new int[ROWS];
+            for (int rows = 1; rows < ROWS; rows++) {
+                String value = properties.getProperty("advance." + rows, "" + STANDARD.advanceValues[rows]);
+                advanceValues[rows] = Integer.parseInt(value.trim());
+            }
+            return new EvaluationWeights(pieceValue, advanceValues);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid evaluation weights in " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the weights to a properties file.
+     *
+     * @param file The properties file.
+     * @param comment The comment written at the top of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file, String comment) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("piece", "" + this.pieceValue);
+        for (int rows = 1; rows < ROWS; rows++) {
+            properties.setProperty("advance." + rows, "" + this.advanceValues[rows]);
+        }
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, comment);
+        }
+    }
+
+    /**
+     * Retrieves the value of a piece.
+     *
+     * @return The piece value.
+     */
+    public int getPieceValue() {
+        return this.pieceValue;
+    }
+
+    /**
+     * Retrieves the bonus for a piece that has advanced a number of rows.
+     *
+     * @param rows The number of rows advanced, 0 to 7.
+     * @return The advance bonus.
+     */
+    public int getAdvanceValue(int rows) {
+        return this.advanceValues[rows];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder("piece=" + this.pieceValue + " advance=");
+        for (int rows = 1; rows < ROWS; rows++) {
+            output.append(rows == 1 ? "" : ",").append(this.advanceValues[rows]);
+        }
+        return output.toString();
+    }
+
+    private static EvaluationWeights createStandard() {
+        int[] advanceValues = new int[ROWS];
+        for (int rows = 0; rows < ROWS; rows++) {
+            advanceValues[rows] = 3 * rows;
+        }
+        return new EvaluationWeights(100, advanceValues);
+    }
+}
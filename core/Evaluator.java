@@ -0,0 +1,41 @@
+package core;
+
+/**
+ * The Evaluator interface scores positions for the searching strategies.
+ * A search tells the evaluator which line it is on through reset, push and pop, so evaluators that
+ * keep incremental state can follow the search instead of recomputing every position from scratch.
+ * @author Samuel White
+ */
+public interface Evaluator {
+
+    /**
+     * Scores a position from the point of view of the player to move.
+     *
+     * @param position The position to score.
+     * @return The score, positive when the player to move is better.
+     */
+    int evaluate(Position position);
+
+    /**
+     * Starts a new search from the given root position.
+     *
+     * @param root The root position of the search.
+     */
+    default void reset(Position root) {
+    }
+
+    /**
+     * Follows the search one move deeper.
+     *
+     * @param parent The position the move is played in.
+     * @param move The packed move.
+     */
+    default void push(Position parent, int move) {
+    }
+
+    /**
+     * Follows the search one move back.
+     */
+    default void pop() {
+    }
+}
@@ -0,0 +1,66 @@
+package core;
+
+/**
+ * The GameListener interface receives what changes in a CheckersLogic game as it happens, so a view can update
+ * only what changed instead of reading the whole game again after every call.
+ * Events are delivered on the thread that changed the game, in the order the changes were made, and carry only
+ * primitive values, so delivering them allocates nothing. Every method does nothing by default.
+ * Squares are numbered as in Moves.square.
+ * @author Samuel White
+ */
+public interface GameListener {
+
+    /**
+     * Receives a piece moving, once for every jump of a double jump.
+     *
+     * @param icon The icon of the moving piece.
+     * @param from The square the piece left.
+     * @param to The square the piece landed on.
+     */
+    default void pieceMoved(char icon, int from, int to) {
+    }
+
+    /**
+     * Receives a piece being jumped and removed.
+     *
+     * @param icon The icon of the captured piece.
+     * @param square The square the piece was removed from.
+     */
+    default void pieceCaptured(char icon, int square) {
+    }
+
+    /**
+     * Receives a jump that can continue two ways, so the player has to choose with selectDoubleOption.
+     *
+     * @param icon The icon of the player who has to choose.
+     * @param square The square of the jumping piece.
+     * @param firstOption The landing square of option 1.
+     * @param secondOption The landing square of option 2.
+     */
+    default void jumpChoicePending(char icon, int square, int firstOption, int secondOption) {
+    }
+
+    /**
+     * Receives the end of a turn.
+     *
+     * @param icon The icon of the player to move next.
+     */
+    default void turnChanged(char icon) {
+    }
+
+    /**
+     * Receives the end of the game, after the winning move or the turn change that drew the game.
+     *
+     * @param winner The icon of the winner, or 'd' for a draw.
+     */
+    default void gameOver(char winner) {
+    }
+
+    /**
+     * Receives the whole board being replaced by restorePosition.
+     *
+     * @param position The restored position.
+     */
+    default void positionRestored(Position position) {
+    }
+}
@@ -0,0 +1,138 @@
+package core;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The GameRecord class represents a finished or unfinished game as a list of moves.
+ * A record is stored as one line of text: the game id, the result and the moves in notation,
+ * separated by tabs and spaces, e.g. "42	x	6b-5a 3a-4b 7c-6b".
+ * The result is 'x' or 'o' for the winner, 'd' for a draw or '*' if the game did not finish.
+ * @author Samuel White
+ */
+public class GameRecord {
+    private final long id;
+    private final char result;
+    private final List<String> moves;
+
+    /**
+     * A callback receiving every position of a replayed game.
+     */
+    public interface PlyVisitor {
+
+        /**
+         * Receives a position of the game and the move played from it.
+         *
+         * @param ply The number of moves played before the position.
+         * @param position The position, with the player to move.
+         * @param nextMove The packed move played from the position, or Moves.NONE for the final position.
+         */
+        void visit(int ply, Position position, int nextMove);
+    }
+
+    /**
+     * Constructs a GameRecord.
+     *
+     * @param id The game id.
+     * @param result The result character.
+     * @param moves The moves in notation.
+     */
+    public GameRecord(long id, char result, List<String> moves) {
+        this.id = id;
+        this.result = result;
+        this.moves = Collections.unmodifiableList(new ArrayList<>(moves));
+    }
+
+    /**
+     * Parses a record line.
+     *
+     * @param line The record line.
+     * @return The game record.
+     * @throws IllegalArgumentException If the line is not a valid record.
+     */
+    public static GameRecord parse(String line) throws IllegalArgumentException {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 3 || fields[1].length() != 1 || "xod*".indexOf(fields[1].charAt(0)) < 0) {
+            throw new IllegalArgumentException("Invalid game record: " + line);
+        }
+        long id;
+        try {
+            id = Long.parseLong(fields[0].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid game id: " + fields[0]);
+        }
+        List<String> moves = new ArrayList<>();
+        for (String move : fields[2].trim().split(" +")) {
+            if (!move.isEmpty()) {
+                moves.add(move);
+            }
+        }
+        return new GameRecord(id, fields[1].charAt(0), moves);
+    }
+
+    /**
+     * Retrieves the game id.
+     *
+     * @return The game id.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Retrieves the result.
+     *
+     * @return 'x' or 'o' for the winner, 'd' for a draw or '*' if unfinished.
+     */
+    public char getResult() {
+        return this.result;
+    }
+
+    /**
+     * Retrieves the moves in notation.
+     *
+     * @return The unmodifiable list of moves.
+     */
+    public List<String> getMoves() {
+        return this.moves;
+    }
+
+    /**
+     * Replays the game through CheckersLogic from the starting position, checking every move is legal.
+     *
+     * @param visitor The callback receiving every position, or null.
+     * @return The game after the last move.
+     * @throws IllegalArgumentException If a move is malformed or illegal.
+     */
+    public CheckersLogic replay(PlyVisitor visitor) throws IllegalArgumentException {
+        CheckersLogic game = new CheckersLogic("PvP");
+        int ply = 0;
+        for (String notation : this.moves) {
+            int move = Moves.parse(notation);
+            if (move == Moves.NONE) {
+                throw new IllegalArgumentException("Invalid move in game " + this.id + ": " + notation);
+            }
+            char side = game.getCurrentPlayersTurn().getPlayerIcon();
+            Position before = game.getPosition(side);
+            int played = game.playMove(move);
+            if (visitor != null) {
+                visitor.visit(ply, before, played);
+            }
+            ply++;
+        }
+        if (visitor != null) {
+            visitor.visit(ply, game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon()), Moves.NONE);
+        }
+        return game;
+    }
+
+    /**
+     * Converts the record into its line format.
+     *
+     * @return The record line.
+     */
+    @Override
+    public String toString() {
+        return this.id + "\t" + this.result + "\t" + String.join(" ", this.moves);
+    }
+}
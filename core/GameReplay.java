@@ -0,0 +1,103 @@
+package core;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GameReplay class lets a recorded game be viewed at any ply without replaying it from the first move.
+ * The record is checked and resolved once, through GameRecord.replay, and a Position is kept every interval
+ * plies as a checkpoint. Seeking to a ply starts at the checkpoint at or before it and plays at most
+ * interval - 1 moves with Position.play, however long the game is.
+ * @author Samuel White
+ */
+public class GameReplay {
+    public static final int DEFAULT_INTERVAL = 32;
+
+    private final GameRecord record;
+    private final int interval;
+    private final int[] moves;
+    private final Position[] checkpoints;
+
+    /**
+     * Constructs a GameReplay with a checkpoint every DEFAULT_INTERVAL plies.
+     *
+     * @param record The game to replay.
+     * @throws IllegalArgumentException If a move of the game is malformed or illegal.
+     */
+    public GameReplay(GameRecord record) throws IllegalArgumentException {
+        this(record, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructs a GameReplay.
+     *
+     * @param record The game to replay.
+     * @param interval The number of plies between checkpoints.
+     * @throws IllegalArgumentException If the interval is not positive, or a move of the game is malformed or illegal.
+     */
+    public GameReplay(GameRecord record, int interval) throws IllegalArgumentException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid checkpoint interval: " + interval);
+        }
+        this.record = record;
+        this.interval = interval;
+        this.moves = new int[record.getMoves().size()];
+        List<Position> checkpoints = new ArrayList<>();
+        record.replay((ply, position, nextMove) -> {
+            if (ply % interval == 0) {
+                checkpoints.add(position);
+            }
+            if (nextMove != Moves.NONE) {
+                this.moves[ply] = nextMove;
+            }
+        });
+        this.checkpoints = checkpoints.toArray(new Position[0]);
+    }
+
+    /**
+     * Retrieves the replayed record.
+     *
+     * @return The game record.
+     */
+    public GameRecord getRecord() {
+        return this.record;
+    }
+
+    /**
+     * Retrieves the number of moves in the game.
+     *
+     * @return The ply of the final position.
+     */
+    public int getPlyCount() {
+        return this.moves.length;
+    }
+
+    /**
+     * Retrieves a move of the game, with the second landing square of a double jump filled in.
+     *
+     * @param ply The number of moves played before it.
+     * @return The packed move.
+     * @throws IndexOutOfBoundsException If there is no move at that ply.
+     */
+    public int getMove(int ply) throws IndexOutOfBoundsException {
+        return this.moves[ply];
+    }
+
+    /**
+     * Retrieves the position at a ply, replaying from the nearest checkpoint before it.
+     *
+     * @param ply The number of moves played, from 0 for the start to getPlyCount for the final position.
+     * @return The position, with the player to move.
+     * @throws IndexOutOfBoundsException If the ply is outside the game.
+     */
+    public Position positionAt(int ply) throws IndexOutOfBoundsException {
+        if (ply < 0 || ply > this.moves.length) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " of a game of " + this.moves.length);
+        }
+        int checkpoint = ply / this.interval;
+        Position position = this.checkpoints[checkpoint];
+        for (int i = checkpoint * this.interval; i < ply; i++) {
+            position = position.play(this.moves[i]);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,58 @@
+package core;
+import java.util.Random;
+
+/**
+ * The GreedyStrategy class plays the way the computer originally did: it takes the first jump it finds,
+ * scanning the board from the top row down, and otherwise moves a random piece, stepping to the right when it can.
+ * Position.generateMoves lists moves in that scan order, with the jump to the right before the jump to the left.
+ * @author Samuel White
+ */
+public class GreedyStrategy implements MoveStrategy {
+    private final Random random;
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private final int[] pieceMoves = new int[Position.MAX_MOVES];
+
+    /**
+     * Constructs a GreedyStrategy with an unseeded random generator.
+     */
+    public GreedyStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructs a GreedyStrategy with the given random generator.
+     *
+     * @param random The random generator used to pick the piece to step with.
+     */
+    public GreedyStrategy(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Selects the first jump in board order, or the right step of a random piece if nothing can be captured,
+     * and its left step if the right one is blocked.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    @Override
+    public int selectMove(Position position, SearchBudget budget) {
+        budget.visit();
+        int count = position.generateMoves(this.moves);
+        if (count == 0) {
+            return Moves.NONE;
+        }
+        int pieces = 0;
+        for (int i = 0; i < count; i++) {
+            if (Moves.isCapture(this.moves[i])) {
+                return this.moves[i];
+            }
+            // a piece's moves are listed together, right step first
+            if (i == 0 || Moves.from(this.moves[i]) != Moves.from(this.moves[i - 1])) {
+                this.pieceMoves[pieces++] = this.moves[i];
+            }
+        }
+        return this.pieceMoves[this.random.nextInt(pieces)];
+    }
+}
@@ -0,0 +1,85 @@
+package core;
+
+/**
+ * The HashHistory class remembers the Zobrist hashes of the most recent positions in a fixed size ring buffer.
+ * A position can only repeat since the last irreversible move (a capture or a man moving forward),
+ * so repetition checks only scan back that far, and only at positions with the same player to move.
+ * @author Samuel White
+ */
+public class HashHistory {
+    private final long[] hashes;
+    private final int mask;
+    private int size;
+    private int pliesSinceProgress;
+    private final int[] progressStack;
+
+    /**
+     * Constructs a HashHistory holding at least the given number of positions.
+     *
+     * @param capacity The minimum number of positions to remember.
+     */
+    public HashHistory(int capacity) {
+        int rounded = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.hashes = new long[rounded];
+        this.progressStack = new int[rounded];
+        this.mask = rounded - 1;
+    }
+
+    /**
+     * Records the position reached after a move.
+     *
+     * @param hash The hash of the new position.
+     * @param irreversible true if the move that reached it can never be undone.
+     */
+    public void push(long hash, boolean irreversible) {
+        this.progressStack[this.size & this.mask] = this.pliesSinceProgress;
+        this.hashes[this.size & this.mask] = hash;
+        this.size++;
+        this.pliesSinceProgress = irreversible ? 0 : this.pliesSinceProgress + 1;
+    }
+
+    /**
+     * Forgets the most recently recorded position, as a search does when it takes a move back.
+     */
+    public void pop() {
+        this.size--;
+        this.pliesSinceProgress = this.progressStack[this.size & this.mask];
+    }
+
+    /**
+     * Counts how often the most recent position occurred before it since the last irreversible move.
+     *
+     * @return The number of earlier occurrences.
+     */
+    public int countRepetitions() {
+        if (this.size == 0) {
+            return 0;
+        }
+        long hash = this.hashes[(this.size - 1) & this.mask];
+        int limit = Math.min(this.pliesSinceProgress, Math.min(this.size - 1, this.hashes.length - 1));
+        int count = 0;
+        for (int back = 2; back <= limit; back += 2) {
+            if (this.hashes[(this.size - 1 - back) & this.mask] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the number of plies since the last irreversible move.
+     *
+     * @return The plies without progress.
+     */
+    public int getPliesSinceProgress() {
+        return this.pliesSinceProgress;
+    }
+
+    /**
+     * Forgets every recorded position.
+     */
+    public void clear() {
+        this.size = 0;
+        this.pliesSinceProgress = 0;
+    }
+}
@@ -0,0 +1,51 @@
+package core;
+
+/**
+ * The MaterialEvaluator class scores positions by the pieces each side has left and how far they have advanced.
+ * @author Samuel White
+ */
+public class MaterialEvaluator implements Evaluator {
+    private final int pieceValue;
+    private final int[] advanceValues = new int[EvaluationWeights.ROWS];
+
+    /**
+     * Constructs a MaterialEvaluator with the standard weights.
+     */
+    public MaterialEvaluator() {
+        this(EvaluationWeights.standard());
+    }
+
+    /**
+     * Constructs a MaterialEvaluator with the given weights, e.g. ones loaded from a tuned parameter file.
+     *
+     * @param weights The evaluation weights.
+     */
+    public MaterialEvaluator(EvaluationWeights weights) {
+        this.pieceValue = weights.getPieceValue();
+        for (int rows = 0; rows < EvaluationWeights.ROWS; rows++) {
+            this.advanceValues[rows] = weights.getAdvanceValue(rows);
+        }
+    }
+
+    /**
+     * Scores a position from the point of view of the player to move.
+     *
+     * @param position The position to score.
+     * @return The score, positive when the player to move is better.
+     */
+    @Override
+    public int evaluate(Position position) {
+        int score = score(position.getPieces('x'), true) - score(position.getPieces('o'), false);
+        return position.getSideToMove() == 'x' ? score : -score;
+    }
+
+    private int score(long pieces, boolean movesUp) {
+        int score = 0;
+        for (; pieces != 0; pieces &= pieces - 1) {
+            int row = Moves.row(Long.numberOfTrailingZeros(pieces));
+            int advanced = movesUp ? 7 - row : row;
+            score += this.pieceValue + this.advanceValues[advanced];
+        }
+        return score;
+    }
+}
@@ -0,0 +1,142 @@
+package core;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The MctsStrategy class selects moves with Monte Carlo tree search (UCT).
+ * Each iteration walks down the tree, expands one new position and finishes the game with random moves.
+ * Every position visited, in the tree or in the playout, counts against the budget.
+ * @author Samuel White
+ */
+public class MctsStrategy implements MoveStrategy {
+    private static final double EXPLORATION = 1.41;
+
+    private final Random random;
+    private final int[] playoutMoves = new int[Position.MAX_MOVES];
+
+    /**
+     * Constructs an MctsStrategy with an unseeded random generator.
+     */
+    public MctsStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructs an MctsStrategy with the given random generator.
+     *
+     * @param random The random generator used for playouts.
+     */
+    public MctsStrategy(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Selects the most visited move once the budget runs out.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    @Override
+    public int selectMove(Position position, SearchBudget budget) {
+        Node root = new Node(position, Moves.NONE, null);
+        if (root.untried.length == 0) {
+            return Moves.NONE;
+        }
+        if (root.untried.length == 1) {
+            return root.untried[0];
+        }
+
+        while (budget.visit()) {
+            Node node = root;
+            while (node.untriedCount == 0 && node.children.length > 0) {
+                node = node.select();
+            }
+            if (node.untriedCount > 0) {
+                node = node.expand(this.random);
+            }
+            boolean moverWon = playout(node.position, budget);
+            for (; node != null; node = node.parent) {
+                node.visits++;
+                if (moverWon) {
+                    node.wins++;
+                }
+                moverWon = !moverWon;
+            }
+        }
+
+        Node best = null;
+        for (Node child : root.children) {
+            if (child != null && (best == null || child.visits > best.visits)) {
+                best = child;
+            }
+        }
+        return best == null ? root.untried[0] : best.move;
+    }
+
+    /**
+     * Plays random moves until the game ends.
+     *
+     * @return true if the player who moved into the given position wins.
+     */
+    private boolean playout(Position position, SearchBudget budget) {
+        boolean moverWon = true;
+        while (budget.visit()) {
+            int count = position.generateMoves(this.playoutMoves);
+            if (count == 0) {
+                return moverWon;
+            }
+            position = position.play(this.playoutMoves[this.random.nextInt(count)]);
+            moverWon = !moverWon;
+        }
+        return moverWon;
+    }
+
+    private static final class Node {
+        private final Position position;
+        private final int move;
+        private final Node parent;
+        private final int[] untried;
+        private final Node[] children;
+        private int untriedCount;
+        private int childCount;
+        private int visits;
+        private int wins;
+
+        private Node(Position position, int move, Node parent) {
+            this.position = position;
+            this.move = move;
+            this.parent = parent;
+            int[] moves = new int[Position.MAX_MOVES];
+            int count = position.generateMoves(moves);
+            this.untried = Arrays.copyOf(moves, count);
+            this.untriedCount = count;
+            this.children = new Node[count];
+        }
+
+        private Node expand(Random random) {
+            int index = random.nextInt(this.untriedCount);
+            int move = this.untried[index];
+            this.untried[index] = this.untried[--this.untriedCount];
+            this.untried[this.untriedCount] = move;
+            Node child = new Node(this.position.play(move), move, this);
+            this.children[this.childCount++] = child;
+            return child;
+        }
+
+        private Node select() {
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(this.visits);
+            for (int i = 0; i < this.childCount; i++) {
+                Node child = this.children[i];
+                double value = (double) child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package core;
+import java.util.Arrays;
+
+/**
+ * The MobilityTracker class keeps count of how many pieces of each side can move and how many can capture.
+ * Whether a piece can move only depends on the squares one and two rows in front of it, so when a square
+ * changes only the few pieces behind it are looked at again. This keeps every update and every query constant time.
+ * @author Samuel White
+ */
+public class MobilityTracker {
+    private static final byte MOVABLE = 1;
+    private static final byte CAPTURE = 2;
+
+    // [side][square] -> squares whose mobility depends on that square, including the square itself
+    private static final int[][][] DEPENDENTS = new int[2][64][];
+
+    static {
+        for (int side = 0; side < 2; side++) {
+            for (int square = 0; square < 64; square++) {
+                int[] found = new int[5];
+                int count = 0;
+                found[count++] = square;
+                for (int from = 0; from < 64; from++) {
+                    for (int direction = Position.RIGHT; direction <= Position.LEFT; direction++) {
+                        if (Position.STEP[side][direction][from] == square || Position.JUMP[side][direction][from] == square) {
+                            found[count++] = from;
+                        }
+                    }
+                }
+                DEPENDENTS[side][square] = Arrays.copyOf(found, count);
+            }
+        }
+    }
+
+    private final byte[][] flags = new byte[2][64];
+    private final int[] movable = new int[2];
+    private final int[] captures = new int[2];
+
+    /**
+     * Recomputes every count from scratch.
+     *
+     * @param xPieces The mask of 'x' pieces.
+     * @param oPieces The mask of 'o' pieces.
+     */
+    public void reset(long xPieces, long oPieces) {
+        for (int side = 0; side < 2; side++) {
+            Arrays.fill(this.flags[side], (byte) 0);
+            this.movable[side] = 0;
+            this.captures[side] = 0;
+            for (int square = 0; square < 64; square++) {
+                refresh(side, square, xPieces, oPieces);
+            }
+        }
+    }
+
+    /**
+     * Updates the counts after a single square of the board changed.
+     *
+     * @param square The square that changed.
+     * @param xPieces The mask of 'x' pieces after the change.
+     * @param oPieces The mask of 'o' pieces after the change.
+     */
+    public void squareChanged(int square, long xPieces, long oPieces) {
+        for (int side = 0; side < 2; side++) {
+            for (int dependent : DEPENDENTS[side][square]) {
+                refresh(side, dependent, xPieces, oPieces);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of pieces of a side that have at least one legal move.
+     *
+     * @param icon The icon of the side.
+     * @return The movable piece count.
+     */
+    public int getMovableCount(char icon) {
+        return this.movable[icon == 'x' ? 0 : 1];
+    }
+
+    /**
+     * Retrieves the number of pieces of a side that can capture.
+     *
+     * @param icon The icon of the side.
+     * @return The count of pieces with a jump available.
+     */
+    public int getCaptureCount(char icon) {
+        return this.captures[icon == 'x' ? 0 : 1];
+    }
+
+    private void refresh(int side, int square, long xPieces, long oPieces) {
+        long own = side == 0 ? xPieces : oPieces;
+        long enemy = side == 0 ? oPieces : xPieces;
+        long occupied = own | enemy;
+        byte updated = 0;
+
+        if ((own >>> square & 1L) != 0) {
+            for (int direction = Position.RIGHT; direction <= Position.LEFT; direction++) {
+                int step = Position.STEP[side][direction][square];
+                if (step < 0) {
+                    continue;
+                }
+                if ((occupied >>> step & 1L) == 0) {
+                    updated |= MOVABLE;
+                    continue;
+                }
+                int landing = Position.JUMP[side][direction][square];
+                if (landing >= 0 && (enemy >>> step & 1L) != 0 && (occupied >>> landing & 1L) == 0) {
+                    updated |= MOVABLE | CAPTURE;
+                }
+            }
+        }
+
+        byte previous = this.flags[side][square];
+        if (previous == updated) {
+            return;
+        }
+        this.movable[side] += (updated & MOVABLE) - (previous & MOVABLE);
+        this.captures[side] += ((updated & CAPTURE) - (previous & CAPTURE)) >> 1;
+        this.flags[side][square] = updated;
+    }
+}
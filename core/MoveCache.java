@@ -0,0 +1,240 @@
+package core;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MoveCache class is a bounded, thread safe cache from positions to their packed legal move lists.
+ * Entries are kept in a set associative table indexed by the Zobrist hash, and each entry also stores
+ * the piece masks so a hash collision can never return another position's moves.
+ * Entries are evicted with the CLOCK algorithm: a lookup marks an entry as referenced, and eviction
+ * clears the mark once before removing the entry. The cache keeps its estimated size under a byte cap.
+ * The returned move arrays are shared between callers and must not be modified.
+ * @author Samuel White
+ */
+public class MoveCache {
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    private static final int AVERAGE_ENTRY_BYTES = ENTRY_OVERHEAD_BYTES + 4 * 8;
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final MoveCache SHARED = new MoveCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final int setMask;
+    private final long[] keys;
+    private final long[] xPieces;
+    private final long[] oPieces;
+    private final int[][] moves;
+    private final boolean[] referenced;
+    private final Object[] locks = new Object[STRIPES];
+    private final Object evictionLock = new Object();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private int clockHand;
+
+    /**
+     * Constructs a MoveCache holding at most about maxBytes of entries.
+     *
+     * @param maxBytes The size cap in bytes.
+     */
+    public MoveCache(long maxBytes) {
+        if (maxBytes < AVERAGE_ENTRY_BYTES * WAYS) {
+            throw new IllegalArgumentException("Cache size is too small: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        int sets = Integer.highestOneBit((int) Math.min(1 << 24, maxBytes / AVERAGE_ENTRY_BYTES / WAYS));
+        this.setMask = sets - 1;
+        int slots = sets * WAYS;
+        this.keys = new long[slots];
+        this.xPieces = new long[slots];
+        this.oPieces = new long[slots];
+        this.moves = new int[slots][];
+        this.referenced = new boolean[slots];
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Retrieves the cache shared by every game in this process.
+     *
+     * @return The shared cache.
+     */
+    public static MoveCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Retrieves the legal moves of a position, generating and storing them on a miss.
+     *
+     * @param position The position.
+     * @return The packed legal moves, shared and not to be modified.
+     */
+    public int[] get(Position position) {
+        return get(position.hash(), position.getPieces('x'), position.getPieces('o'), position.getSideToMove());
+    }
+
+    /**
+     * Retrieves the legal moves of a position given by its hash and piece masks.
+     *
+     * @param hash The Zobrist hash of the position.
+     * @param x The mask of 'x' pieces.
+     * @param o The mask of 'o' pieces.
+     * @param sideToMove The icon of the player to move.
+     * @return The packed legal moves, shared and not to be modified.
+     */
+    public int[] get(long hash, long x, long o, char sideToMove) {
+        int set = (int) (hash ^ (hash >>> 32)) & this.setMask;
+        int first = set * WAYS;
+        synchronized (this.locks[set & (STRIPES - 1)]) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (this.moves[slot] != null && this.keys[slot] == hash && this.xPieces[slot] == x && this.oPieces[slot] == o) {
+                    this.referenced[slot] = true;
+                    this.hits.increment();
+                    return this.moves[slot];
+                }
+            }
+        }
+        this.misses.increment();
+
+        Position position = new Position(x, o, sideToMove);
+        int[] buffer = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(buffer);
+        int[] generated = Arrays.copyOf(buffer, count);
+
+        synchronized (this.locks[set & (STRIPES - 1)]) {
+            int victim = -1;
+            for (int pass = 0; pass < 2 && victim < 0; pass++) {
+                for (int slot = first; slot < first + WAYS; slot++) {
+                    if (this.moves[slot] == null || !this.referenced[slot]) {
+                        victim = slot;
+                        break;
+                    }
+                    this.referenced[slot] = false;
+                }
+            }
+            if (this.moves[victim] != null) {
+                release(victim);
+            }
+            this.keys[victim] = hash;
+            this.xPieces[victim] = x;
+            this.oPieces[victim] = o;
+            this.moves[victim] = generated;
+            this.referenced[victim] = true;
+            this.bytes.addAndGet(entryBytes(generated));
+        }
+
+        if (this.bytes.get() > this.maxBytes) {
+            shrink();
+        }
+        return generated;
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public void clear() {
+        synchronized (this.evictionLock) {
+            for (int slot = 0; slot < this.moves.length; slot++) {
+                synchronized (this.locks[(slot / WAYS) & (STRIPES - 1)]) {
+                    if (this.moves[slot] != null) {
+                        this.bytes.addAndGet(-entryBytes(this.moves[slot]));
+                        this.moves[slot] = null;
+                    }
+                }
+            }
+        }
+        this.hits.reset();
+        this.misses.reset();
+        this.evictions.reset();
+    }
+
+    /**
+     * Retrieves the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Retrieves the number of lookups that had to generate moves.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Retrieves the number of entries removed to make room for others.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Retrieves the share of lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Retrieves the estimated size of the cached entries.
+     *
+     * @return The size in bytes.
+     */
+    public long getSizeBytes() {
+        return this.bytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MoveCache[hits=%d misses=%d hitRate=%.3f evictions=%d bytes=%d/%d]",
+                getHits(), getMisses(), getHitRate(), getEvictions(), getSizeBytes(), this.maxBytes);
+    }
+
+    /**
+     * Sweeps the clock hand over the table until the cache is back under its byte cap.
+     */
+    private void shrink() {
+        synchronized (this.evictionLock) {
+            int slots = this.moves.length;
+            for (int step = 0; step < 2 * slots && this.bytes.get() > this.maxBytes; step++) {
+                int slot = this.clockHand;
+                this.clockHand = (slot + 1) % slots;
+                synchronized (this.locks[(slot / WAYS) & (STRIPES - 1)]) {
+                    if (this.moves[slot] == null) {
+                        continue;
+                    }
+                    if (this.referenced[slot]) {
+                        this.referenced[slot] = false;
+                    } else {
+                        release(slot);
+                    }
+                }
+            }
+        }
+    }
+
+    private void release(int slot) {
+        this.bytes.addAndGet(-entryBytes(this.moves[slot]));
+        this.moves[slot] = null;
+        this.evictions.increment();
+    }
+
+    private static long entryBytes(int[] moves) {
+        return ENTRY_OVERHEAD_BYTES + 4L * moves.length;
+    }
+}
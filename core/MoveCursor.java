@@ -0,0 +1,186 @@
+package core;
+
+/**
+ * The MoveCursor class produces the legal moves of a Position one at a time, so a caller that stops early,
+ * e.g. at the first move that causes an alpha-beta cutoff, only pays for the moves it consumed.
+ * A chosen move, such as the best move stored in a transposition table, comes first if it is legal, then every
+ * capture, then every quiet move. The pieces that can capture, and later the pieces that can step, are found at
+ * once with shifted bitboards; a piece's moves are generated only when the cursor reaches it, in the order of
+ * Position.generateMoves. Checking whether any move exists needs no cursor at all, see movablePieces.
+ * A cursor is reset for every position and reused, so it does not allocate while searching.
+ * @author Samuel White
+ */
+public final class MoveCursor {
+    private static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final int CAPTURES = 0;
+    private static final int QUIETS = 1;
+    private static final int DONE = 2;
+
+    private final int[] pieceMoves = new int[4];
+    private final int[] checkedMoves = new int[4];
+    private int side;
+    private long own;
+    private long enemy;
+    private long occupied;
+    private int phase;
+    private long pending;
+    private int pieceCount;
+    private int pieceIndex;
+    private int first = Moves.NONE;
+    private boolean firstPending;
+
+    /**
+     * Starts producing the moves of a position, captures first.
+     *
+     * @param position The position to generate moves in.
+     * @return This cursor.
+     */
+    public MoveCursor reset(Position position) {
+        return reset(position, Moves.NONE);
+    }
+
+    /**
+     * Starts producing the moves of a position, with a chosen move first and then captures first.
+     *
+     * @param position The position to generate moves in.
+     * @param first The move to produce first, ignored if it is Moves.NONE or not legal in the position.
+     * @return This cursor.
+     */
+    public MoveCursor reset(Position position, int first) {
+        char mover = position.getSideToMove();
+        this.side = mover == 'x' ? 0 : 1;
+        this.own = position.getPieces(mover);
+        this.enemy = position.getPieces(position.getOpponent());
+        this.occupied = this.own | this.enemy;
+        this.phase = CAPTURES;
+        this.pending = jumpSources(this.side, this.own, this.enemy, ~this.occupied);
+        this.pieceCount = 0;
+        this.pieceIndex = 0;
+        this.first = Moves.NONE;
+        this.firstPending = false;
+        if (first != Moves.NONE && isLegal(first)) {
+            this.first = first;
+            this.firstPending = true;
+        }
+        return this;
+    }
+
+    /**
+     * Produces the next move.
+     *
+     * @return The packed move, or Moves.NONE once every move has been produced.
+     */
+    public int next() {
+        if (this.firstPending) {
+            this.firstPending = false;
+            return this.first;
+        }
+        while (true) {
+            while (this.pieceIndex < this.pieceCount) {
+                int move = this.pieceMoves[this.pieceIndex++];
+                if (move != this.first) {
+                    return move;
+                }
+            }
+            if (this.pending == 0) {
+                if (this.phase != CAPTURES) {
+                    this.phase = DONE;
+                    return Moves.NONE;
+                }
+                this.phase = QUIETS;
+                this.pending = stepSources(this.side, this.own, ~this.occupied);
+                continue;
+            }
+            int from = Long.numberOfTrailingZeros(this.pending);
+            this.pending &= this.pending - 1;
+            this.pieceCount = this.phase == CAPTURES ? jumps(from, this.pieceMoves, 0) : steps(from, this.pieceMoves, 0);
+            this.pieceIndex = 0;
+        }
+    }
+
+    /**
+     * Finds every piece of the player to move that has a legal move, without generating any move.
+     *
+     * @param position The position to check.
+     * @return The mask of the movable pieces, zero if the player to move has lost.
+     */
+    public static long movablePieces(Position position) {
+        char mover = position.getSideToMove();
+        int side = mover == 'x' ? 0 : 1;
+        long own = position.getPieces(mover);
+        long enemy = position.getPieces(position.getOpponent());
+        long empty = ~(own | enemy);
+        return stepSources(side, own, empty) | jumpSources(side, own, enemy, empty);
+    }
+
+    /**
+     * Checks a move against the moves of its piece, so a move from a hash collision is never produced.
+     */
+    private boolean isLegal(int move) {
+        int from = Moves.from(move);
+        if ((this.own >>> from & 1L) == 0) {
+            return false;
+        }
+        int count = Moves.isCapture(move) ? jumps(from, this.checkedMoves, 0) : steps(from, this.checkedMoves, 0);
+        for (int i = 0; i < count; i++) {
+            if (this.checkedMoves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int steps(int from, int[] moves, int count) {
+        for (int direction = Position.RIGHT; direction <= Position.LEFT; direction++) {
+            int step = Position.STEP[this.side][direction][from];
+            if (step >= 0 && (this.occupied >>> step & 1L) == 0) {
+                moves[count++] = Moves.encode(from, step);
+            }
+        }
+        return count;
+    }
+
+    private int jumps(int from, int[] moves, int count) {
+        for (int direction = Position.RIGHT; direction <= Position.LEFT; direction++) {
+            int over = Position.STEP[this.side][direction][from];
+            int landing = Position.JUMP[this.side][direction][from];
+            if (landing < 0 || (this.enemy >>> over & 1L) == 0 || (this.occupied >>> landing & 1L) != 0) {
+                continue;
+            }
+            long enemyAfter = this.enemy & ~(1L << over);
+            long occupiedAfter = (this.occupied & ~(1L << from) & ~(1L << over)) | (1L << landing);
+            int followed = 0;
+            for (int next = Position.RIGHT; next <= Position.LEFT; next++) {
+                int nextOver = Position.STEP[this.side][next][landing];
+                int second = Position.JUMP[this.side][next][landing];
+                if (second >= 0 && (enemyAfter >>> nextOver & 1L) != 0 && (occupiedAfter >>> second & 1L) == 0) {
+                    moves[count++] = Moves.encode(from, landing, second);
+                    followed++;
+                }
+            }
+            if (followed == 0) {
+                moves[count++] = Moves.encode(from, landing);
+            }
+        }
+        return count;
+    }
+
+    // 'x' moves towards row 0: right is square - 7, left is square - 9; 'o' the other way, + 9 and + 7
+    private static long stepSources(int side, long own, long empty) {
+        if (side == 0) {
+            return own & (((empty << 7) & NOT_H_FILE) | ((empty << 9) & NOT_A_FILE));
+        }
+        return own & (((empty >>> 9) & NOT_H_FILE) | ((empty >>> 7) & NOT_A_FILE));
+    }
+
+    private static long jumpSources(int side, long own, long enemy, long empty) {
+        if (side == 0) {
+            return own & (((((empty << 7) & NOT_H_FILE) & enemy) << 7) & NOT_H_FILE
+                    | ((((empty << 9) & NOT_A_FILE) & enemy) << 9) & NOT_A_FILE);
+        }
+        return own & (((((empty >>> 9) & NOT_H_FILE) & enemy) >>> 9) & NOT_H_FILE
+                | ((((empty >>> 7) & NOT_A_FILE) & enemy) >>> 7) & NOT_A_FILE);
+    }
+}
@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * The MoveStrategy interface is implemented by every move selection policy the computer can play with.
+ * A strategy must respect the budget it is given and return its best move so far once the budget runs out.
+ * Strategies may keep search state between calls, so one instance should only serve one game at a time.
+ * @author Samuel White
+ */
+public interface MoveStrategy {
+
+    /**
+     * Selects a move for the player to move in the given position.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    int selectMove(Position position, SearchBudget budget);
+}
@@ -0,0 +1,268 @@
+package core;
+
+/**
+ * The Moves class holds the helpers for the packed integer move encoding used by the engine.
+ * Squares are numbered row * 8 + column, matching the {row, column} indices used by CheckersLogic.
+ * A move packs the starting square, the landing square and, for a double jump, the second landing square.
+ * @author Samuel White
+ */
+public final class Moves {
+    public static final int NONE = -1;
+
+    private static final int SQUARE_MASK = 0x3F;
+
+    private Moves() {
+    }
+
+    /**
+     * Encodes a single step or jump.
+     *
+     * @param from The starting square.
+     * @param to The landing square.
+     * @return The packed move.
+     */
+    public static int encode(int from, int to) {
+        return from | (to << 6);
+    }
+
+    /**
+     * Encodes a jump that continues with a second jump.
+     *
+     * @param from The starting square.
+     * @param to The landing square of the first jump.
+     * @param second The landing square of the second jump.
+     * @return The packed move.
+     */
+    public static int encode(int from, int to, int second) {
+        return from | (to << 6) | ((second + 1) << 12);
+    }
+
+    /**
+     * Retrieves the starting square of a move.
+     *
+     * @param move The packed move.
+     * @return The starting square.
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the landing square of the first step or jump of a move.
+     *
+     * @param move The packed move.
+     * @return The landing square.
+     */
+    public static int to(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the landing square of the second jump of a move.
+     *
+     * @param move The packed move.
+     * @return The second landing square, or -1 if the move has no second jump.
+     */
+    public static int second(int move) {
+        return ((move >>> 12) & 0x7F) - 1;
+    }
+
+    /**
+     * Retrieves the square the piece finally stops on.
+     *
+     * @param move The packed move.
+     * @return The final square of the moving piece.
+     */
+    public static int destination(int move) {
+        int second = second(move);
+        return second >= 0 ? second : to(move);
+    }
+
+    /**
+     * Checks if a move captures at least one piece.
+     *
+     * @param move The packed move.
+     * @return true if the move is a jump, false otherwise.
+     */
+    public static boolean isCapture(int move) {
+        return Math.abs(row(to(move)) - row(from(move))) == 2;
+    }
+
+    /**
+     * Checks if a move can never be undone, so no earlier position can repeat after it.
+     * Every piece is a man that only moves forward, so with the current rules every move is irreversible.
+     * Once kings are added, their non-capturing moves must return false here.
+     *
+     * @param move The packed move.
+     * @return true if the move is irreversible.
+     */
+    public static boolean isIrreversible(int move) {
+        return true;
+    }
+
+    /**
+     * Retrieves the number of pieces a move captures.
+     *
+     * @param move The packed move.
+     * @return The number of captured pieces.
+     */
+    public static int captureCount(int move) {
+        if (!isCapture(move)) {
+            return 0;
+        }
+        return second(move) >= 0 ? 2 : 1;
+    }
+
+    /**
+     * Finds the legal move a requested move stands for.
+     * A double jump may leave out its second landing square when the jump can only continue one way.
+     *
+     * @param legal The legal moves.
+     * @param count The number of legal moves in the array.
+     * @param move The requested packed move.
+     * @return The legal move, with the second landing square filled in.
+     * @throws IllegalArgumentException If the move is not legal, or leaves out a second landing square it needs.
+     */
+    public static int resolve(int[] legal, int count, int move) throws IllegalArgumentException {
+        int resolved = NONE;
+        for (int i = 0; i < count; i++) {
+            if (legal[i] == move) {
+                return move;
+            }
+            if (second(move) < 0 && from(legal[i]) == from(move) && to(legal[i]) == to(move)) {
+                if (resolved != NONE) {
+                    throw new IllegalArgumentException("Ambiguous double jump: " + toNotation(move));
+                }
+                resolved = legal[i];
+            }
+        }
+        if (resolved == NONE) {
+            throw new IllegalArgumentException("Illegal move: " + toNotation(move));
+        }
+        return resolved;
+    }
+
+    /**
+     * Converts a row and column into a square number.
+     *
+     * @param row The board row.
+     * @param column The board column.
+     * @return The square number.
+     */
+    public static int square(int row, int column) {
+        return row * 8 + column;
+    }
+
+    /**
+     * Retrieves the row of a square.
+     *
+     * @param square The square number.
+     * @return The board row.
+     */
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Retrieves the column of a square.
+     *
+     * @param square The square number.
+     * @return The board column.
+     */
+    public static int column(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Converts the first step or jump of a move into the {piece, destination} indices CheckersLogic works with.
+     *
+     * @param move The packed move.
+     * @return A 2D array holding the piece location and its destination.
+     */
+    public static int[][] toIndices(int move) {
+        int from = from(move);
+        int to = to(move);
+        return new int[][] {{row(from), column(from)}, {row(to), column(to)}};
+    }
+
+    /**
+     * Retrieves the double jump option number CheckersLogic.selectDoubleOption expects for this move.
+     * CheckersLogic lists the jump to the right before the jump to the left.
+     *
+     * @param move The packed move.
+     * @return 1 or 2 for a double jump, or 0 if the move has no second jump.
+     */
+    public static int doubleJumpOption(int move) {
+        int second = second(move);
+        if (second < 0) {
+            return 0;
+        }
+        return column(second) > column(to(move)) ? 1 : 2;
+    }
+
+    /**
+     * Converts a square into its board coordinate, e.g. "3a".
+     *
+     * @param square The square number.
+     * @return The coordinate string.
+     */
+    public static String squareName(int square) {
+        return "" + (8 - row(square)) + (char) ('a' + column(square));
+    }
+
+    /**
+     * Converts a move into its notation. A single step or jump is written "3a-4b",
+     * a double jump lists every landing square, e.g. "6b-4d-2f".
+     *
+     * @param move The packed move.
+     * @return The move notation.
+     */
+    public static String toNotation(int move) {
+        String output = squareName(from(move)) + "-" + squareName(to(move));
+        if (second(move) >= 0) {
+            output += "-" + squareName(second(move));
+        }
+        return output;
+    }
+
+    /**
+     * Parses a board coordinate such as "3a" into a square number.
+     *
+     * @param name The coordinate string.
+     * @return The square number, or -1 if the coordinate is not on the board.
+     */
+    public static int parseSquare(String name) {
+        if (name.length() != 2) {
+            return -1;
+        }
+        int row = 8 - Character.getNumericValue(name.charAt(0));
+        int column = name.charAt(1) - 'a';
+        if (row < 0 || row > 7 || column < 0 || column > 7) {
+            return -1;
+        }
+        return square(row, column);
+    }
+
+    /**
+     * Parses move notation written by {@link #toNotation(int)}.
+     *
+     * @param notation The move notation.
+     * @return The packed move, or NONE if the notation is malformed.
+     */
+    public static int parse(String notation) {
+        String[] parts = notation.trim().split("-");
+        if (parts.length < 2 || parts.length > 3) {
+            return NONE;
+        }
+        int from = parseSquare(parts[0]);
+        int to = parseSquare(parts[1]);
+        if (from < 0 || to < 0) {
+            return NONE;
+        }
+        if (parts.length == 2) {
+            return encode(from, to);
+        }
+        int second = parseSquare(parts[2]);
+        return second < 0 ? NONE : encode(from, to, second);
+    }
+}
@@ -0,0 +1,330 @@
+package core;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The NeuralEvaluator class scores positions with a small quantized network in the style of NNUE.
+ * The first layer has one input per (own or enemy piece, dark square) pair, seen from each player's side of
+ * the board, so it has 64 inputs per side. Its int16 outputs are the accumulator. The accumulator only changes
+ * by one weight row when a piece appears or disappears, so it is updated incrementally instead of recomputed.
+ * The output layer reads both sides' clipped accumulators, the side to move first, and returns a score in the
+ * same units as MaterialEvaluator.
+ * An instance keeps the accumulators of the line being searched, so it must only be used by one search at a time.
+ * @author Samuel White
+ */
+public class NeuralEvaluator implements Evaluator {
+    private static final int MAGIC = 0x4E4E4B43;
+    private static final int VERSION = 1;
+    private static final int INPUTS = 64;
+    private static final int CLIP = 127;
+    private static final int OUTPUT_DIVISOR = 64;
+    private static final int MAX_STACK = AlphaBetaStrategy.MAX_DEPTH + 2;
+
+    private final int hidden;
+    private final short[] inputWeights;
+    private final short[] inputBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+    private final Accumulator[] stack = new Accumulator[MAX_STACK];
+    private int top;
+    private Accumulator live;
+
+    /**
+     * The first layer outputs for both sides of one position.
+     */
+    public static final class Accumulator {
+        private final NeuralEvaluator network;
+        private final short[][] values;
+        private long hash;
+
+        private Accumulator(NeuralEvaluator network) {
+            this.network = network;
+            this.values = new short[2][network.hidden];
+        }
+
+        /**
+         * Recomputes the accumulator for a position.
+         *
+         * @param position The position.
+         */
+        public void refresh(Position position) {
+            for (int side = 0; side < 2; side++) {
+                System.arraycopy(this.network.inputBiases, 0, this.values[side], 0, this.network.hidden);
+            }
+            this.hash = 0;
+            for (char icon : new char[] {'x', 'o'}) {
+                for (long pieces = position.getPieces(icon); pieces != 0; pieces &= pieces - 1) {
+                    addPiece(icon, Long.numberOfTrailingZeros(pieces));
+                }
+            }
+        }
+
+        /**
+         * Adds a piece to the accumulator.
+         *
+         * @param icon The icon of the piece.
+         * @param square The square of the piece.
+         */
+        public void addPiece(char icon, int square) {
+            update(icon, square, 1);
+        }
+
+        /**
+         * Removes a piece from the accumulator.
+         *
+         * @param icon The icon of the piece.
+         * @param square The square of the piece.
+         */
+        public void removePiece(char icon, int square) {
+            update(icon, square, -1);
+        }
+
+        /**
+         * Scores the pieces in the accumulator.
+         *
+         * @param sideToMove The icon of the player to move.
+         * @return The score from the point of view of the player to move.
+         */
+        public int evaluate(char sideToMove) {
+            return this.network.output(this, sideToMove == 'x' ? 0 : 1);
+        }
+
+        private void update(char icon, int square, int sign) {
+            int hidden = this.network.hidden;
+            short[] weights = this.network.inputWeights;
+            for (int side = 0; side < 2; side++) {
+                int offset = feature(side, icon, square) * hidden;
+                short[] values = this.values[side];
+                for (int i = 0; i < hidden; i++) {
+                    values[i] = (short) (values[i] + sign * weights[offset + i]);
+                }
+            }
+            this.hash ^= Zobrist.pieceKey(icon, square);
+        }
+
+        private void copyFrom(Accumulator other) {
+            System.arraycopy(other.values[0], 0, this.values[0], 0, this.values[0].length);
+            System.arraycopy(other.values[1], 0, this.values[1], 0, this.values[1].length);
+            this.hash = other.hash;
+        }
+    }
+
+    /**
+     * Constructs a NeuralEvaluator from its quantized weights.
+     *
+     * @param hidden The number of accumulator values per side.
+     * @param inputWeights The first layer weights, INPUTS rows of hidden values.
+     * @param inputBiases The first layer biases, hidden values.
+     * @param outputWeights The output weights, hidden values for the side to move then hidden for the other side.
+     * @param outputBias The output bias.
+     */
+    public NeuralEvaluator(int hidden, short[] inputWeights, short[] inputBiases, short[] outputWeights, int outputBias) {
+        if (inputWeights.length != INPUTS * hidden || inputBiases.length != hidden || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Network weights do not match the hidden size " + hidden);
+        }
+        this.hidden = hidden;
+        this.inputWeights = inputWeights;
+        this.inputBiases = inputBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        for (int i = 0; i < MAX_STACK; i++) {
+            this.stack[i] = new Accumulator(this);
+        }
+    }
+
+    /**
+     * Loads a network from a weight file. The file is memory-mapped and copied into the network once.
+     * The little-endian layout is: magic, version, inputs, hidden (int32 each), the first layer weights and
+     * biases, the output weights (int16 each) and the output bias (int32).
+     *
+     * @param file The weight file.
+     * @return The network.
+     * @throws IOException If the file cannot be read or is not a weight file.
+     */
+    public static NeuralEvaluator load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != INPUTS) {
+                throw new IOException("Not a network weight file: " + file);
+            }
+            int hidden = buffer.getInt();
+            if (hidden <= 0 || buffer.remaining() != 2 * (INPUTS * hidden + 3 * hidden) + 4) {
+                throw new IOException("Truncated network weight file: " + file);
+            }
+            short[] inputWeights = new short[INPUTS * hidden];
+            short[] inputBiases = new short[hidden];
+            short[] outputWeights = new short[2 * hidden];
+            buffer.asShortBuffer().get(inputWeights).get(inputBiases).get(outputWeights);
+            buffer.position(buffer.position() + 2 * (inputWeights.length + inputBiases.length + outputWeights.length));
+            return new NeuralEvaluator(hidden, inputWeights, inputBiases, outputWeights, buffer.getInt());
+        }
+    }
+
+    /**
+     * Saves the network to a weight file in the layout read by {@link #load(Path)}.
+     *
+     * @param file The weight file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        int shorts = this.inputWeights.length + this.inputBiases.length + this.outputWeights.length;
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 2 * shorts + 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(INPUTS).putInt(this.hidden);
+        for (short weight : this.inputWeights) {
+            buffer.putShort(weight);
+        }
+        for (short bias : this.inputBiases) {
+            buffer.putShort(bias);
+        }
+        for (short weight : this.outputWeights) {
+            buffer.putShort(weight);
+        }
+        buffer.putInt(this.outputBias);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Creates a hand-set network that scores exactly like MaterialEvaluator.
+     * It is the starting point for training and the fallback when no weight file is available.
+     *
+     * @return The network.
+     */
+    public static NeuralEvaluator materialNetwork() {
+        int hidden = 4;
+        short[] inputWeights = new short[INPUTS * hidden];
+        for (int square = 0; square < 64; square++) {
+            if ((Moves.row(square) + Moves.column(square)) % 2 == 0) {
+                continue;
+            }
+            int dark = square >>> 1;
+            int ownAdvance = 7 - Moves.row(square);
+            int enemyAdvance = Moves.row(square);
+            inputWeights[dark * hidden] = 10;
+            inputWeights[dark * hidden + 2] = (short) ownAdvance;
+            inputWeights[(32 + dark) * hidden + 1] = 10;
+            inputWeights[(32 + dark) * hidden + 3] = (short) enemyAdvance;
+        }
+        short[] outputWeights = new short[2 * hidden];
+        outputWeights[0] = 10 * OUTPUT_DIVISOR;
+        outputWeights[1] = -10 * OUTPUT_DIVISOR;
+        outputWeights[2] = 3 * OUTPUT_DIVISOR;
+        outputWeights[3] = -3 * OUTPUT_DIVISOR;
+        return new NeuralEvaluator(hidden, inputWeights, new short[hidden], outputWeights, 0);
+    }
+
+    /**
+     * Creates an accumulator that follows a live game as pieces are moved and removed,
+     * and lets searches started from the game's position begin from it instead of refreshing.
+     *
+     * @param game The game to follow.
+     * @return The accumulator attached to the game.
+     */
+    public Accumulator attach(CheckersLogic game) {
+        Accumulator accumulator = new Accumulator(this);
+        accumulator.refresh(game.getPosition('x'));
+        game.setAccumulator(accumulator);
+        this.live = accumulator;
+        return accumulator;
+    }
+
+    /**
+     * Scores a position from the point of view of the player to move.
+     * Inside a search this uses the accumulator of the current line, otherwise it is refreshed first.
+     *
+     * @param position The position to score.
+     * @return The score, positive when the player to move is better.
+     */
+    @Override
+    public int evaluate(Position position) {
+        Accumulator current = this.stack[this.top];
+        long pieces = position.hash() ^ Zobrist.sideKey(position.getSideToMove());
+        if (current.hash != pieces) {
+            current.refresh(position);
+        }
+        return output(current, position.getSideToMove() == 'x' ? 0 : 1);
+    }
+
+    /**
+     * Starts a search from the root, copying the attached live accumulator when it holds the same position.
+     *
+     * @param root The root position of the search.
+     */
+    @Override
+    public void reset(Position root) {
+        this.top = 0;
+        long pieces = root.hash() ^ Zobrist.sideKey(root.getSideToMove());
+        if (this.live != null && this.live.hash == pieces) {
+            this.stack[0].copyFrom(this.live);
+        } else {
+            this.stack[0].refresh(root);
+        }
+    }
+
+    /**
+     * Copies the current accumulator one level deeper and applies the pieces the move changes.
+     *
+     * @param parent The position the move is played in.
+     * @param move The packed move.
+     */
+    @Override
+    public void push(Position parent, int move) {
+        Accumulator next = this.stack[++this.top];
+        next.copyFrom(this.stack[this.top - 1]);
+        char mover = parent.getSideToMove();
+        char opponent = parent.getOpponent();
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        next.removePiece(mover, from);
+        next.addPiece(mover, Moves.destination(move));
+        if (Moves.isCapture(move)) {
+            next.removePiece(opponent, (from + to) >>> 1);
+        }
+        if (Moves.second(move) >= 0) {
+            next.removePiece(opponent, (to + Moves.second(move)) >>> 1);
+        }
+    }
+
+    /**
+     * Returns to the accumulator one level up.
+     */
+    @Override
+    public void pop() {
+        this.top--;
+    }
+
+    private int output(Accumulator accumulator, int sideToMove) {
+        short[] own = accumulator.values[sideToMove];
+        short[] other = accumulator.values[1 - sideToMove];
+        int sum = this.outputBias;
+        for (int i = 0; i < this.hidden; i++) {
+            sum += clip(own[i]) * this.outputWeights[i] + clip(other[i]) * this.outputWeights[this.hidden + i];
+        }
+        return sum / OUTPUT_DIVISOR;
+    }
+
+    private static int clip(short value) {
+        return Math.max(0, Math.min(CLIP, value));
+    }
+
+    /**
+     * Retrieves the input a piece feeds from one side's point of view.
+     * Each side sees the board from its own end, so 'o' sees every square rotated half a turn.
+     */
+    private static int feature(int side, char icon, int square) {
+        char perspective = side == 0 ? 'x' : 'o';
+        int seen = side == 0 ? square : 63 - square;
+        return (icon == perspective ? 0 : 32) + (seen >>> 1);
+    }
+}
@@ -12,7 +12,7 @@ public class Player {
     public int[][] doubleJumpLocations;
     public int[] doubleJumpPiece;
 
-    private int pieceCount = 12;
+    private int pieceCount = BoardGeometry.STANDARD.getMenPerSide();
 
     /**
      * Constructs a Player object with the specified player icon.
@@ -48,6 +48,15 @@ public class Player {
         this.pieceCount--;
     }
 
+    /**
+     * Sets the count of remaining game pieces, e.g. when a saved position is restored.
+     *
+     * @param pieceCount The count of remaining game pieces.
+     */
+    public void setPieceCount(int pieceCount) {
+        this.pieceCount = pieceCount;
+    }
+
     /**
      * Retrieves the other player in the game.
      *
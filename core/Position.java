@@ -0,0 +1,366 @@
+package core;
+
+/**
+ * The Position class is a compact, immutable copy of a checkers position used by the engine.
+ * Each side's pieces are stored as a 64 bit mask with one bit per square (row * 8 + column).
+ * Moves follow the same rules as CheckersLogic: pieces step or jump forward only, and a jump
+ * continues automatically when one further jump exists or lets the player choose when two exist.
+ * @author Samuel White
+ */
+public final class Position {
+    public static final int MAX_MOVES = 64;
+
+    private static final String INITIAL = "x:_o_o_o_o/o_o_o_o_/_o_o_o_o/________/________/x_x_x_x_/_x_x_x_x/x_x_x_x_";
+
+    static final int RIGHT = 0;
+    static final int LEFT = 1;
+
+    // [side][direction][square] -> target square or -1, side 0 is 'x' moving up, side 1 is 'o' moving down
+    static final int[][][] STEP = new int[2][2][64];
+    static final int[][][] JUMP = new int[2][2][64];
+
+    static {
+        for (int side = 0; side < 2; side++) {
+            int direction = side == 0 ? -1 : 1;
+            for (int square = 0; square < 64; square++) {
+                int row = Moves.row(square);
+                int column = Moves.column(square);
+                STEP[side][RIGHT][square] = target(row + direction, column + 1);
+                STEP[side][LEFT][square] = target(row + direction, column - 1);
+                JUMP[side][RIGHT][square] = target(row + 2 * direction, column + 2);
+                JUMP[side][LEFT][square] = target(row + 2 * direction, column - 2);
+            }
+        }
+    }
+
+    private final long xPieces;
+    private final long oPieces;
+    private final char sideToMove;
+    private long hash;
+    private long flippedHash;
+
+    /**
+     * Constructs a Position from the piece masks of both sides.
+     *
+     * @param xPieces The mask of 'x' pieces.
+     * @param oPieces The mask of 'o' pieces.
+     * @param sideToMove The icon of the player to move.
+     */
+    public Position(long xPieces, long oPieces, char sideToMove) {
+        this.xPieces = xPieces;
+        this.oPieces = oPieces;
+        this.sideToMove = sideToMove;
+    }
+
+    private Position(long xPieces, long oPieces, char sideToMove, long hash, long flippedHash) {
+        this(xPieces, oPieces, sideToMove);
+        this.hash = hash;
+        this.flippedHash = flippedHash;
+    }
+
+    /**
+     * Creates the standard starting position with 'x' to move.
+     *
+     * @return The starting position.
+     */
+    public static Position initial() {
+        return parse(INITIAL);
+    }
+
+    /**
+     * Creates a Position from the live state of a game.
+     *
+     * @param game The game to copy.
+     * @return The position of the game with the current player to move.
+     */
+    public static Position of(CheckersLogic game) {
+        return game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon());
+    }
+
+    /**
+     * Creates a Position from a board array.
+     *
+     * @param board The 8x8 board of 'x', 'o' and '_' characters.
+     * @param sideToMove The icon of the player to move.
+     * @return The position.
+     */
+    public static Position fromBoard(char[][] board, char sideToMove) {
+        long x = 0;
+        long o = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                if (board[row][column] == 'x') {
+                    x |= 1L << Moves.square(row, column);
+                } else if (board[row][column] == 'o') {
+                    o |= 1L << Moves.square(row, column);
+                }
+            }
+        }
+        return new Position(x, o, sideToMove);
+    }
+
+    /**
+     * Retrieves the pieces of one side.
+     *
+     * @param icon The icon of the side.
+     * @return The mask of that side's pieces.
+     */
+    public long getPieces(char icon) {
+        return icon == 'x' ? this.xPieces : this.oPieces;
+    }
+
+    /**
+     * Retrieves the icon of the player to move.
+     *
+     * @return 'x' or 'o'.
+     */
+    public char getSideToMove() {
+        return this.sideToMove;
+    }
+
+    /**
+     * Retrieves the icon of the player who is not to move.
+     *
+     * @return 'x' or 'o'.
+     */
+    public char getOpponent() {
+        return this.sideToMove == 'x' ? 'o' : 'x';
+    }
+
+    /**
+     * Retrieves the piece on a square.
+     *
+     * @param square The square number.
+     * @return 'x', 'o' or '_' for an empty square.
+     */
+    public char pieceAt(int square) {
+        if ((this.xPieces >>> square & 1L) != 0) {
+            return 'x';
+        }
+        if ((this.oPieces >>> square & 1L) != 0) {
+            return 'o';
+        }
+        return '_';
+    }
+
+    /**
+     * Retrieves the Zobrist hash of the position.
+     *
+     * @return The position hash.
+     */
+    public long hash() {
+        if (this.hash == 0) {
+            this.hash = Zobrist.hash(this.xPieces, this.oPieces, this.sideToMove);
+        }
+        return this.hash;
+    }
+
+    /**
+     * Retrieves the hash shared by the position and its flipped twin, see Symmetry. Stores keyed by this hash
+     * hold one entry for both, and the entry describes the canonical position, the twin with 'x' to move.
+     *
+     * @return The canonical position hash.
+     */
+    public long canonicalHash() {
+        if (this.flippedHash == 0) {
+            this.flippedHash = Zobrist.flippedHash(this.xPieces, this.oPieces, this.sideToMove);
+        }
+        return this.sideToMove == 'x' ? hash() : this.flippedHash;
+    }
+
+    /**
+     * Retrieves the number of pieces a side has left.
+     *
+     * @param icon The icon of the side.
+     * @return The piece count.
+     */
+    public int pieceCount(char icon) {
+        return Long.bitCount(getPieces(icon));
+    }
+
+    /**
+     * Generates every legal move for the player to move.
+     * Steps and jumps are listed per piece, with the jump to the right before the jump to the left.
+     *
+     * @param moves The array the packed moves are written to, at least MAX_MOVES long.
+     * @return The number of moves written.
+     */
+    public int generateMoves(int[] moves) {
+        int side = this.sideToMove == 'x' ? 0 : 1;
+        long own = getPieces(this.sideToMove);
+        long enemy = getPieces(getOpponent());
+        long occupied = own | enemy;
+        int count = 0;
+
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            for (int direction = RIGHT; direction <= LEFT; direction++) {
+                int step = STEP[side][direction][from];
+                if (step < 0) {
+                    continue;
+                }
+                if ((occupied >>> step & 1L) == 0) {
+                    moves[count++] = Moves.encode(from, step);
+                    continue;
+                }
+                int landing = JUMP[side][direction][from];
+                if (landing < 0 || (enemy >>> step & 1L) == 0 || (occupied >>> landing & 1L) != 0) {
+                    continue;
+                }
+                long enemyAfter = enemy & ~(1L << step);
+                long occupiedAfter = (occupied & ~(1L << from) & ~(1L << step)) | (1L << landing);
+                int followed = 0;
+                for (int next = RIGHT; next <= LEFT; next++) {
+                    int over = STEP[side][next][landing];
+                    int second = JUMP[side][next][landing];
+                    if (second >= 0 && (enemyAfter >>> over & 1L) != 0 && (occupiedAfter >>> second & 1L) == 0) {
+                        moves[count++] = Moves.encode(from, landing, second);
+                        followed++;
+                    }
+                }
+                if (followed == 0) {
+                    moves[count++] = Moves.encode(from, landing);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the player to move has any legal move, without generating the moves, see MoveCursor.movablePieces.
+     *
+     * @return true if a move exists, false otherwise.
+     */
+    public boolean hasMoves() {
+        return MoveCursor.movablePieces(this) != 0;
+    }
+
+    /**
+     * Plays a move and returns the resulting position with the other player to move.
+     * The move is assumed to be legal in this position.
+     *
+     * @param move The packed move.
+     * @return The new position.
+     */
+    public Position play(int move) {
+        char mover = this.sideToMove;
+        char opponent = getOpponent();
+        long own = getPieces(mover);
+        long enemy = getPieces(opponent);
+        long hash = hash() ^ Zobrist.sideKey(mover) ^ Zobrist.sideKey(opponent);
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int second = Moves.second(move);
+        // the side keys cancel out in the flipped hash the same way, only the piece keys differ
+        long flipped = Zobrist.sideKey(mover) ^ Zobrist.sideKey(opponent);
+
+        own = (own & ~(1L << from)) | (1L << to);
+        hash ^= Zobrist.pieceKey(mover, from) ^ Zobrist.pieceKey(mover, to);
+        flipped ^= Zobrist.flippedPieceKey(mover, from) ^ Zobrist.flippedPieceKey(mover, to);
+        if (Moves.isCapture(move)) {
+            int captured = (from + to) >>> 1;
+            enemy &= ~(1L << captured);
+            hash ^= Zobrist.pieceKey(opponent, captured);
+            flipped ^= Zobrist.flippedPieceKey(opponent, captured);
+        }
+        if (second >= 0) {
+            int captured = (to + second) >>> 1;
+            own = (own & ~(1L << to)) | (1L << second);
+            enemy &= ~(1L << captured);
+            hash ^= Zobrist.pieceKey(mover, to) ^ Zobrist.pieceKey(mover, second) ^ Zobrist.pieceKey(opponent, captured);
+            flipped ^= Zobrist.flippedPieceKey(mover, to) ^ Zobrist.flippedPieceKey(mover, second)
+                    ^ Zobrist.flippedPieceKey(opponent, captured);
+        }
+        // the flipped hash is only carried along once a canonical hash was asked for on the line
+        flipped = this.flippedHash == 0 ? 0 : this.flippedHash ^ flipped;
+
+        if (mover == 'x') {
+            return new Position(own, enemy, 'o', hash, flipped);
+        }
+        return new Position(enemy, own, 'x', hash, flipped);
+    }
+
+    /**
+     * Copies the position into a board array in the CheckersLogic layout.
+     *
+     * @return An 8x8 board of 'x', 'o' and '_' characters.
+     */
+    public char[][] toBoard() {
+        char[][] board = new char[8][8];
+        for (int square = 0; square < 64; square++) {
+            board[Moves.row(square)][Moves.column(square)] = pieceAt(square);
+        }
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Position)) {
+            return false;
+        }
+        Position position = (Position) other;
+        return this.xPieces == position.xPieces && this.oPieces == position.oPieces && this.sideToMove == position.sideToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = hash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Converts the position into text: the side to move, a colon and the eight rows from the top separated by '/'.
+     * For example the starting position begins "x:_o_o_o_o/o_o_o_o_/...".
+     *
+     * @return The position string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(74);
+        builder.append(this.sideToMove).append(':');
+        for (int square = 0; square < 64; square++) {
+            if (square > 0 && Moves.column(square) == 0) {
+                builder.append('/');
+            }
+            builder.append(pieceAt(square));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses a position string written by {@link #toString()}.
+     *
+     * @param text The position string.
+     * @return The position.
+     * @throws IllegalArgumentException If the text is not a valid position string.
+     */
+    public static Position parse(String text) throws IllegalArgumentException {
+        String trimmed = text.trim();
+        if (trimmed.length() != 73 || trimmed.charAt(1) != ':') {
+            throw new IllegalArgumentException("Invalid position: " + text);
+        }
+        char side = trimmed.charAt(0);
+        if (side != 'x' && side != 'o') {
+            throw new IllegalArgumentException("Invalid side to move: " + side);
+        }
+        String[] rows = trimmed.substring(2).split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("Invalid position: " + text);
+        }
+        char[][] board = new char[8][];
+        for (int row = 0; row < 8; row++) {
+            if (rows[row].length() != 8 || !rows[row].matches("[xo_]{8}")) {
+                throw new IllegalArgumentException("Invalid row: " + rows[row]);
+            }
+            board[row] = rows[row].toCharArray();
+        }
+        return fromBoard(board, side);
+    }
+
+    private static int target(int row, int column) {
+        if (row < 0 || row > 7 || column < 0 || column > 7) {
+            return -1;
+        }
+        return Moves.square(row, column);
+    }
+}
@@ -0,0 +1,80 @@
+package core;
+import java.util.Arrays;
+
+/**
+ * The PositionBatch class stores many positions in a structure of arrays layout for batch evaluation.
+ * Each position is its 'x' mask, its 'o' mask and whether 'x' is to move, kept in three parallel arrays.
+ * @author Samuel White
+ */
+public class PositionBatch {
+    long[] xPieces;
+    long[] oPieces;
+    boolean[] xToMove;
+    int size;
+
+    /**
+     * Constructs an empty PositionBatch.
+     *
+     * @param capacity The initial number of positions the batch can hold.
+     */
+    public PositionBatch(int capacity) {
+        this.xPieces = new long[capacity];
+        this.oPieces = new long[capacity];
+        this.xToMove = new boolean[capacity];
+    }
+
+    /**
+     * Adds a position to the batch.
+     *
+     * @param position The position to add.
+     */
+    public void add(Position position) {
+        add(position.getPieces('x'), position.getPieces('o'), position.getSideToMove());
+    }
+
+    /**
+     * Adds a packed position to the batch.
+     *
+     * @param x The mask of 'x' pieces.
+     * @param o The mask of 'o' pieces.
+     * @param sideToMove The icon of the player to move.
+     */
+    public void add(long x, long o, char sideToMove) {
+        if (this.size == this.xPieces.length) {
+            int capacity = Math.max(16, this.size * 2);
+            this.xPieces = Arrays.copyOf(this.xPieces, capacity);
+            this.oPieces = Arrays.copyOf(this.oPieces, capacity);
+            this.xToMove = Arrays.copyOf(this.xToMove, capacity);
+        }
+        this.xPieces[this.size] = x;
+        this.oPieces[this.size] = o;
+        this.xToMove[this.size] = sideToMove == 'x';
+        this.size++;
+    }
+
+    /**
+     * Retrieves a position of the batch.
+     *
+     * @param index The index of the position.
+     * @return The position.
+     */
+    public Position get(int index) {
+        return new Position(this.xPieces[index], this.oPieces[index], this.xToMove[index] ? 'x' : 'o');
+    }
+
+    /**
+     * Retrieves the number of positions in the batch.
+     *
+     * @return The batch size.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes every position from the batch, keeping its arrays for reuse.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+}
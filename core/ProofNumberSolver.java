@@ -0,0 +1,312 @@
+package core;
+import java.util.Arrays;
+
+/**
+ * The ProofNumberSolver class proves the exact result of a position with depth-first proof-number search (df-pn).
+ * Every position has a proof number, the least number of positions still to prove for the player to move to win,
+ * and a disproof number, the least number to prove a loss. The search always expands the position that is
+ * cheapest to settle and stops once the root is proven or disproven, or the budget runs out.
+ * The numbers are kept in a bounded transposition table; when it is full, unproven entries that took the least
+ * work to compute are replaced first, and entries missing from it are simply searched again. A position and its
+ * flipped twin (see Symmetry) have the same result and share an entry.
+ * Every move advances a man and a player who cannot move loses, so no position repeats, every game ends and
+ * a position is always either a win or a loss; DRAW is never the answer under these rules.
+ * @author Samuel White
+ */
+public class ProofNumberSolver {
+    /** A proof or disproof number that can no longer be reached. */
+    public static final int INFINITY = 100_000_000;
+
+    private static final int ENTRY_BYTES = 24;
+
+    /**
+     * The proven value of a position for the player to move.
+     */
+    public enum Result {
+        WIN,
+        LOSS,
+        DRAW,
+        UNKNOWN
+    }
+
+    /**
+     * The answer of one solve call.
+     */
+    public static final class Solution {
+        private final Result result;
+        private final int[] line;
+        private final long nodes;
+        private final long millis;
+
+        private Solution(Result result, int[] line, long nodes, long millis) {
+            this.result = result;
+            this.line = line;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+
+        /**
+         * Retrieves the result.
+         *
+         * @return WIN or LOSS for the player to move, or UNKNOWN if the budget ran out.
+         */
+        public Result getResult() {
+            return this.result;
+        }
+
+        /**
+         * Retrieves the proving line: the winner's moves that keep the win against the loser's most stubborn defence,
+         * up to the end of the game, or shorter if the budget ran out while the line was followed.
+         *
+         * @return The packed moves from the solved position, empty if the result is unknown.
+         */
+        public int[] getLine() {
+            return this.line.clone();
+        }
+
+        /**
+         * Retrieves the number of positions expanded.
+         *
+         * @return The node count.
+         */
+        public long getNodes() {
+            return this.nodes;
+        }
+
+        /**
+         * Retrieves the time the solve took.
+         *
+         * @return The elapsed time in milliseconds.
+         */
+        public long getMillis() {
+            return this.millis;
+        }
+    }
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final long[] work;
+    private final int mask;
+    private final int[][] moveStack = new int[Position.MAX_MOVES * 4][Position.MAX_MOVES];
+    private SearchBudget budget;
+    private long expanded;
+
+    /**
+     * Constructs a ProofNumberSolver with a transposition table of about maxBytes.
+     *
+     * @param maxBytes The size cap of the table in bytes.
+     */
+    public ProofNumberSolver(long maxBytes) {
+        if (maxBytes < ENTRY_BYTES) {
+            throw new IllegalArgumentException("Table size is too small: " + maxBytes);
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1 << 28, maxBytes / ENTRY_BYTES));
+        this.keys = new long[entries];
+        this.proofs = new int[entries];
+        this.disproofs = new int[entries];
+        this.work = new long[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * Solves a game from its current position.
+     *
+     * @param game The game, at the start of a turn.
+     * @param budget The budget limiting the solve; every expanded position counts as a node.
+     * @return The result for the player to move and its proving line.
+     */
+    public Solution solve(CheckersLogic game, SearchBudget budget) {
+        return solve(game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon()), budget);
+    }
+
+    /**
+     * Solves a position.
+     *
+     * @param position The position.
+     * @param budget The budget limiting the solve; every expanded position counts as a node.
+     * @return The result for the player to move and its proving line.
+     */
+    public Solution solve(Position position, SearchBudget budget) {
+        this.budget = budget;
+        this.expanded = 0;
+        int[] numbers = new int[2];
+        search(position, INFINITY, INFINITY, 0, numbers);
+        Result result = numbers[0] == 0 ? Result.WIN : numbers[1] == 0 ? Result.LOSS : Result.UNKNOWN;
+        int[] line = result == Result.UNKNOWN ? new int[0] : provingLine(position, result);
+        return new Solution(result, line, budget.getNodes(), budget.getElapsedMillis());
+    }
+
+    /**
+     * Forgets every stored proof, e.g. to time solves independently.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.proofs, 0);
+        Arrays.fill(this.disproofs, 0);
+        Arrays.fill(this.work, 0);
+    }
+
+    /**
+     * Expands a position until its proof number reaches proofLimit or its disproof number reaches disproofLimit,
+     * leaving both numbers in numbers[0] and numbers[1].
+     */
+    private void search(Position position, int proofLimit, int disproofLimit, int ply, int[] numbers) {
+        int[] moves = this.moveStack[ply];
+        int count = position.generateMoves(moves);
+        if (count == 0) {
+            numbers[0] = INFINITY;
+            numbers[1] = 0;
+            store(position.canonicalHash(), INFINITY, 0, 1);
+            return;
+        }
+        long startNodes = this.expanded;
+        Position[] children = new Position[count];
+        int[] childProofs = new int[count];
+        int[] childDisproofs = new int[count];
+        int[] child = new int[2];
+        for (int i = 0; i < count; i++) {
+            children[i] = position.play(moves[i]);
+            lookUp(children[i], child);
+            childProofs[i] = child[0];
+            childDisproofs[i] = child[1];
+        }
+        while (true) {
+            // the player to move wins if one child is lost for the opponent, and loses if every child is won
+            int proof = INFINITY;
+            int disproof = 0;
+            int best = -1;
+            int bestDisproof = INFINITY;
+            int secondDisproof = INFINITY;
+            int bestProof = 0;
+            for (int i = 0; i < count; i++) {
+                // a child reached through another move order may have progressed since it was last read
+                if (find(children[i].canonicalHash(), child)) {
+                    childProofs[i] = child[0];
+                    childDisproofs[i] = child[1];
+                }
+                proof = Math.min(proof, childDisproofs[i]);
+                disproof = Math.min(INFINITY, disproof + childProofs[i]);
+                if (childDisproofs[i] < bestDisproof) {
+                    secondDisproof = bestDisproof;
+                    bestDisproof = childDisproofs[i];
+                    bestProof = childProofs[i];
+                    best = i;
+                } else if (childDisproofs[i] < secondDisproof) {
+                    secondDisproof = childDisproofs[i];
+                }
+            }
+            if (proof >= proofLimit || disproof >= disproofLimit || !this.budget.visit()) {
+                numbers[0] = proof;
+                numbers[1] = disproof;
+                store(position.canonicalHash(), proof, disproof, this.expanded - startNodes + 1);
+                return;
+            }
+            this.expanded++;
+            int childProofLimit = Math.min(INFINITY, disproofLimit - disproof + bestProof);
+            int childDisproofLimit = Math.min(proofLimit, secondDisproof == INFINITY ? INFINITY : secondDisproof + 1);
+            search(children[best], childProofLimit, childDisproofLimit, ply + 1, child);
+            childProofs[best] = child[0];
+            childDisproofs[best] = child[1];
+        }
+    }
+
+    /**
+     * Reads the numbers of a position from the table, or the numbers of an unexpanded position if it is missing.
+     * A position without moves is recognized as lost without expanding it.
+     */
+    private void lookUp(Position position, int[] numbers) {
+        long hash = position.canonicalHash();
+        if (find(hash, numbers)) {
+            return;
+        } else if (!position.hasMoves()) {
+            numbers[0] = INFINITY;
+            numbers[1] = 0;
+            store(hash, INFINITY, 0, 1);
+        } else {
+            numbers[0] = 1;
+            numbers[1] = 1;
+        }
+    }
+
+    private boolean find(long hash, int[] numbers) {
+        int index = (int) hash & this.mask;
+        if (this.keys[index] != hash || this.work[index] == 0) {
+            return false;
+        }
+        numbers[0] = this.proofs[index];
+        numbers[1] = this.disproofs[index];
+        return true;
+    }
+
+    private long work(long hash) {
+        int index = (int) hash & this.mask;
+        return this.keys[index] == hash ? this.work[index] : 0;
+    }
+
+    private void store(long hash, int proof, int disproof, long effort) {
+        int index = (int) hash & this.mask;
+        boolean proven = proof == 0 || disproof == 0;
+        boolean oldProven = this.work[index] > 0 && (this.proofs[index] == 0 || this.disproofs[index] == 0);
+        if (this.keys[index] != hash && this.work[index] > 0 && (oldProven && !proven || !proven && this.work[index] > effort)) {
+            return;
+        }
+        this.keys[index] = hash;
+        this.proofs[index] = proof;
+        this.disproofs[index] = disproof;
+        this.work[index] = Math.max(1, effort);
+    }
+
+    /**
+     * Follows the proof from the root: the winner plays a move that leaves the loser lost, the loser plays the move
+     * whose loss took the most work to prove. Positions whose proof was evicted from the table are solved again.
+     * The line stops early if the budget runs out before it is complete.
+     */
+    private int[] provingLine(Position position, Result result) {
+        int[] line = new int[0];
+        Position current = position;
+        boolean winnerToMove = result == Result.WIN;
+        int[] moves = new int[Position.MAX_MOVES];
+        int[] numbers = new int[2];
+        while (true) {
+            int count = current.generateMoves(moves);
+            if (count == 0) {
+                return line;
+            }
+            int chosen = Moves.NONE;
+            long chosenWork = -1;
+            for (int pass = 0; pass < 2 && chosen == Moves.NONE; pass++) {
+                for (int i = 0; i < count; i++) {
+                    Position next = current.play(moves[i]);
+                    lookUp(next, numbers);
+                    if (numbers[0] != 0 && numbers[1] != 0) {
+                        // the winner only re-solves a move once no stored move is proven, the loser must refute them all
+                        if (winnerToMove && pass == 0) {
+                            continue;
+                        }
+                        search(next, INFINITY, INFINITY, 0, numbers);
+                        if (numbers[0] != 0 && numbers[1] != 0) {
+                            return line;
+                        }
+                    }
+                    if (winnerToMove && numbers[1] == 0) {
+                        chosen = moves[i];
+                        break;
+                    }
+                    long effort = work(next.canonicalHash());
+                    if (!winnerToMove && numbers[0] == 0 && effort > chosenWork) {
+                        chosen = moves[i];
+                        chosenWork = effort;
+                    }
+                }
+            }
+            if (chosen == Moves.NONE) {
+                return line;
+            }
+            line = Arrays.copyOf(line, line.length + 1);
+            line[line.length - 1] = chosen;
+            current = current.play(chosen);
+            winnerToMove = !winnerToMove;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package core;
+import java.util.Random;
+
+/**
+ * The RandomStrategy class plays a uniformly random legal move.
+ * @author Samuel White
+ */
+public class RandomStrategy implements MoveStrategy {
+    private final Random random;
+    private final int[] moves = new int[Position.MAX_MOVES];
+
+    /**
+     * Constructs a RandomStrategy with an unseeded random generator.
+     */
+    public RandomStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructs a RandomStrategy with the given random generator.
+     *
+     * @param random The random generator used to pick moves.
+     */
+    public RandomStrategy(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Selects a random legal move.
+     *
+     * @param position The position to move in.
+     * @param budget The budget limiting the work spent on this move.
+     * @return The packed move, or Moves.NONE if the player has no legal move.
+     */
+    @Override
+    public int selectMove(Position position, SearchBudget budget) {
+        budget.visit();
+        int count = position.generateMoves(this.moves);
+        if (count == 0) {
+            return Moves.NONE;
+        }
+        return this.moves[this.random.nextInt(count)];
+    }
+}
@@ -0,0 +1,106 @@
+package core;
+
+/**
+ * The SearchBudget class tracks the work done by one move search against its SearchLimits.
+ * Strategies call {@link #visit()} for every position they look at and stop once it returns false.
+ * A budget is used by a single search thread, but {@link #stop()} may be called from any thread.
+ * @author Samuel White
+ */
+public class SearchBudget {
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    private final SearchLimits limits;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private long nodes;
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a SearchBudget that starts counting now.
+     *
+     * @param limits The limits to enforce.
+     */
+    public SearchBudget(SearchLimits limits) {
+        this.limits = limits;
+        this.startNanos = System.nanoTime();
+        if (limits.getMaxMillis() == SearchLimits.UNLIMITED) {
+            this.deadlineNanos = Long.MAX_VALUE;
+        } else {
+            this.deadlineNanos = this.startNanos + limits.getMaxMillis() * 1_000_000L;
+        }
+    }
+
+    /**
+     * Records a visited position and checks whether the search may continue.
+     * The clock is only read every CLOCK_CHECK_INTERVAL nodes to keep this call cheap.
+     *
+     * @return true if the search may continue, false once the budget is spent or the search was stopped.
+     */
+    public boolean visit() {
+        if (this.stopped) {
+            return false;
+        }
+        this.nodes++;
+        if (this.nodes >= this.limits.getMaxNodes()) {
+            this.stopped = true;
+        } else if (this.nodes % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - this.deadlineNanos > 0) {
+            this.stopped = true;
+        }
+        return !this.stopped;
+    }
+
+    /**
+     * Checks if the budget is spent or the search was stopped.
+     *
+     * @return true if the search must stop, false otherwise.
+     */
+    public boolean isExhausted() {
+        if (!this.stopped && System.nanoTime() - this.deadlineNanos > 0) {
+            this.stopped = true;
+        }
+        return this.stopped;
+    }
+
+    /**
+     * Checks if the search was stopped, without reading the clock.
+     *
+     * @return true if the budget was found spent or the search was stopped, false otherwise.
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Stops the search at its next visited position.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Retrieves the number of positions visited so far.
+     *
+     * @return The node count.
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Retrieves the time spent since the budget was created.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - this.startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Retrieves the limits this budget enforces.
+     *
+     * @return The search limits.
+     */
+    public SearchLimits getLimits() {
+        return this.limits;
+    }
+}
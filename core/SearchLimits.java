@@ -0,0 +1,104 @@
+package core;
+
+/**
+ * The SearchLimits class describes how much work a move strategy may spend on one move.
+ * A limit is expressed as a node budget, a time budget in milliseconds, a search depth, or any combination.
+ * @author Samuel White
+ */
+public final class SearchLimits {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long maxNodes;
+    private final long maxMillis;
+    private final int maxDepth;
+
+    /**
+     * Constructs a SearchLimits object with the given node and time budgets.
+     *
+     * @param maxNodes The maximum number of positions a strategy may visit, or UNLIMITED.
+     * @param maxMillis The maximum thinking time in milliseconds, or UNLIMITED.
+     */
+    public SearchLimits(long maxNodes, long maxMillis) {
+        this(maxNodes, maxMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a SearchLimits object with the given node and time budgets and depth limit.
+     *
+     * @param maxNodes The maximum number of positions a strategy may visit, or UNLIMITED.
+     * @param maxMillis The maximum thinking time in milliseconds, or UNLIMITED.
+     * @param maxDepth The maximum search depth in plies, or Integer.MAX_VALUE.
+     */
+    public SearchLimits(long maxNodes, long maxMillis, int maxDepth) {
+        if (maxNodes <= 0 || maxMillis <= 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("Search limits must be positive.");
+        }
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Creates limits bounded only by a node budget.
+     *
+     * @param maxNodes The maximum number of positions a strategy may visit.
+     * @return The search limits.
+     */
+    public static SearchLimits nodes(long maxNodes) {
+        return new SearchLimits(maxNodes, UNLIMITED);
+    }
+
+    /**
+     * Creates limits bounded only by a time budget.
+     *
+     * @param maxMillis The maximum thinking time in milliseconds.
+     * @return The search limits.
+     */
+    public static SearchLimits millis(long maxMillis) {
+        return new SearchLimits(UNLIMITED, maxMillis);
+    }
+
+    /**
+     * Creates limits bounded only by a search depth. Strategies that do not search in plies ignore it.
+     *
+     * @param maxDepth The maximum search depth in plies.
+     * @return The search limits.
+     */
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(UNLIMITED, UNLIMITED, maxDepth);
+    }
+
+    /**
+     * Retrieves the node budget.
+     *
+     * @return The maximum number of positions, or UNLIMITED.
+     */
+    public long getMaxNodes() {
+        return this.maxNodes;
+    }
+
+    /**
+     * Retrieves the time budget.
+     *
+     * @return The maximum thinking time in milliseconds, or UNLIMITED.
+     */
+    public long getMaxMillis() {
+        return this.maxMillis;
+    }
+
+    /**
+     * Retrieves the depth limit.
+     *
+     * @return The maximum search depth in plies, or Integer.MAX_VALUE.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + (this.maxNodes == UNLIMITED ? "unlimited" : this.maxNodes)
+                + " millis=" + (this.maxMillis == UNLIMITED ? "unlimited" : this.maxMillis)
+                + " depth=" + (this.maxDepth == Integer.MAX_VALUE ? "unlimited" : this.maxDepth);
+    }
+}
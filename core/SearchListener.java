@@ -0,0 +1,20 @@
+package core;
+
+/**
+ * The SearchListener interface receives the progress of a search, e.g. to print it for an engine protocol.
+ * It is called on the search thread, so implementations should return quickly.
+ * @author Samuel White
+ */
+public interface SearchListener {
+
+    /**
+     * Receives the result of a completed iteration.
+     *
+     * @param depth The depth of the iteration in plies.
+     * @param score The score of the best move, from the point of view of the player to move.
+     * @param nodes The number of positions visited so far.
+     * @param elapsedMillis The time spent so far in milliseconds.
+     * @param principalVariation The expected line of play, starting with the best move.
+     */
+    void iterationCompleted(int depth, int score, long nodes, long elapsedMillis, int[] principalVariation);
+}
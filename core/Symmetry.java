@@ -0,0 +1,94 @@
+package core;
+
+/**
+ * The Symmetry class maps positions and moves between a position and its flipped twin, so stores keyed by
+ * position can hold one entry for both. The twin swaps the colors of every piece, rotates the board half a turn
+ * (square s becomes 63 - s) and gives the move to the other player: 'x' men moving up become 'o' men moving down
+ * on the same dark squares, so both positions have the same moves, rotated, and the same value for the player
+ * to move. The canonical form of a position is the twin with 'x' to move, with the hash Position.canonicalHash.
+ * The left-right mirror is not a symmetry of this board: it moves every piece from a dark square to a light one.
+ * @author Samuel White
+ */
+public final class Symmetry {
+
+    private Symmetry() {
+    }
+
+    /**
+     * Checks if a position is in canonical form.
+     *
+     * @param position The position.
+     * @return true if 'x' is to move, false otherwise.
+     */
+    public static boolean isCanonical(Position position) {
+        return position.getSideToMove() == 'x';
+    }
+
+    /**
+     * Builds the flipped twin of a position.
+     *
+     * @param position The position.
+     * @return The position with colors swapped, the board rotated half a turn and the other player to move.
+     */
+    public static Position flip(Position position) {
+        return new Position(Long.reverse(position.getPieces('o')), Long.reverse(position.getPieces('x')), position.getOpponent());
+    }
+
+    /**
+     * Retrieves the canonical form of a position.
+     *
+     * @param position The position.
+     * @return The position itself if 'x' is to move, otherwise its flipped twin.
+     */
+    public static Position canonical(Position position) {
+        return isCanonical(position) ? position : flip(position);
+    }
+
+    /**
+     * Rotates a square half a turn.
+     *
+     * @param square The square number.
+     * @return The square number in the flipped position.
+     */
+    public static int flipSquare(int square) {
+        return 63 - square;
+    }
+
+    /**
+     * Maps a move to the same move in the flipped position.
+     *
+     * @param move The packed move, or Moves.NONE.
+     * @return The packed move with every square rotated, or Moves.NONE.
+     */
+    public static int flipMove(int move) {
+        if (move == Moves.NONE) {
+            return Moves.NONE;
+        }
+        int from = flipSquare(Moves.from(move));
+        int to = flipSquare(Moves.to(move));
+        int second = Moves.second(move);
+        return second < 0 ? Moves.encode(from, to) : Moves.encode(from, to, flipSquare(second));
+    }
+
+    /**
+     * Maps a move played in a position to the same move in its canonical form, e.g. before storing it.
+     *
+     * @param position The position the move is played in.
+     * @param move The packed move, or Moves.NONE.
+     * @return The packed move in the canonical position.
+     */
+    public static int toCanonical(Position position, int move) {
+        return isCanonical(position) ? move : flipMove(move);
+    }
+
+    /**
+     * Maps a move of the canonical form of a position back to the position, e.g. after reading it from a store.
+     *
+     * @param position The position the move is to be played in.
+     * @param move The packed move in the canonical position, or Moves.NONE.
+     * @return The packed move in the position.
+     */
+    public static int fromCanonical(Position position, int move) {
+        return isCanonical(position) ? move : flipMove(move);
+    }
+}
@@ -0,0 +1,133 @@
+package core;
+import java.util.Arrays;
+
+/**
+ * The TranspositionTable class remembers the results of searched positions so a search can reuse them
+ * when a position is reached again, through another move order, in a deeper iteration or in another search.
+ * It is safe to share between search threads without locks: every entry is two longs, the data and the hash
+ * xor the data, so an entry torn by two threads writing at once no longer matches its hash and is ignored.
+ * Positions are keyed by their canonical hash, so a position and its flipped twin (see Symmetry) share an entry
+ * and moves are stored as played in the canonical position. The table has a fixed size and a new result
+ * replaces the old one in its slot unless the old one is for the same position and was searched deeper.
+ * Data layout: bits 0-19 the packed best move plus one, bits 20-27 the depth, bits 28-29 the bound,
+ * bits 32-63 the score.
+ * @author Samuel White
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Constructs a TranspositionTable using about maxBytes of memory.
+     *
+     * @param maxBytes The size cap in bytes.
+     */
+    public TranspositionTable(long maxBytes) {
+        if (maxBytes < ENTRY_BYTES) {
+            throw new IllegalArgumentException("Table size is too small: " + maxBytes);
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1 << 30, maxBytes / ENTRY_BYTES));
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param hash The canonical hash of the position.
+     * @return The entry data to read with the static accessors, or 0 if the position is not stored.
+     */
+    public long probe(long hash) {
+        int index = (int) hash & this.mask;
+        long entry = this.data[index];
+        if (entry == 0 || (this.keys[index] ^ entry) != hash) {
+            return 0;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the result of a search.
+     *
+     * @param hash The canonical hash of the position.
+     * @param depth The remaining depth the position was searched to.
+     * @param bound EXACT, LOWER_BOUND if the score is at least this good, or UPPER_BOUND if it is at most this good.
+     * @param score The score, from the point of view of the player to move.
+     * @param move The best packed move found in the canonical position, or Moves.NONE.
+     */
+    public void store(long hash, int depth, int bound, int score, int move) {
+        int index = (int) hash & this.mask;
+        long old = this.data[index];
+        if (old != 0 && (this.keys[index] ^ old) == hash && depth(old) > depth) {
+            return;
+        }
+        long entry = ((long) score << 32) | ((long) bound << 28) | ((long) Math.min(depth, 255) << 20) | (move + 1);
+        this.data[index] = entry;
+        this.keys[index] = hash ^ entry;
+    }
+
+    /**
+     * Forgets every stored position.
+     */
+    public void clear() {
+        Arrays.fill(this.data, 0);
+        Arrays.fill(this.keys, 0);
+    }
+
+    /**
+     * Retrieves the number of entries the table can hold.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.data.length;
+    }
+
+    /**
+     * Reads the best move of an entry.
+     *
+     * @param entry The entry data returned by probe.
+     * @return The packed move in the canonical position, or Moves.NONE.
+     */
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFFF) - 1;
+    }
+
+    /**
+     * Reads the depth of an entry.
+     *
+     * @param entry The entry data returned by probe.
+     * @return The remaining depth the position was searched to.
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> 20) & 0xFF;
+    }
+
+    /**
+     * Reads the bound of an entry.
+     *
+     * @param entry The entry data returned by probe.
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> 28) & 3;
+    }
+
+    /**
+     * Reads the score of an entry.
+     *
+     * @param entry The entry data returned by probe.
+     * @return The score, from the point of view of the player to move.
+     */
+    public static int score(long entry) {
+        return (int) (entry >>> 32);
+    }
+}
@@ -0,0 +1,413 @@
+package core;
+import java.util.Arrays;
+
+/**
+ * The VariantPosition class is an immutable position on a board of any size, see BoardGeometry, with the same
+ * rules as Position: men step or jump forward only, a jump continues automatically when one further jump exists
+ * or lets the player choose when two exist, and a player who cannot move loses.
+ * Each side's pieces are a bitboard over the playable square indices: one long while the board has at most 64
+ * playable squares, the low and high words of a pair of longs on larger boards. The high words of a narrow board
+ * are always zero, so its moves never touch them.
+ * Moves are packed as the starting, landing and second landing square indices, seven bits each.
+ * @author Samuel White
+ */
+public final class VariantPosition {
+    private static final int SQUARE_MASK = 0x7F;
+
+    private final BoardGeometry geometry;
+    private final long xLow;
+    private final long xHigh;
+    private final long oLow;
+    private final long oHigh;
+    private final char sideToMove;
+    private long hash;
+
+    private VariantPosition(BoardGeometry geometry, long xLow, long xHigh, long oLow, long oHigh, char sideToMove, long hash) {
+        this.geometry = geometry;
+        this.xLow = xLow;
+        this.xHigh = xHigh;
+        this.oLow = oLow;
+        this.oHigh = oHigh;
+        this.sideToMove = sideToMove;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the starting position of a board with 'x' to move: every row but the two middle ones filled,
+     * 'o' at the top and 'x' at the bottom.
+     *
+     * @param geometry The board.
+     * @return The starting position.
+     */
+    public static VariantPosition initial(BoardGeometry geometry) {
+        long[] x = new long[2];
+        long[] o = new long[2];
+        int rows = geometry.getSize() / 2 - 1;
+        for (int index = 0; index < geometry.getSquareCount(); index++) {
+            int row = geometry.row(index);
+            if (row < rows) {
+                o[index >>> 6] |= 1L << index;
+            } else if (row >= geometry.getSize() - rows) {
+                x[index >>> 6] |= 1L << index;
+            }
+        }
+        return new VariantPosition(geometry, x[0], x[1], o[0], o[1], 'x', 0);
+    }
+
+    /**
+     * Creates a VariantPosition from a board array.
+     *
+     * @param board The square board of 'x', 'o' and '_' characters; pieces must be on playable squares.
+     * @param sideToMove The icon of the player to move.
+     * @return The position.
+     * @throws IllegalArgumentException If the board size is not supported or a piece is on a light square.
+     */
+    public static VariantPosition fromBoard(char[][] board, char sideToMove) throws IllegalArgumentException {
+        BoardGeometry geometry = BoardGeometry.of(board.length);
+        long[] x = new long[2];
+        long[] o = new long[2];
+        for (int row = 0; row < board.length; row++) {
+            for (int column = 0; column < board.length; column++) {
+                char piece = board[row][column];
+                if (piece == '_') {
+                    continue;
+                }
+                int index = geometry.index(row, column);
+                if (index < 0 || (piece != 'x' && piece != 'o')) {
+                    throw new IllegalArgumentException("Invalid piece " + piece + " at " + geometry.squareName(row, column));
+                }
+                (piece == 'x' ? x : o)[index >>> 6] |= 1L << index;
+            }
+        }
+        return new VariantPosition(geometry, x[0], x[1], o[0], o[1], sideToMove, 0);
+    }
+
+    /**
+     * Encodes a single step or jump.
+     *
+     * @param from The starting square index.
+     * @param to The landing square index.
+     * @return The packed move.
+     */
+    public static int encode(int from, int to) {
+        return from | (to << 7);
+    }
+
+    /**
+     * Encodes a jump that continues with a second jump.
+     *
+     * @param from The starting square index.
+     * @param to The landing square index of the first jump.
+     * @param second The landing square index of the second jump.
+     * @return The packed move.
+     */
+    public static int encode(int from, int to, int second) {
+        return from | (to << 7) | ((second + 1) << 14);
+    }
+
+    /**
+     * Retrieves the starting square of a move.
+     *
+     * @param move The packed move.
+     * @return The starting square index.
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the landing square of the first step or jump of a move.
+     *
+     * @param move The packed move.
+     * @return The landing square index.
+     */
+    public static int to(int move) {
+        return (move >>> 7) & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the landing square of the second jump of a move.
+     *
+     * @param move The packed move.
+     * @return The second landing square index, or -1 if the move has no second jump.
+     */
+    public static int second(int move) {
+        return ((move >>> 14) & 0xFF) - 1;
+    }
+
+    /**
+     * Retrieves the board of the position.
+     *
+     * @return The geometry.
+     */
+    public BoardGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    /**
+     * Retrieves the icon of the player to move.
+     *
+     * @return 'x' or 'o'.
+     */
+    public char getSideToMove() {
+        return this.sideToMove;
+    }
+
+    /**
+     * Retrieves the piece on a square.
+     *
+     * @param index The square index.
+     * @return 'x', 'o' or '_' for an empty square.
+     */
+    public char pieceAt(int index) {
+        if (test(this.xLow, this.xHigh, index)) {
+            return 'x';
+        }
+        if (test(this.oLow, this.oHigh, index)) {
+            return 'o';
+        }
+        return '_';
+    }
+
+    /**
+     * Retrieves the number of pieces a side has left.
+     *
+     * @param icon The icon of the side.
+     * @return The piece count.
+     */
+    public int pieceCount(char icon) {
+        return icon == 'x' ? Long.bitCount(this.xLow) + Long.bitCount(this.xHigh) : Long.bitCount(this.oLow) + Long.bitCount(this.oHigh);
+    }
+
+    /**
+     * Retrieves the Zobrist hash of the position, with keys of its own board size.
+     *
+     * @return The position hash.
+     */
+    public long hash() {
+        if (this.hash == 0) {
+            long hash = this.geometry.sideKey(this.sideToMove);
+            for (int index = 0; index < this.geometry.getSquareCount(); index++) {
+                char piece = pieceAt(index);
+                if (piece != '_') {
+                    hash ^= this.geometry.pieceKey(piece, index);
+                }
+            }
+            this.hash = hash;
+        }
+        return this.hash;
+    }
+
+    /**
+     * Generates every legal move for the player to move, per piece in square order,
+     * with the step or jump to the right before the one to the left.
+     *
+     * @param moves The array the packed moves are written to, at least getGeometry().getMaxMoves() long.
+     * @return The number of moves written.
+     */
+    public int generateMoves(int[] moves) {
+        boolean x = this.sideToMove == 'x';
+        long ownLow = x ? this.xLow : this.oLow;
+        long ownHigh = x ? this.xHigh : this.oHigh;
+        int count = generate(ownLow, 0, moves, 0);
+        if (ownHigh != 0) {
+            count = generate(ownHigh, 64, moves, count);
+        }
+        return count;
+    }
+
+    private int generate(long pieces, int offset, int[] moves, int count) {
+        int side = this.sideToMove == 'x' ? 0 : 1;
+        long enemyLow = side == 0 ? this.oLow : this.xLow;
+        long enemyHigh = side == 0 ? this.oHigh : this.xHigh;
+        long occupiedLow = this.xLow | this.oLow;
+        long occupiedHigh = this.xHigh | this.oHigh;
+        int[][] step = this.geometry.step[side];
+        int[][] jump = this.geometry.jump[side];
+
+        for (; pieces != 0; pieces &= pieces - 1) {
+            int from = offset + Long.numberOfTrailingZeros(pieces);
+            for (int direction = BoardGeometry.RIGHT; direction <= BoardGeometry.LEFT; direction++) {
+                int over = step[direction][from];
+                if (over < 0) {
+                    continue;
+                }
+                if (!test(occupiedLow, occupiedHigh, over)) {
+                    moves[count++] = encode(from, over);
+                    continue;
+                }
+                int landing = jump[direction][from];
+                if (landing < 0 || !test(enemyLow, enemyHigh, over) || test(occupiedLow, occupiedHigh, landing)) {
+                    continue;
+                }
+                int followed = 0;
+                for (int next = BoardGeometry.RIGHT; next <= BoardGeometry.LEFT; next++) {
+                    int nextOver = step[next][landing];
+                    int second = jump[next][landing];
+                    // a second jump lands further forward, clear of the squares the first jump emptied
+                    if (second >= 0 && test(enemyLow, enemyHigh, nextOver) && !test(occupiedLow, occupiedHigh, second)) {
+                        moves[count++] = encode(from, landing, second);
+                        followed++;
+                    }
+                }
+                if (followed == 0) {
+                    moves[count++] = encode(from, landing);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the player to move has any legal move.
+     *
+     * @return true if a move exists, false otherwise.
+     */
+    public boolean hasMoves() {
+        return generateMoves(new int[this.geometry.getMaxMoves()]) > 0;
+    }
+
+    /**
+     * Plays a move and returns the resulting position with the other player to move.
+     * The move is assumed to be legal in this position.
+     *
+     * @param move The packed move.
+     * @return The new position.
+     */
+    public VariantPosition play(int move) {
+        char mover = this.sideToMove;
+        char opponent = mover == 'x' ? 'o' : 'x';
+        int side = mover == 'x' ? 0 : 1;
+        long ownLow = side == 0 ? this.xLow : this.oLow;
+        long ownHigh = side == 0 ? this.xHigh : this.oHigh;
+        long enemyLow = side == 0 ? this.oLow : this.xLow;
+        long enemyHigh = side == 0 ? this.oHigh : this.xHigh;
+        long hash = hash() ^ this.geometry.sideKey(mover) ^ this.geometry.sideKey(opponent);
+        int from = from(move);
+        int to = to(move);
+        int second = second(move);
+
+        ownLow ^= low(from) ^ low(to);
+        ownHigh ^= high(from) ^ high(to);
+        hash ^= this.geometry.pieceKey(mover, from) ^ this.geometry.pieceKey(mover, to);
+        int captured = jumped(side, from, to);
+        if (captured >= 0) {
+            enemyLow ^= low(captured);
+            enemyHigh ^= high(captured);
+            hash ^= this.geometry.pieceKey(opponent, captured);
+        }
+        if (second >= 0) {
+            captured = jumped(side, to, second);
+            ownLow ^= low(to) ^ low(second);
+            ownHigh ^= high(to) ^ high(second);
+            enemyLow ^= low(captured);
+            enemyHigh ^= high(captured);
+            hash ^= this.geometry.pieceKey(mover, to) ^ this.geometry.pieceKey(mover, second) ^ this.geometry.pieceKey(opponent, captured);
+        }
+
+        if (mover == 'x') {
+            return new VariantPosition(this.geometry, ownLow, ownHigh, enemyLow, enemyHigh, 'o', hash);
+        }
+        return new VariantPosition(this.geometry, enemyLow, enemyHigh, ownLow, ownHigh, 'x', hash);
+    }
+
+    /**
+     * Finds the square a move from one square to another jumped over, or -1 if it was a step.
+     */
+    private int jumped(int side, int from, int to) {
+        for (int direction = BoardGeometry.RIGHT; direction <= BoardGeometry.LEFT; direction++) {
+            if (this.geometry.jump[side][direction][from] == to) {
+                return this.geometry.step[side][direction][from];
+            }
+        }
+        return -1;
+    }
+
+    private static long low(int index) {
+        return index < 64 ? 1L << index : 0L;
+    }
+
+    private static long high(int index) {
+        return index < 64 ? 0L : 1L << index;
+    }
+
+    private static boolean test(long low, long high, int index) {
+        return ((index < 64 ? low : high) >>> index & 1L) != 0;
+    }
+
+    /**
+     * Copies the position into a board array.
+     *
+     * @return A square board of 'x', 'o' and '_' characters.
+     */
+    public char[][] toBoard() {
+        int size = this.geometry.getSize();
+        char[][] board = new char[size][size];
+        for (char[] row : board) {
+            Arrays.fill(row, '_');
+        }
+        for (int index = 0; index < this.geometry.getSquareCount(); index++) {
+            board[this.geometry.row(index)][this.geometry.column(index)] = pieceAt(index);
+        }
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof VariantPosition)) {
+            return false;
+        }
+        VariantPosition position = (VariantPosition) other;
+        return this.geometry == position.geometry && this.xLow == position.xLow && this.xHigh == position.xHigh
+                && this.oLow == position.oLow && this.oHigh == position.oHigh && this.sideToMove == position.sideToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = hash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Converts the position into text: the side to move, a colon and the rows from the top separated by '/',
+     * in the format of Position.toString.
+     *
+     * @return The position string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(this.sideToMove).append(':');
+        char[][] board = toBoard();
+        for (int row = 0; row < board.length; row++) {
+            if (row > 0) {
+                builder.append('/');
+            }
+            builder.append(board[row]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses a position string written by toString, of any supported board size.
+     *
+     * @param text The position string.
+     * @return The position.
+     * @throws IllegalArgumentException If the text is not a valid position string.
+     */
+    public static VariantPosition parse(String text) throws IllegalArgumentException {
+        String trimmed = text.trim();
+        if (trimmed.length() < 2 || trimmed.charAt(1) != ':' || (trimmed.charAt(0) != 'x' && trimmed.charAt(0) != 'o')) {
+            throw new IllegalArgumentException("Invalid position: " + text);
+        }
+        String[] rows = trimmed.substring(2).split("/");
+        char[][] board = new char[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            if (rows[row].length() != rows.length || !rows[row].matches("[xo_]+")) {
+                throw new IllegalArgumentException("Invalid row: " + rows[row]);
+            }
+            board[row] = rows[row].toCharArray();
+        }
+        return fromBoard(board, trimmed.charAt(0));
+    }
+}
@@ -0,0 +1,99 @@
+package core;
+import java.util.Random;
+
+/**
+ * The Zobrist class holds the random keys used to hash positions.
+ * A position's hash is the XOR of one key per piece plus a key when 'o' is to move,
+ * so it can be updated incrementally whenever a single square changes.
+ * @author Samuel White
+ */
+public final class Zobrist {
+    private static final long[][] PIECE_KEYS = new long[2][64];
+    private static final long SIDE_KEY;
+
+    static {
+        Random random = new Random(0x5EED_C0DEL);
+        for (int color = 0; color < 2; color++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_KEYS[color][square] = random.nextLong();
+            }
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Retrieves the key of a piece on a square.
+     *
+     * @param icon The icon of the piece, 'x' or 'o'.
+     * @param square The square number.
+     * @return The key to XOR into the hash.
+     */
+    public static long pieceKey(char icon, int square) {
+        return PIECE_KEYS[icon == 'x' ? 0 : 1][square];
+    }
+
+    /**
+     * Retrieves the key of the side to move.
+     *
+     * @param sideToMove The icon of the player to move.
+     * @return The key to XOR into the hash, zero when 'x' is to move.
+     */
+    public static long sideKey(char sideToMove) {
+        return sideToMove == 'o' ? SIDE_KEY : 0L;
+    }
+
+    /**
+     * Retrieves the key a piece adds to the hash of the flipped position, see Symmetry:
+     * the key of a piece of the other color on the square rotated half a turn.
+     *
+     * @param icon The icon of the piece, 'x' or 'o'.
+     * @param square The square number.
+     * @return The key to XOR into the flipped hash.
+     */
+    public static long flippedPieceKey(char icon, int square) {
+        return PIECE_KEYS[icon == 'x' ? 1 : 0][63 - square];
+    }
+
+    /**
+     * Hashes the pieces of one side.
+     *
+     * @param icon The icon of the side.
+     * @param pieces The mask of that side's pieces.
+     * @return The XOR of the keys of every piece.
+     */
+    public static long hashPieces(char icon, long pieces) {
+        long[] keys = PIECE_KEYS[icon == 'x' ? 0 : 1];
+        long hash = 0;
+        for (; pieces != 0; pieces &= pieces - 1) {
+            hash ^= keys[Long.numberOfTrailingZeros(pieces)];
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes a complete position.
+     *
+     * @param xPieces The mask of 'x' pieces.
+     * @param oPieces The mask of 'o' pieces.
+     * @param sideToMove The icon of the player to move.
+     * @return The position hash.
+     */
+    public static long hash(long xPieces, long oPieces, char sideToMove) {
+        return hashPieces('x', xPieces) ^ hashPieces('o', oPieces) ^ sideKey(sideToMove);
+    }
+
+    /**
+     * Hashes the flipped twin of a position, see Symmetry, without building it.
+     *
+     * @param xPieces The mask of 'x' pieces.
+     * @param oPieces The mask of 'o' pieces.
+     * @param sideToMove The icon of the player to move.
+     * @return The hash of the position with colors swapped, the board rotated and the other player to move.
+     */
+    public static long flippedHash(long xPieces, long oPieces, char sideToMove) {
+        return hash(Long.reverse(oPieces), Long.reverse(xPieces), sideToMove == 'x' ? 'o' : 'x');
+    }
+}
@@ -0,0 +1,444 @@
+package server;
+import core.CheckersLogic;
+import core.GameListener;
+import core.Moves;
+import core.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The GameBroadcaster class streams the moves of one game to many spectators over TCP.
+ * Every move is encoded once into a direct ByteBuffer frame. Each subscriber queues a duplicate of that frame,
+ * which shares its memory, and the queue is written with one gathering write, so the bytes of a move are
+ * never copied per subscriber. Subscribers are spread over a few event loop threads, each with its own selector.
+ * Every frame carries the whole position, so a spectator that misses frames is still in sync after the next one.
+ * A subscriber whose queue is full is either disconnected or has its queued frames skipped, see SlowConsumerPolicy.
+ * Frame layout, big-endian: int length of the rest of the frame, byte type (1 for a move), long sequence number,
+ * long send time from System.nanoTime, int packed move, long 'x' piece mask, long 'o' piece mask, byte player to move.
+ * @author Samuel White
+ */
+public class GameBroadcaster implements Closeable {
+    public static final int FRAME_BYTES = 42;
+    public static final byte MOVE_FRAME = 1;
+
+    /**
+     * What to do with a subscriber whose queue is full when a new frame arrives.
+     */
+    public enum SlowConsumerPolicy {
+        /** Disconnect the subscriber. */
+        DROP,
+        /** Discard the frames it has not started receiving and queue the new one. */
+        SKIP
+    }
+
+    private final ServerSocketChannel server;
+    private final EventLoop[] loops;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy policy;
+    private final AtomicLong subscribers = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+    private final AtomicLong framesWritten = new AtomicLong();
+    private volatile ByteBuffer latestFrame;
+    private long sequence;
+    private int nextLoop;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a GameBroadcaster listening on the given address. Call start to begin accepting spectators.
+     *
+     * @param address The address to listen on, e.g. new InetSocketAddress("127.0.0.1", 0) for any free port.
+     * @param loopCount The number of event loop threads.
+     * @param queueCapacity The number of frames a subscriber may have queued before it counts as slow.
+     * @param policy What to do with slow subscribers.
+     * @throws IOException If the address cannot be bound.
+     */
+    public GameBroadcaster(InetSocketAddress address, int loopCount, int queueCapacity, SlowConsumerPolicy policy) throws IOException {
+        if (loopCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Loop count and queue capacity must be positive.");
+        }
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(address, 4096);
+        this.server.configureBlocking(false);
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            this.loops[i] = new EventLoop(i);
+        }
+        this.server.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts the event loop threads.
+     */
+    public void start() {
+        for (EventLoop loop : this.loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Retrieves the port the broadcaster listens on.
+     *
+     * @return The local port.
+     * @throws IOException If the port cannot be read.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Sends a move and the position it led to to every subscriber.
+     *
+     * @param position The position after the move.
+     * @param move The packed move that was played.
+     */
+    public synchronized void broadcast(Position position, int move) {
+        ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_BYTES);
+        frame.putInt(FRAME_BYTES - 4);
+        frame.put(MOVE_FRAME);
+        frame.putLong(this.sequence++);
+        frame.putLong(System.nanoTime());
+        frame.putInt(move);
+        frame.putLong(position.getPieces('x'));
+        frame.putLong(position.getPieces('o'));
+        frame.put((byte) position.getSideToMove());
+        frame.flip();
+        ByteBuffer shared = frame.asReadOnlyBuffer();
+        this.latestFrame = shared;
+        for (EventLoop loop : this.loops) {
+            loop.frames.add(shared);
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * Broadcasts every turn played in a game from now on, as soon as the turn ends or wins the game.
+     *
+     * @param game The game to follow.
+     * @return The listener added to the game, to pass to removeListener to stop following it.
+     */
+    public GameListener follow(CheckersLogic game) {
+        GameListener listener = new GameListener() {
+            private int from = -1;
+            private int to;
+            private int second = -1;
+
+            @Override
+            public void pieceMoved(char icon, int from, int to) {
+                if (this.from < 0) {
+                    this.from = from;
+                    this.to = to;
+                } else {
+                    this.second = to;
+                }
+            }
+
+            @Override
+            public void turnChanged(char icon) {
+                send();
+            }
+
+            @Override
+            public void gameOver(char winner) {
+                send();
+            }
+
+            private void send() {
+                if (this.from < 0) {
+                    return;
+                }
+                int move = this.second < 0 ? Moves.encode(this.from, this.to) : Moves.encode(this.from, this.to, this.second);
+                this.from = -1;
+                this.second = -1;
+                broadcast(game.getSnapshot(), move);
+            }
+        };
+        game.addListener(listener);
+        return listener;
+    }
+
+    /**
+     * Retrieves the number of connected subscribers.
+     *
+     * @return The subscriber count.
+     */
+    public long getSubscriberCount() {
+        return this.subscribers.get();
+    }
+
+    /**
+     * Retrieves the number of subscribers disconnected for being too slow.
+     *
+     * @return The dropped subscriber count.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Retrieves the number of queued frames discarded for slow subscribers.
+     *
+     * @return The skipped frame count.
+     */
+    public long getSkippedFrames() {
+        return this.skippedFrames.get();
+    }
+
+    /**
+     * Retrieves the number of frames completely written to subscribers.
+     *
+     * @return The written frame count.
+     */
+    public long getFramesWritten() {
+        return this.framesWritten.get();
+    }
+
+    /**
+     * Stops the event loops and disconnects every subscriber.
+     *
+     * @throws IOException If the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        for (EventLoop loop : this.loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : this.loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.server.close();
+    }
+
+    /**
+     * One connected spectator and its bounded ring of queued frames.
+     */
+    private class Subscriber {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer[] queue = new ByteBuffer[GameBroadcaster.this.queueCapacity];
+        private int head;
+        private int size;
+
+        Subscriber(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Queues a frame, applying the slow consumer policy when the queue is full.
+         * Returns false if the subscriber was dropped.
+         */
+        boolean offer(ByteBuffer frame) {
+            if (this.size == this.queue.length) {
+                if (GameBroadcaster.this.policy == SlowConsumerPolicy.DROP) {
+                    GameBroadcaster.this.dropped.incrementAndGet();
+                    return false;
+                }
+                boolean started = this.queue[this.head].position() > 0;
+                int kept = started ? 1 : 0;
+                for (int i = kept; i < this.size; i++) {
+                    this.queue[(this.head + i) % this.queue.length] = null;
+                }
+                GameBroadcaster.this.skippedFrames.addAndGet(this.size - kept);
+                this.size = kept;
+            }
+            this.queue[(this.head + this.size) % this.queue.length] = frame.duplicate();
+            this.size++;
+            return true;
+        }
+
+        /**
+         * Writes as much of the queue as the socket accepts. Returns false if the connection failed.
+         */
+        boolean flush() {
+            try {
+                while (this.size > 0) {
+                    int contiguous = Math.min(this.size, this.queue.length - this.head);
+                    this.channel.write(this.queue, this.head, contiguous);
+                    int done = 0;
+                    while (done < contiguous && !this.queue[this.head + done].hasRemaining()) {
+                        this.queue[this.head + done] = null;
+                        done++;
+                    }
+                    GameBroadcaster.this.framesWritten.addAndGet(done);
+                    this.head = (this.head + done) % this.queue.length;
+                    this.size -= done;
+                    if (done < contiguous) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            int interest = this.size > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (this.key.interestOps() != interest) {
+                this.key.interestOps(interest);
+            }
+            return true;
+        }
+
+        void close() {
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // the subscriber is gone either way
+            }
+            GameBroadcaster.this.subscribers.decrementAndGet();
+        }
+    }
+
+    /**
+     * A thread serving a share of the subscribers with its own selector.
+     */
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<SocketChannel> joining = new ConcurrentLinkedQueue<>();
+        private final List<Subscriber> members = new ArrayList<>();
+        private final ByteBuffer discard = ByteBuffer.allocate(256);
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "broadcast-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!GameBroadcaster.this.closed) {
+                    this.selector.select();
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Subscriber subscriber = (Subscriber) key.attachment();
+                        if ((key.isReadable() && !drain(subscriber)) || (key.isValid() && key.isWritable() && !subscriber.flush())) {
+                            remove(subscriber);
+                        }
+                    }
+                    register();
+                    fanOut();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Broadcast event loop failed", e);
+            } finally {
+                for (Subscriber subscriber : this.members) {
+                    subscriber.close();
+                }
+                this.members.clear();
+                try {
+                    this.selector.close();
+                } catch (IOException e) {
+                    // shutting down
+                }
+            }
+        }
+
+        /**
+         * Accepts every waiting spectator. A failed accept, e.g. when the process is out of file descriptors,
+         * only turns that spectator away.
+         */
+        private void accept() {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = GameBroadcaster.this.server.accept();
+                    if (channel == null) {
+                        return;
+                    }
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    return;
+                }
+                EventLoop loop = GameBroadcaster.this.loops[GameBroadcaster.this.nextLoop++ % GameBroadcaster.this.loops.length];
+                loop.joining.add(channel);
+                if (loop != this) {
+                    loop.selector.wakeup();
+                }
+            }
+        }
+
+        private void register() throws IOException {
+            SocketChannel channel;
+            while ((channel = this.joining.poll()) != null) {
+                SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+                Subscriber subscriber = new Subscriber(channel, key);
+                key.attach(subscriber);
+                this.members.add(subscriber);
+                GameBroadcaster.this.subscribers.incrementAndGet();
+                ByteBuffer latest = GameBroadcaster.this.latestFrame;
+                if (latest != null) {
+                    subscriber.offer(latest);
+                    if (!subscriber.flush()) {
+                        remove(subscriber);
+                    }
+                }
+            }
+        }
+
+        private void fanOut() {
+            ByteBuffer frame;
+            while ((frame = this.frames.poll()) != null) {
+                for (int i = this.members.size() - 1; i >= 0; i--) {
+                    Subscriber subscriber = this.members.get(i);
+                    if (!subscriber.offer(frame) || !subscriber.flush()) {
+                        remove(subscriber);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads and ignores anything a spectator sends. Returns false once the spectator has disconnected.
+         */
+        private boolean drain(Subscriber subscriber) {
+            try {
+                this.discard.clear();
+                return subscriber.channel.read(this.discard) >= 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void remove(Subscriber subscriber) {
+            int index = this.members.indexOf(subscriber);
+            if (index >= 0) {
+                int last = this.members.size() - 1;
+                this.members.set(index, this.members.get(last));
+                this.members.remove(last);
+            }
+            subscriber.close();
+        }
+    }
+}
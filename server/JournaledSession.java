@@ -0,0 +1,192 @@
+package server;
+import core.CheckersLogic;
+import core.Moves;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The JournaledSession class is a game whose accepted moves are written to a MoveJournal, so it can be
+ * recovered after a crash. Each move is applied to the game, appended to the journal, and by default not
+ * acknowledged until the journal has made it durable. A session that does not wait still has its moves
+ * written in order, and sync on the journal waits for all of them.
+ * @author Samuel White
+ */
+public class JournaledSession {
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    private final MoveJournal journal;
+    private final long id;
+    private final CheckersLogic game;
+    private boolean synchronous = true;
+    private boolean checkpointPending;
+    private int turnsSinceCheckpoint;
+    private boolean ended;
+
+    /**
+     * Constructs a JournaledSession for a new game.
+     *
+     * @param journal The journal the moves are written to.
+     * @param id The session id, unique within the journal.
+     */
+    public JournaledSession(MoveJournal journal, long id) {
+        this(journal, id, new CheckersLogic("PvP"));
+    }
+
+    /**
+     * Constructs a JournaledSession continuing a game, e.g. one returned by MoveJournal.recover.
+     * The current position is checkpointed first.
+     *
+     * @param journal The journal the moves are written to.
+     * @param id The session id, unique within the journal.
+     * @param game The game to continue, at the start of a turn.
+     */
+    public JournaledSession(MoveJournal journal, long id, CheckersLogic game) {
+        this.journal = journal;
+        this.id = id;
+        this.game = game;
+        journal.register(this);
+        acknowledge(journal.appendCheckpoint(id, game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon())));
+    }
+
+    /**
+     * Retrieves the session id.
+     *
+     * @return The id.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Retrieves the journaled game. Moves made on it directly are not journaled.
+     *
+     * @return The game.
+     */
+    public CheckersLogic getGame() {
+        return this.game;
+    }
+
+    /**
+     * Sets whether each move waits until the journal has made it durable.
+     *
+     * @param synchronous true to wait, false to return as soon as the move is queued.
+     */
+    public synchronized void setSynchronous(boolean synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Makes a step or jump as CheckersLogic.makeMove does and journals it.
+     *
+     * @param move The move, e.g. "3a-4b".
+     * @return true once the move was made.
+     * @throws IllegalArgumentException If the move is not valid.
+     */
+    public synchronized boolean makeMove(String move) throws IllegalArgumentException {
+        acknowledge(leg(move));
+        return true;
+    }
+
+    /**
+     * Chooses the second jump of a double jump as CheckersLogic.selectDoubleOption does and journals it.
+     *
+     * @param selection The chosen option.
+     * @throws IndexOutOfBoundsException If the option does not exist.
+     */
+    public synchronized void selectDoubleOption(int selection) throws IndexOutOfBoundsException {
+        acknowledge(doubleOption(selection));
+    }
+
+    /**
+     * Ends the turn as CheckersLogic.swapTurn does and journals it, writing a checkpoint if one is due.
+     */
+    public synchronized void swapTurn() {
+        acknowledge(turn());
+    }
+
+    /**
+     * Plays a whole legal move as CheckersLogic.playMove does, journaling each part of it.
+     * The journal writes records in order, so only the last part is waited for.
+     *
+     * @param move The packed move. A double jump may leave out its second landing square when it can only continue one way.
+     * @return The move that was played.
+     * @throws IllegalArgumentException If the move is not legal.
+     */
+    public synchronized int playMove(int move) throws IllegalArgumentException {
+        int[] legal = this.game.getLegalMoves(this.game.getCurrentPlayersTurn());
+        int resolved = Moves.resolve(legal, legal.length, move);
+
+        leg(Moves.toNotation(Moves.encode(Moves.from(resolved), Moves.to(resolved))));
+        if (this.game.getCurrentPlayersTurn().goAgain) {
+            doubleOption(Moves.doubleJumpOption(resolved));
+        }
+        acknowledge(turn());
+        return resolved;
+    }
+
+    /**
+     * Ends the session, so it is no longer recovered.
+     */
+    public synchronized void end() {
+        this.ended = true;
+        this.journal.unregister(this);
+        acknowledge(this.journal.appendEnd(this.id));
+    }
+
+    /**
+     * Writes a checkpoint of the position, or, in the middle of a double jump, writes one at the end of the turn.
+     */
+    synchronized void checkpoint() {
+        if (this.ended) {
+            return;
+        }
+        if (this.game.getCurrentPlayersTurn().goAgain) {
+            this.checkpointPending = true;
+            return;
+        }
+        appendCheckpoint();
+    }
+
+    private CompletableFuture<Void> leg(String move) {
+        this.game.makeMove(move);
+        // journal the squares the game read, as it accepts any separator, e.g. "3a 4b"
+        int[][] indices = this.game.convertToIndices(move);
+        int from = Moves.square(indices[0][0], indices[0][1]);
+        int to = Moves.square(indices[1][0], indices[1][1]);
+        return this.journal.appendLeg(this.id, Moves.encode(from, to));
+    }
+
+    private CompletableFuture<Void> doubleOption(int selection) {
+        this.game.selectDoubleOption(selection);
+        return this.journal.appendDoubleOption(this.id, selection);
+    }
+
+    private CompletableFuture<Void> turn() {
+        this.game.swapTurn();
+        CompletableFuture<Void> written = this.journal.appendTurn(this.id);
+        this.turnsSinceCheckpoint++;
+        if (this.checkpointPending || this.turnsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            written = appendCheckpoint();
+        }
+        return written;
+    }
+
+    private CompletableFuture<Void> appendCheckpoint() {
+        this.checkpointPending = false;
+        this.turnsSinceCheckpoint = 0;
+        return this.journal.appendCheckpoint(this.id, this.game.getPosition(this.game.getCurrentPlayersTurn().getPlayerIcon()));
+    }
+
+    private void acknowledge(CompletableFuture<Void> written) {
+        if (!this.synchronous) {
+            return;
+        }
+        try {
+            MoveJournal.await(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package server;
+import core.CheckersLogic;
+import core.Moves;
+import core.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The MoveJournal class is a write-ahead log of every move accepted by the game sessions of this process,
+ * so the games can be recovered after a crash. Records are appended to numbered segment files.
+ * Appends from any thread are gathered into one batch, and a single committer thread writes each batch and
+ * makes it durable with one FileChannel.force, so the number of forces per second stays bounded however many
+ * moves arrive (group commit). An append returns a future that completes once its record is durable.
+ * Every session starts with a checkpoint of its position and writes a new one every so often, and compaction
+ * deletes the segments older than the oldest checkpoint any live session still needs.
+ * Every record is an int body length, the CRC32 of the body, and the body: a type byte, the session id and the
+ * type's data. Recovery stops reading a segment at the first torn or corrupt record.
+ * @author Samuel White
+ */
+public class MoveJournal implements Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    static final byte CHECKPOINT = 1;
+    static final byte LEG = 2;
+    static final byte DOUBLE = 3;
+    static final byte TURN = 4;
+    static final byte END = 5;
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_BODY_BYTES = 64;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final Map<Long, Integer> checkpointSegments = new ConcurrentHashMap<>();
+    private final Map<Long, JournaledSession> sessions = new ConcurrentHashMap<>();
+    private final Thread committer;
+    private ByteBuffer batch = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer spareBatch = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private List<Long> batchCheckpoints = new ArrayList<>();
+    private List<Long> batchEnds = new ArrayList<>();
+    private FileChannel segment;
+    private int segmentIndex;
+    private long segmentSize;
+    private int recordStart;
+    private int batchRecords;
+    private boolean rollRequested;
+    private boolean closed;
+    private IOException failure;
+    private long records;
+    private long commits;
+    private long bytesWritten;
+
+    /**
+     * The sessions rebuilt by {@link #recover(Path)}.
+     */
+    public static class Recovery {
+        public final Map<Long, CheckersLogic> games;
+        public final long records;
+        public final int segments;
+        public final long tornSegments;
+        public final long droppedSessions;
+
+        private Recovery(Map<Long, CheckersLogic> games, long records, int segments, long tornSegments, long droppedSessions) {
+            this.games = games;
+            this.records = records;
+            this.segments = segments;
+            this.tornSegments = tornSegments;
+            this.droppedSessions = droppedSessions;
+        }
+    }
+
+    private MoveJournal(Path directory, long segmentBytes, int firstSegment) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.segmentIndex = firstSegment - 1;
+        openNextSegment();
+        this.committer = new Thread(this::commitLoop, "journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Opens a journal in a directory, appending to a new segment after any existing ones.
+     * Existing segments are kept until compaction, so recover and resume their sessions before compacting.
+     *
+     * @param directory The journal directory.
+     * @param segmentBytes The size after which the committer starts a new segment.
+     * @return The journal.
+     * @throws IOException If the directory or the first segment cannot be created.
+     */
+    public static MoveJournal open(Path directory, long segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> existing = segmentIndexes(directory);
+        int next = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+        return new MoveJournal(directory, segmentBytes, next);
+    }
+
+    /**
+     * Replays every segment of a journal directory and rebuilds the games that had not ended.
+     * A session whose records no longer replay is dropped, and the other sessions are still recovered.
+     *
+     * @param directory The journal directory.
+     * @return The recovered games by session id, and what was read.
+     * @throws IOException If a segment cannot be read.
+     */
+    public static Recovery recover(Path directory) throws IOException {
+        Map<Long, CheckersLogic> games = new LinkedHashMap<>();
+        long replayed = 0;
+        long torn = 0;
+        long dropped = 0;
+        List<Integer> indexes = Files.isDirectory(directory) ? segmentIndexes(directory) : new ArrayList<>();
+        CRC32 crc = new CRC32();
+        for (int index : indexes) {
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length < 9 || length > MAX_BODY_BYTES || length > buffer.remaining()) {
+                        buffer.position(start);
+                        break;
+                    }
+                    ByteBuffer body = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        buffer.position(start);
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    if (!apply(games, body)) {
+                        dropped++;
+                    }
+                    replayed++;
+                }
+                if (buffer.hasRemaining()) {
+                    torn++;
+                }
+            }
+        }
+        return new Recovery(games, replayed, indexes.size(), torn, dropped);
+    }
+
+    /**
+     * Appends a checkpoint of a session's position.
+     *
+     * @param session The session id.
+     * @param position The position, with the player to move.
+     * @return A future completing once the record is durable.
+     */
+    public CompletableFuture<Void> appendCheckpoint(long session, Position position) {
+        synchronized (this.lock) {
+            ByteBuffer body = startRecord(CHECKPOINT, session);
+            body.putLong(position.getPieces('x'));
+            body.putLong(position.getPieces('o'));
+            body.put((byte) position.getSideToMove());
+            this.batchCheckpoints.add(session);
+            return finishRecord();
+        }
+    }
+
+    /**
+     * Appends one step or jump made through CheckersLogic.makeMove.
+     *
+     * @param session The session id.
+     * @param leg The packed step or jump, without a second landing square.
+     * @return A future completing once the record is durable.
+     */
+    public CompletableFuture<Void> appendLeg(long session, int leg) {
+        synchronized (this.lock) {
+            startRecord(LEG, session).putInt(leg);
+            return finishRecord();
+        }
+    }
+
+    /**
+     * Appends a double jump choice made through CheckersLogic.selectDoubleOption.
+     *
+     * @param session The session id.
+     * @param selection The chosen option.
+     * @return A future completing once the record is durable.
+     */
+    public CompletableFuture<Void> appendDoubleOption(long session, int selection) {
+        synchronized (this.lock) {
+            startRecord(DOUBLE, session).putInt(selection);
+            return finishRecord();
+        }
+    }
+
+    /**
+     * Appends the end of a turn.
+     *
+     * @param session The session id.
+     * @return A future completing once the record is durable.
+     */
+    public CompletableFuture<Void> appendTurn(long session) {
+        synchronized (this.lock) {
+            startRecord(TURN, session);
+            return finishRecord();
+        }
+    }
+
+    /**
+     * Appends the end of a game. The session is not recovered after this record.
+     *
+     * @param session The session id.
+     * @return A future completing once the record is durable.
+     */
+    public CompletableFuture<Void> appendEnd(long session) {
+        synchronized (this.lock) {
+            startRecord(END, session);
+            this.batchEnds.add(session);
+            return finishRecord();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is durable.
+     *
+     * @throws IOException If a record could not be written.
+     */
+    public void sync() throws IOException {
+        CompletableFuture<Void> marker;
+        synchronized (this.lock) {
+            if (this.batch.position() == 0 && this.waiting.isEmpty()) {
+                marker = new CompletableFuture<>();
+                this.waiting.add(marker);
+                this.lock.notifyAll();
+            } else {
+                marker = this.waiting.get(this.waiting.size() - 1);
+            }
+        }
+        await(marker);
+    }
+
+    /**
+     * Starts a new segment, asks every live session for a checkpoint and deletes the segments
+     * no live session needs anymore. A session in the middle of a double jump checkpoints at the end
+     * of its turn, so the segments it needs are deleted by a later compaction.
+     *
+     * @return The number of deleted segments.
+     * @throws IOException If the checkpoints cannot be written or a segment cannot be deleted.
+     */
+    public int compact() throws IOException {
+        synchronized (this.lock) {
+            this.rollRequested = true;
+            this.lock.notifyAll();
+        }
+        for (JournaledSession session : this.sessions.values()) {
+            session.checkpoint();
+        }
+        sync();
+
+        int oldestNeeded = this.segmentIndex;
+        for (int index : this.checkpointSegments.values()) {
+            oldestNeeded = Math.min(oldestNeeded, index);
+        }
+        int deleted = 0;
+        for (int index : segmentIndexes(this.directory)) {
+            if (index < oldestNeeded && Files.deleteIfExists(segmentPath(this.directory, index))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Retrieves the number of records made durable.
+     *
+     * @return The record count.
+     */
+    public long getRecordCount() {
+        synchronized (this.lock) {
+            return this.records;
+        }
+    }
+
+    /**
+     * Retrieves the number of group commits, each ending with one force.
+     *
+     * @return The commit count.
+     */
+    public long getCommitCount() {
+        synchronized (this.lock) {
+            return this.commits;
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes written to the segments.
+     *
+     * @return The byte count.
+     */
+    public long getBytesWritten() {
+        synchronized (this.lock) {
+            return this.bytesWritten;
+        }
+    }
+
+    /**
+     * Makes every appended record durable and closes the journal.
+     *
+     * @throws IOException If the last records cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.lock) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        try {
+            this.committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.segment.close();
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    void register(JournaledSession session) {
+        this.sessions.put(session.getId(), session);
+    }
+
+    void unregister(JournaledSession session) {
+        this.sessions.remove(session.getId());
+    }
+
+    static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Journal write failed", cause);
+        }
+    }
+
+    private ByteBuffer startRecord(byte type, long session) {
+        if (this.closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+        if (this.batch.remaining() < RECORD_HEADER_BYTES + MAX_BODY_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(this.batch.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            this.batch.flip();
+            larger.put(this.batch);
+            this.batch = larger;
+        }
+        this.recordStart = this.batch.position();
+        this.batch.position(this.recordStart + RECORD_HEADER_BYTES);
+        this.batch.put(type);
+        this.batch.putLong(session);
+        return this.batch;
+    }
+
+    private CompletableFuture<Void> finishRecord() {
+        int end = this.batch.position();
+        int bodyStart = this.recordStart + RECORD_HEADER_BYTES;
+        this.crc.reset();
+        this.crc.update(this.batch.slice(bodyStart, end - bodyStart));
+        this.batch.putInt(this.recordStart, end - bodyStart);
+        this.batch.putInt(this.recordStart + 4, (int) this.crc.getValue());
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (this.failure != null) {
+            this.batch.position(this.recordStart);
+            future.completeExceptionally(this.failure);
+            return future;
+        }
+        this.batchRecords++;
+        this.waiting.add(future);
+        this.lock.notifyAll();
+        return future;
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer toWrite;
+            List<CompletableFuture<Void>> completed;
+            List<Long> checkpoints;
+            List<Long> ends;
+            boolean roll;
+            int recordCount;
+            synchronized (this.lock) {
+                while (this.waiting.isEmpty() && !this.rollRequested && !this.closed) {
+                    try {
+                        this.lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.waiting.isEmpty() && !this.rollRequested && this.closed) {
+                    return;
+                }
+                toWrite = this.batch;
+                this.batch = this.spareBatch;
+                this.spareBatch = toWrite;
+                recordCount = this.batchRecords;
+                this.batchRecords = 0;
+                completed = this.waiting;
+                this.waiting = new ArrayList<>();
+                checkpoints = this.batchCheckpoints;
+                this.batchCheckpoints = new ArrayList<>();
+                ends = this.batchEnds;
+                this.batchEnds = new ArrayList<>();
+                roll = this.rollRequested;
+                this.rollRequested = false;
+            }
+
+            IOException error = null;
+            int written = toWrite.position();
+            try {
+                if (roll) {
+                    openNextSegment();
+                }
+                toWrite.flip();
+                while (toWrite.hasRemaining()) {
+                    this.segment.write(toWrite);
+                }
+                this.segment.force(false);
+                this.segmentSize += written;
+                for (long session : checkpoints) {
+                    this.checkpointSegments.put(session, this.segmentIndex);
+                }
+                for (long session : ends) {
+                    this.checkpointSegments.remove(session);
+                }
+                if (this.segmentSize >= this.segmentBytes) {
+                    openNextSegment();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            toWrite.clear();
+
+            synchronized (this.lock) {
+                if (error != null) {
+                    this.failure = error;
+                } else {
+                    this.records += recordCount;
+                    this.commits++;
+                    this.bytesWritten += written;
+                }
+            }
+            for (CompletableFuture<Void> future : completed) {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(null);
+                }
+            }
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        if (this.segment != null) {
+            this.segment.close();
+        }
+        this.segmentIndex++;
+        this.segment = FileChannel.open(segmentPath(this.directory, this.segmentIndex),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.segmentSize = 0;
+    }
+
+    /**
+     * Applies one record to the recovered games.
+     *
+     * @return false if the record did not replay and its session was dropped, true otherwise.
+     */
+    private static boolean apply(Map<Long, CheckersLogic> games, ByteBuffer body) {
+        byte type = body.get();
+        long session = body.getLong();
+        if (type == CHECKPOINT) {
+            Position position = new Position(body.getLong(), body.getLong(), (char) body.get());
+            CheckersLogic game = games.computeIfAbsent(session, id -> new CheckersLogic("PvP"));
+            game.restorePosition(position);
+            return true;
+        }
+        CheckersLogic game = games.get(session);
+        if (game == null) {
+            return true;
+        }
+        try {
+            switch (type) {
+                case LEG:
+                    game.makeMove(Moves.toNotation(body.getInt()));
+                    break;
+                case DOUBLE:
+                    game.selectDoubleOption(body.getInt());
+                    break;
+                case TURN:
+                    game.swapTurn();
+                    break;
+                case END:
+                    games.remove(session);
+                    break;
+                default:
+                    throw new UncheckedIOException(new IOException("Unknown journal record type " + type));
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // only this session's game is lost; a later checkpoint of it starts it again
+            games.remove(session);
+            return false;
+        }
+        return true;
+    }
+
+    private static List<Integer> segmentIndexes(Path directory) throws IOException {
+        List<Integer> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indexes.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+
+    private static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+}
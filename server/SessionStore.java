@@ -0,0 +1,285 @@
+package server;
+import core.CheckersLogic;
+import core.Position;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Function;
+
+/**
+ * The SessionStore class hosts a large number of mostly idle games in little memory. A dormant game is not a
+ * CheckersLogic with its players, board array and history, but a fixed width record in a direct ByteBuffer slab,
+ * outside the Java heap, so a million sessions cost a few tens of megabytes that the garbage collector never scans.
+ * A CheckersLogic is materialized only while a move is processed: every thread keeps one, restores the record's
+ * position into it, runs the action and writes the resulting position back.
+ * Only the position is kept between turns. A restored game starts a new repetition history, which loses nothing,
+ * as every move is a man moving forward and no position can repeat.
+ * A session id holds the record slot in its low 32 bits and the slot's generation in the high 32 bits, so the id
+ * of a removed session is never mistaken for the session that reuses its slot.
+ * Free slots are linked through their records. Sessions in different slots can be used from different threads
+ * at once; the actions on one session are serialized.
+ * Record layout, little-endian: long 'x' piece mask, long 'o' piece mask, int generation, byte player to move
+ * ('x' or 'o', 0 when the slot is free), 3 bytes unused, int plies played, int next free slot.
+ * @author Samuel White
+ */
+public class SessionStore {
+    public static final int RECORD_BYTES = 32;
+    public static final int DEFAULT_SLAB_RECORDS = 1 << 16;
+
+    private static final int X_PIECES = 0;
+    private static final int O_PIECES = 8;
+    private static final int GENERATION = 16;
+    private static final int SIDE_TO_MOVE = 20;
+    private static final int PLIES = 24;
+    private static final int NEXT_FREE = 28;
+    private static final int NO_SLOT = -1;
+    private static final int LOCK_STRIPES = 1024;
+    private static final Position INITIAL = Position.initial();
+
+    private final int slabRecords;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ThreadLocal<CheckersLogic> games = ThreadLocal.withInitial(() -> new CheckersLogic("PvP"));
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private int freeSlot = NO_SLOT;
+    private int usedSlots;
+    private int size;
+
+    /**
+     * Constructs an empty SessionStore with slabs of DEFAULT_SLAB_RECORDS records.
+     */
+    public SessionStore() {
+        this(DEFAULT_SLAB_RECORDS);
+    }
+
+    /**
+     * Constructs an empty SessionStore.
+     *
+     * @param slabRecords The number of records allocated at once when the store runs out of slots.
+     */
+    public SessionStore(int slabRecords) {
+        if (slabRecords <= 0 || (long) slabRecords * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid slab size: " + slabRecords);
+        }
+        this.slabRecords = slabRecords;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Creates a session for a new game in the starting position.
+     *
+     * @return The session id.
+     */
+    public long create() {
+        return create(INITIAL);
+    }
+
+    /**
+     * Creates a session for a game set up in a position.
+     *
+     * @param position The position, with the player to move.
+     * @return The session id.
+     */
+    public long create(Position position) {
+        int slot;
+        int generation;
+        synchronized (this) {
+            if (this.freeSlot != NO_SLOT) {
+                slot = this.freeSlot;
+                this.freeSlot = slab(slot).getInt(offset(slot) + NEXT_FREE);
+            } else {
+                slot = this.usedSlots++;
+                if (slot == this.slabs.length * this.slabRecords) {
+                    addSlab();
+                }
+            }
+            this.size++;
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            generation = slab.getInt(offset + GENERATION);
+            synchronized (lock(slot)) {
+                write(slab, offset, position);
+                slab.putInt(offset + PLIES, 0);
+            }
+        }
+        return id(slot, generation);
+    }
+
+    /**
+     * Ends a session and frees its record for a new one.
+     *
+     * @param id The session id.
+     * @throws IllegalArgumentException If there is no such session.
+     */
+    public synchronized void remove(long id) throws IllegalArgumentException {
+        int slot = slot(id);
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        synchronized (lock(slot)) {
+            checkLive(id, slot);
+            slab.put(offset + SIDE_TO_MOVE, (byte) 0);
+            slab.putInt(offset + GENERATION, slab.getInt(offset + GENERATION) + 1);
+            slab.putInt(offset + NEXT_FREE, this.freeSlot);
+        }
+        this.freeSlot = slot;
+        this.size--;
+    }
+
+    /**
+     * Reads the position of a session without materializing its game.
+     *
+     * @param id The session id.
+     * @return The position, with the player to move.
+     * @throws IllegalArgumentException If there is no such session.
+     */
+    public Position getPosition(long id) throws IllegalArgumentException {
+        int slot = slot(id);
+        synchronized (lock(slot)) {
+            checkLive(id, slot);
+            return read(slab(slot), offset(slot));
+        }
+    }
+
+    /**
+     * Retrieves the number of moves played in a session.
+     *
+     * @param id The session id.
+     * @return The number of completed turns, counting every turn an action on the session ended.
+     * @throws IllegalArgumentException If there is no such session.
+     */
+    public int getPlies(long id) throws IllegalArgumentException {
+        int slot = slot(id);
+        synchronized (lock(slot)) {
+            checkLive(id, slot);
+            return slab(slot).getInt(offset(slot) + PLIES);
+        }
+    }
+
+    /**
+     * Plays a whole legal move in a session, as CheckersLogic.playMove does.
+     *
+     * @param id The session id.
+     * @param move The packed move. A double jump may leave out its second landing square when it can only continue one way.
+     * @return The move that was played.
+     * @throws IllegalArgumentException If there is no such session or the move is not legal.
+     */
+    public int playMove(long id, int move) throws IllegalArgumentException {
+        return withGame(id, game -> game.playMove(move));
+    }
+
+    /**
+     * Materializes the game of a session, runs an action on it and stores the position it leaves.
+     * The game is only valid during the action, and the action must leave it at the start of a turn.
+     * If the action throws, the session keeps the position it had before.
+     *
+     * @param id The session id.
+     * @param action The action, e.g. making a move; it must not use the store.
+     * @param <T> The type of the action's result.
+     * @return The action's result.
+     * @throws IllegalArgumentException If there is no such session.
+     * @throws IllegalStateException If the action leaves a double jump unfinished.
+     */
+    public <T> T withGame(long id, Function<CheckersLogic, T> action) throws IllegalArgumentException, IllegalStateException {
+        int slot = slot(id);
+        CheckersLogic game = this.games.get();
+        synchronized (lock(slot)) {
+            checkLive(id, slot);
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            Position before = read(slab, offset);
+            game.restorePosition(before);
+            T result = action.apply(game);
+            if (game.getCurrentPlayersTurn().goAgain) {
+                throw new IllegalStateException("A double jump was left unfinished.");
+            }
+            Position after = game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon());
+            if (!after.equals(before)) {
+                write(slab, offset, after);
+            }
+            // restoring the position started the game's turn count at zero
+            slab.putInt(offset + PLIES, slab.getInt(offset + PLIES) + game.getTurnCount());
+            return result;
+        }
+    }
+
+    /**
+     * Checks if a session's game is over, without materializing it.
+     *
+     * @param id The session id.
+     * @return The icon of the winner, or 0 if the game goes on.
+     * @throws IllegalArgumentException If there is no such session.
+     */
+    public char getWinner(long id) throws IllegalArgumentException {
+        Position position = getPosition(id);
+        return position.hasMoves() ? 0 : position.getOpponent();
+    }
+
+    /**
+     * Retrieves the number of live sessions.
+     *
+     * @return The session count.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the memory allocated outside the heap for the records, including free slots.
+     *
+     * @return The number of bytes of all slabs.
+     */
+    public long getOffHeapBytes() {
+        return (long) this.slabs.length * this.slabRecords * RECORD_BYTES;
+    }
+
+    private void addSlab() {
+        ByteBuffer slab = ByteBuffer.allocateDirect(this.slabRecords * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] grown = new ByteBuffer[this.slabs.length + 1];
+        System.arraycopy(this.slabs, 0, grown, 0, this.slabs.length);
+        grown[this.slabs.length] = slab;
+        this.slabs = grown;
+    }
+
+    private void checkLive(long id, int slot) {
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        if (slab.get(offset + SIDE_TO_MOVE) == 0 || slab.getInt(offset + GENERATION) != (int) (id >>> 32)) {
+            throw new IllegalArgumentException("No such session: " + id);
+        }
+    }
+
+    private int slot(long id) {
+        int slot = (int) id;
+        if (slot < 0 || slot >= this.slabs.length * this.slabRecords) {
+            throw new IllegalArgumentException("No such session: " + id);
+        }
+        return slot;
+    }
+
+    private ByteBuffer slab(int slot) {
+        return this.slabs[slot / this.slabRecords];
+    }
+
+    private int offset(int slot) {
+        return (slot % this.slabRecords) * RECORD_BYTES;
+    }
+
+    private Object lock(int slot) {
+        return this.locks[slot % LOCK_STRIPES];
+    }
+
+    private static long id(int slot, int generation) {
+        return (long) generation << 32 | (slot & 0xFFFFFFFFL);
+    }
+
+    private static Position read(ByteBuffer slab, int offset) {
+        return new Position(slab.getLong(offset + X_PIECES), slab.getLong(offset + O_PIECES), (char) slab.get(offset + SIDE_TO_MOVE));
+    }
+
+    private static void write(ByteBuffer slab, int offset, Position position) {
+        slab.putLong(offset + X_PIECES, position.getPieces('x'));
+        slab.putLong(offset + O_PIECES, position.getPieces('o'));
+        slab.put(offset + SIDE_TO_MOVE, (byte) position.getSideToMove());
+    }
+}
@@ -0,0 +1,118 @@
+package tools;
+import core.BatchEvaluator;
+import core.CheckersLogic;
+import core.EvaluationWeights;
+import core.MaterialEvaluator;
+import core.Moves;
+import core.Position;
+import core.PositionBatch;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The BatchEvalBenchmark class compares how many positions per second the batch kernel, the per-Position
+ * engine path and the per-game CheckersLogic path can score. Before timing, it checks that all three agree.
+ * Scores use the standard weights, or tuned weights loaded from a file written by EvalTuner.
+ * Usage: BatchEvalBenchmark [positions] [rounds] [weights file]
+ * @author Samuel White
+ */
+public class BatchEvalBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The number of positions, the number of timed rounds and the weights file.
+     * @throws IOException If the weights file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        EvaluationWeights weights = args.length > 2 ? EvaluationWeights.load(Paths.get(args[2])) : EvaluationWeights.standard();
+        MaterialEvaluator evaluator = new MaterialEvaluator(weights);
+
+        PositionBatch batch = randomPositions(positions, new Random(31));
+        int[] counts = new int[positions];
+        boolean[] captures = new boolean[positions];
+        int[] scores = new int[positions];
+        int[] expectedCounts = new int[positions];
+        boolean[] expectedCaptures = new boolean[positions];
+        int[] expectedScores = new int[positions];
+
+        BatchEvaluator.evaluate(batch, weights, counts, captures, scores);
+        BatchEvaluator.evaluateScalar(batch, weights, expectedCounts, expectedCaptures, expectedScores);
+        if (!Arrays.equals(counts, expectedCounts) || !Arrays.equals(captures, expectedCaptures) || !Arrays.equals(scores, expectedScores)) {
+            throw new IllegalStateException("Batch kernel and scalar path disagree.");
+        }
+        int checked = Math.min(positions, 10_000);
+        int[] result = new int[3];
+        for (int i = 0; i < checked; i++) {
+            evaluateWithCheckersLogic(batch.get(i), evaluator, result);
+            if (result[0] != expectedCounts[i] || (result[1] == 1) != expectedCaptures[i] || result[2] != expectedScores[i]) {
+                throw new IllegalStateException("CheckersLogic disagrees on " + batch.get(i));
+            }
+        }
+
+        System.out.printf("%d positions, %d rounds%n", positions, rounds);
+        double kernel = 0;
+        double scalar = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            BatchEvaluator.evaluate(batch, weights, counts, captures, scores);
+            kernel = Math.max(kernel, positions / ((System.nanoTime() - start) / 1e9));
+
+            start = System.nanoTime();
+            BatchEvaluator.evaluateScalar(batch, weights, expectedCounts, expectedCaptures, expectedScores);
+            scalar = Math.max(scalar, positions / ((System.nanoTime() - start) / 1e9));
+        }
+
+        double logic = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < checked; i++) {
+                evaluateWithCheckersLogic(batch.get(i), evaluator, result);
+            }
+            logic = Math.max(logic, checked / ((System.nanoTime() - start) / 1e9));
+        }
+
+        System.out.printf("batch kernel:      %,15.0f positions/sec%n", kernel);
+        System.out.printf("per Position:      %,15.0f positions/sec%n", scalar);
+        System.out.printf("per CheckersLogic: %,15.0f positions/sec%n", logic);
+    }
+
+    /**
+     * Scores a position the way the UIs see a game: through a CheckersLogic holding it.
+     * Writes the move count, the capture flag (0 or 1) and the score into result.
+     */
+    private static void evaluateWithCheckersLogic(Position position, MaterialEvaluator evaluator, int[] result) {
+        CheckersLogic game = new CheckersLogic("PvP");
+        for (int square = 0; square < 64; square++) {
+            game.setBoardState(new int[] {Moves.row(square), Moves.column(square)}, position.pieceAt(square));
+        }
+        if (position.getSideToMove() == 'o') {
+            game.swapTurn();
+        }
+        result[0] = game.getLegalMoves(game.getCurrentPlayersTurn()).length;
+        result[1] = game.hasPendingCapture(game.getCurrentPlayersTurn()) ? 1 : 0;
+        result[2] = evaluator.evaluate(game.getPosition(position.getSideToMove()));
+    }
+
+    private static PositionBatch randomPositions(int count, Random random) {
+        PositionBatch batch = new PositionBatch(count);
+        int[] moves = new int[Position.MAX_MOVES];
+        while (batch.size() < count) {
+            Position position = Position.initial();
+            while (batch.size() < count) {
+                batch.add(position);
+                int moveCount = position.generateMoves(moves);
+                if (moveCount == 0) {
+                    break;
+                }
+                position = position.play(moves[random.nextInt(moveCount)]);
+            }
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,118 @@
+package tools;
+import core.BoardGeometry;
+import core.Position;
+import core.VariantPosition;
+
+import java.util.Random;
+
+/**
+ * The BoardSizeBenchmark class tracks the speed of the rules engine per board size. For every size it counts the
+ * positions up to a fixed depth from the start (perft) and plays random games to the end, with VariantPosition;
+ * on 8x8 it also runs the same work on Position, the engine the standard game uses, as the baseline.
+ * Usage: BoardSizeBenchmark [depth] [games] [sizes..], by default depth 8, 20000 games, sizes 8 10 12
+ * @author Samuel White
+ */
+public class BoardSizeBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The perft depth, the number of random games and the board sizes.
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int[] sizes = {8, 10, 12};
+        if (args.length > 2) {
+            sizes = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                sizes[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int size : sizes) {
+            BoardGeometry geometry = BoardGeometry.of(size);
+            String name = geometry + " (" + geometry.getSquareCount() + " squares, " + (geometry.isWide() ? "two longs" : "one long") + ")";
+            if (size == 8) {
+                report("8x8 Position", depth, games, () -> perft(Position.initial(), depth, new int[depth][Position.MAX_MOVES]),
+                        () -> playOut(Position.initial(), new Random(1), games));
+            }
+            int[][] moveStack = new int[depth][geometry.getMaxMoves()];
+            report(name, depth, games, () -> perft(VariantPosition.initial(geometry), depth, moveStack),
+                    () -> playOut(VariantPosition.initial(geometry), new Random(1), games));
+        }
+    }
+
+    private static void report(String name, int depth, int games, Counter perft, Counter playOut) {
+        // the first run warms the code up
+        perft.count();
+        long start = System.nanoTime();
+        long leaves = perft.count();
+        double perftSeconds = (System.nanoTime() - start) / 1e9;
+        playOut.count();
+        start = System.nanoTime();
+        long plies = playOut.count();
+        double playSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-32s perft(%d) %,15d in %6.2f s %,12.0f leaves/sec | %,d games %5.1f plies %,10.0f games/sec%n",
+                name, depth, leaves, perftSeconds, leaves / perftSeconds, games, (double) plies / games, games / playSeconds);
+    }
+
+    /**
+     * A measured piece of work returning a count.
+     */
+    private interface Counter {
+        long count();
+    }
+
+    private static long perft(Position position, int depth, int[][] moveStack) {
+        int[] moves = moveStack[depth - 1];
+        int count = position.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            leaves += perft(position.play(moves[i]), depth - 1, moveStack);
+        }
+        return leaves;
+    }
+
+    private static long perft(VariantPosition position, int depth, int[][] moveStack) {
+        int[] moves = moveStack[depth - 1];
+        int count = position.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            leaves += perft(position.play(moves[i]), depth - 1, moveStack);
+        }
+        return leaves;
+    }
+
+    private static long playOut(Position start, Random random, int games) {
+        int[] moves = new int[Position.MAX_MOVES];
+        long plies = 0;
+        for (int game = 0; game < games; game++) {
+            Position position = start;
+            for (int count = position.generateMoves(moves); count > 0; count = position.generateMoves(moves)) {
+                position = position.play(moves[random.nextInt(count)]);
+                plies++;
+            }
+        }
+        return plies;
+    }
+
+    private static long playOut(VariantPosition start, Random random, int games) {
+        int[] moves = new int[start.getGeometry().getMaxMoves()];
+        long plies = 0;
+        for (int game = 0; game < games; game++) {
+            VariantPosition position = start;
+            for (int count = position.generateMoves(moves); count > 0; count = position.generateMoves(moves)) {
+                position = position.play(moves[random.nextInt(count)]);
+                plies++;
+            }
+        }
+        return plies;
+    }
+}
@@ -0,0 +1,205 @@
+package tools;
+import core.CheckersLogic;
+import core.Moves;
+import server.GameBroadcaster;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The BroadcastLoadTest class measures how long GameBroadcaster takes to fan one game out to many spectators
+ * on localhost. It connects the spectators, plays a random game and broadcasts every move, then reports the
+ * latency from broadcast to delivery for every frame, and until the last spectator had each frame.
+ * Every spectator needs two file descriptors in this process, so 10,000 spectators need a limit above 20,000.
+ * Usage: BroadcastLoadTest [subscribers] [moves] [loops] [DROP|SKIP]
+ * @author Samuel White
+ */
+public class BroadcastLoadTest {
+    private static final int READER_THREADS = 4;
+    private static final long MOVE_INTERVAL_MILLIS = 20;
+    private static final long FRAME_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args The number of subscribers, moves and event loops, and the slow consumer policy.
+     * @throws IOException If a socket cannot be opened.
+     * @throws InterruptedException If the test is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int loops = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        GameBroadcaster.SlowConsumerPolicy policy = GameBroadcaster.SlowConsumerPolicy.valueOf(args.length > 3 ? args[3] : "SKIP");
+
+        try (GameBroadcaster broadcaster = new GameBroadcaster(new InetSocketAddress("127.0.0.1", 0), loops, 64, policy)) {
+            broadcaster.start();
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", broadcaster.getPort());
+
+            Selector[] selectors = new Selector[READER_THREADS];
+            for (int i = 0; i < READER_THREADS; i++) {
+                selectors[i] = Selector.open();
+            }
+            long connectStart = System.nanoTime();
+            for (int i = 0; i < subscribers; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.configureBlocking(false);
+                channel.register(selectors[i % READER_THREADS], SelectionKey.OP_READ, ByteBuffer.allocate(GameBroadcaster.FRAME_BYTES * 64));
+            }
+            long connectDeadline = System.currentTimeMillis() + FRAME_TIMEOUT_MILLIS;
+            while (broadcaster.getSubscriberCount() < subscribers && System.currentTimeMillis() < connectDeadline) {
+                Thread.sleep(10);
+            }
+            if (broadcaster.getSubscriberCount() < subscribers) {
+                System.out.println("Only " + broadcaster.getSubscriberCount() + " subscribers were accepted, check the file descriptor limit");
+                return;
+            }
+            System.out.printf("%,d subscribers connected in %d ms over %d event loops%n", subscribers,
+                    (System.nanoTime() - connectStart) / 1_000_000, loops);
+
+            AtomicLongArray deliveries = new AtomicLongArray(moves);
+            AtomicLongArray lastArrival = new AtomicLongArray(moves);
+            long[] sentAt = new long[moves];
+            long[][] latencies = new long[READER_THREADS][];
+            Reader[] readers = new Reader[READER_THREADS];
+            Thread[] threads = new Thread[READER_THREADS];
+            for (int i = 0; i < READER_THREADS; i++) {
+                readers[i] = new Reader(selectors[i], deliveries, lastArrival, sentAt, (long) moves * subscribers / READER_THREADS + moves);
+                threads[i] = new Thread(readers[i], "spectator-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+
+            CheckersLogic game = new CheckersLogic("PvP");
+            Random random = new Random(37);
+            int sent = 0;
+            for (; sent < moves; sent++) {
+                int[] legal = game.getLegalMoves(game.getCurrentPlayersTurn());
+                if (legal.length == 0) {
+                    game = new CheckersLogic("PvP");
+                    legal = game.getLegalMoves(game.getCurrentPlayersTurn());
+                }
+                int move = game.playMove(legal[random.nextInt(legal.length)]);
+                sentAt[sent] = System.nanoTime();
+                broadcaster.broadcast(game.getSnapshot(), move);
+                long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MILLIS;
+                while (deliveries.get(sent) < subscribers - broadcaster.getDroppedCount() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                Thread.sleep(MOVE_INTERVAL_MILLIS);
+            }
+            for (Reader reader : readers) {
+                reader.running = false;
+                reader.selector.wakeup();
+            }
+            for (int i = 0; i < READER_THREADS; i++) {
+                threads[i].join();
+                latencies[i] = Arrays.copyOf(readers[i].latencies, readers[i].count);
+            }
+
+            long[] fanOut = new long[sent];
+            long complete = 0;
+            for (int i = 0; i < sent; i++) {
+                fanOut[i] = lastArrival.get(i) - sentAt[i];
+                if (deliveries.get(i) >= subscribers) {
+                    complete++;
+                }
+            }
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).toArray();
+            Arrays.sort(fanOut);
+            Arrays.sort(all);
+            System.out.printf("%d frames, %,d deliveries, %d frames reached every subscriber%n", sent, all.length, complete);
+            System.out.printf("per delivery latency: p50 %s  p99 %s  max %s%n", micros(all, 0.5), micros(all, 0.99), micros(all, 1.0));
+            System.out.printf("full fan-out latency: p50 %s  p99 %s  max %s%n", micros(fanOut, 0.5), micros(fanOut, 0.99), micros(fanOut, 1.0));
+            System.out.printf("dropped subscribers %d, skipped frames %d, frames written %,d%n",
+                    broadcaster.getDroppedCount(), broadcaster.getSkippedFrames(), broadcaster.getFramesWritten());
+            for (Selector selector : selectors) {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            }
+        }
+    }
+
+    private static String micros(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.round(quantile * (sorted.length - 1)));
+        return String.format("%,d us", sorted[index] / 1000);
+    }
+
+    /**
+     * A thread reading frames for a share of the spectators and recording when each frame arrived.
+     */
+    private static class Reader implements Runnable {
+        private final Selector selector;
+        private final AtomicLongArray deliveries;
+        private final AtomicLongArray lastArrival;
+        private final long[] sentAt;
+        private final long[] latencies;
+        private int count;
+        private volatile boolean running = true;
+
+        Reader(Selector selector, AtomicLongArray deliveries, AtomicLongArray lastArrival, long[] sentAt, long capacity) {
+            this.selector = selector;
+            this.deliveries = deliveries;
+            this.lastArrival = lastArrival;
+            this.sentAt = sentAt;
+            this.latencies = new long[(int) Math.min(Integer.MAX_VALUE - 8, capacity)];
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (this.running) {
+                    this.selector.select();
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        read(key);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Spectator reader failed", e);
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            ByteBuffer buffer = (ByteBuffer) key.attachment();
+            if (((SocketChannel) key.channel()).read(buffer) < 0) {
+                key.cancel();
+                return;
+            }
+            long now = System.nanoTime();
+            buffer.flip();
+            while (buffer.remaining() >= GameBroadcaster.FRAME_BYTES) {
+                int start = buffer.position();
+                int sequence = (int) buffer.getLong(start + 5);
+                int move = buffer.getInt(start + 21);
+                if (Moves.from(move) == Moves.to(move)) {
+                    throw new IllegalStateException("Corrupt frame");
+                }
+                buffer.position(start + GameBroadcaster.FRAME_BYTES);
+                if (sequence < this.sentAt.length) {
+                    this.deliveries.incrementAndGet(sequence);
+                    this.lastArrival.accumulateAndGet(sequence, now, Math::max);
+                    if (this.count < this.latencies.length) {
+                        this.latencies[this.count++] = now - buffer.getLong(start + 13);
+                    }
+                }
+            }
+            buffer.compact();
+        }
+    }
+}
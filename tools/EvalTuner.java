@@ -0,0 +1,244 @@
+package tools;
+import core.EvaluationWeights;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The EvalTuner class tunes the MaterialEvaluator weights against the results of the games in a position dataset.
+ * It minimizes the mean squared error between each game result and the winning chance a logistic curve
+ * predicts from the evaluation (Texel's method). The scale of the curve is fitted once for the starting weights,
+ * then the weights follow the gradient using Adam. Every pass over the dataset reads it in chunks on a
+ * fork-join pool and sums the loss and gradient of the chunks, so memory use does not depend on the dataset size.
+ * Usage: EvalTuner dataset output.properties [iterations] [threads]
+ * @author Samuel White
+ */
+public class EvalTuner {
+    private static final int CHUNK_RECORDS = 1 << 16;
+    private static final int PARAMETERS = EvaluationWeights.ROWS;
+    private static final double LEARNING_RATE = 0.5;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private final PositionDataset dataset;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<PositionDataset.Chunk> chunks = ThreadLocal.withInitial(() -> new PositionDataset.Chunk(CHUNK_RECORDS));
+
+    /**
+     * The loss and gradient summed over a range of records.
+     */
+    private static class Totals {
+        long count;
+        double loss;
+        final double[] gradient = new double[PARAMETERS];
+
+        Totals add(Totals other) {
+            this.count += other.count;
+            this.loss += other.loss;
+            for (int i = 0; i < PARAMETERS; i++) {
+                this.gradient[i] += other.gradient[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Computes the totals of a range of records, splitting it in half until it fits in one chunk.
+     */
+    private class PassTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final long first;
+        private final long last;
+        private final double[] weights;
+        private final double scale;
+        private final boolean withGradient;
+
+        PassTask(long first, long last, double[] weights, double scale, boolean withGradient) {
+            this.first = first;
+            this.last = last;
+            this.weights = weights;
+            this.scale = scale;
+            this.withGradient = withGradient;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (this.last - this.first > CHUNK_RECORDS) {
+                long middle = (this.first + this.last) >>> 1;
+                PassTask left = new PassTask(this.first, middle, this.weights, this.scale, this.withGradient);
+                PassTask right = new PassTask(middle, this.last, this.weights, this.scale, this.withGradient);
+                left.fork();
+                Totals totals = right.compute();
+                return totals.add(left.join());
+            }
+            Totals totals = new Totals();
+            PositionDataset.Chunk chunk = EvalTuner.this.chunks.get();
+            int records = EvalTuner.this.dataset.read(this.first, (int) (this.last - this.first), chunk);
+            int[] features = new int[PARAMETERS];
+            for (int i = 0; i < records; i++) {
+                char result = chunk.result(i);
+                double target = result == 'x' ? 1.0 : result == 'o' ? 0.0 : 0.5;
+                features(chunk.xPieces(i), chunk.oPieces(i), features);
+                double score = 0;
+                for (int p = 0; p < PARAMETERS; p++) {
+                    score += this.weights[p] * features[p];
+                }
+                double predicted = 1.0 / (1.0 + Math.exp(-this.scale * score));
+                double error = predicted - target;
+                totals.loss += error * error;
+                if (this.withGradient) {
+                    double slope = 2 * error * this.scale * predicted * (1 - predicted);
+                    for (int p = 0; p < PARAMETERS; p++) {
+                        totals.gradient[p] += slope * features[p];
+                    }
+                }
+            }
+            totals.count = records;
+            return totals;
+        }
+    }
+
+    /**
+     * Constructs an EvalTuner.
+     *
+     * @param dataset The dataset to tune against.
+     * @param threads The number of worker threads.
+     */
+    public EvalTuner(PositionDataset dataset, int threads) {
+        this.dataset = dataset;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Computes the mean loss of some weights over the whole dataset.
+     *
+     * @param weights The weights.
+     * @param scale The logistic scale turning a score into a winning chance.
+     * @return The mean squared error.
+     */
+    public double loss(EvaluationWeights weights, double scale) {
+        Totals totals = pass(toArray(weights), scale, false);
+        return totals.loss / Math.max(1, totals.count);
+    }
+
+    /**
+     * Finds the logistic scale that fits some weights best, by golden section search.
+     *
+     * @param weights The weights.
+     * @return The scale.
+     */
+    public double fitScale(EvaluationWeights weights) {
+        double[] values = toArray(weights);
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low = 0.0001;
+        double high = 0.1;
+        for (int step = 0; step < 30; step++) {
+            double left = high - ratio * (high - low);
+            double right = low + ratio * (high - low);
+            if (pass(values, left, false).loss < pass(values, right, false).loss) {
+                high = right;
+            } else {
+                low = left;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Tunes weights by gradient descent.
+     *
+     * @param start The weights to start from.
+     * @param scale The logistic scale.
+     * @param iterations The number of passes over the dataset.
+     * @return The tuned weights.
+     */
+    public EvaluationWeights tune(EvaluationWeights start, double scale, int iterations) {
+        double[] weights = toArray(start);
+        double[] momentum = new double[PARAMETERS];
+        double[] velocity = new double[PARAMETERS];
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            Totals totals = pass(weights, scale, true);
+            for (int p = 0; p < PARAMETERS; p++) {
+                double gradient = totals.gradient[p] / Math.max(1, totals.count);
+                momentum[p] = BETA1 * momentum[p] + (1 - BETA1) * gradient;
+                velocity[p] = BETA2 * velocity[p] + (1 - BETA2) * gradient * gradient;
+                double corrected = momentum[p] / (1 - Math.pow(BETA1, iteration));
+                double spread = velocity[p] / (1 - Math.pow(BETA2, iteration));
+                weights[p] -= LEARNING_RATE * corrected / (Math.sqrt(spread) + EPSILON);
+            }
+            if (iteration % 10 == 0 || iteration == iterations) {
+                System.out.printf("iteration %d loss %.6f %s%n", iteration, totals.loss / Math.max(1, totals.count), fromArray(weights));
+            }
+        }
+        return fromArray(weights);
+    }
+
+    /**
+     * Tunes the evaluation weights from the command line and writes them to a parameter file.
+     *
+     * @param args The dataset file, the output file, the number of iterations and the number of threads.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: EvalTuner <dataset> <output.properties> [iterations] [threads]");
+            return;
+        }
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Path output = Paths.get(args[1]);
+
+        try (PositionDataset dataset = PositionDataset.open(Paths.get(args[0]))) {
+            EvalTuner tuner = new EvalTuner(dataset, threads);
+            EvaluationWeights start = EvaluationWeights.standard();
+            long begin = System.nanoTime();
+            double scale = tuner.fitScale(start);
+            double before = tuner.loss(start, scale);
+            System.out.printf("%d positions, scale %.6f, starting loss %.6f%n", dataset.size(), scale, before);
+
+            EvaluationWeights tuned = tuner.tune(start, scale, iterations);
+            double after = tuner.loss(tuned, scale);
+            tuned.save(output, String.format("Tuned on %d positions, loss %.6f -> %.6f", dataset.size(), before, after));
+            System.out.printf("Final loss %.6f, wrote %s in %.1f s%n", after, output, (System.nanoTime() - begin) / 1e9);
+        }
+    }
+
+    private Totals pass(double[] weights, double scale, boolean withGradient) {
+        return this.pool.invoke(new PassTask(0, this.dataset.size(), weights, scale, withGradient));
+    }
+
+    /**
+     * Counts the features the weights multiply, from the point of view of 'x':
+     * the difference in pieces, then the difference in pieces that have advanced 1 to 7 rows.
+     */
+    private static void features(long x, long o, int[] features) {
+        features[0] = Long.bitCount(x) - Long.bitCount(o);
+        for (int rows = 1; rows < PARAMETERS; rows++) {
+            long xRow = 0xFFL << (8 * (7 - rows));
+            long oRow = 0xFFL << (8 * rows);
+            features[rows] = Long.bitCount(x & xRow) - Long.bitCount(o & oRow);
+        }
+    }
+
+    private static double[] toArray(EvaluationWeights weights) {
+        double[] values = new double[PARAMETERS];
+        values[0] = weights.getPieceValue();
+        for (int rows = 1; rows < PARAMETERS; rows++) {
+            values[rows] = weights.getAdvanceValue(rows);
+        }
+        return values;
+    }
+
+    private static EvaluationWeights fromArray(double[] values) {
+        int[] advanceValues = new int[EvaluationWeights.ROWS];
+        for (int rows = 1; rows < PARAMETERS; rows++) {
+            advanceValues[rows] = (int) Math.round(values[rows]);
+        }
+        return new EvaluationWeights((int) Math.round(values[0]), advanceValues);
+    }
+}
@@ -0,0 +1,330 @@
+package tools;
+import core.AlphaBetaStrategy;
+import core.CheckersLogic;
+import core.Computer;
+import core.MoveCursor;
+import core.Moves;
+import core.Position;
+import core.SearchLimits;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The HotPathRegression class guards the speed of the rules engine and the search. It runs move generation,
+ * CheckersLogic.makeMove, playMove and checkWin, and Computer.takeTurn over a fixed corpus of positions from
+ * seeded random games, and measures every call: the bytes it allocated, read from the thread's allocation
+ * counter, and its latency. The allocation per call and the 99th percentile latency of every operation are
+ * checked against a budget file, and the run fails if any operation goes over.
+ * The budget is a properties file with the keys "operation.bytesPerOp" and "operation.p99Nanos"; an operation
+ * or limit without a key is measured but not checked. The results are written as JSON to the report file.
+ * The exit status is 0 if every operation is within budget and 1 otherwise, so a build can run it as a test.
+ * Usage: HotPathRegression [--budget FILE] [--report FILE] [--positions N], by default the budget
+ * tools/hotpath-budget.properties, the report hotpath-report.json and 2000 positions
+ * @author Samuel White
+ */
+public class HotPathRegression {
+    private static final long CORPUS_SEED = 20240601L;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    // Computer.takeTurn searches, so it runs on every TAKE_TURN_STRIDE-th position with a small node budget
+    private static final int TAKE_TURN_STRIDE = 10;
+    private static final SearchLimits TAKE_TURN_LIMITS = SearchLimits.nodes(2000);
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<String, Result> results = new LinkedHashMap<>();
+    private long overheadNanos;
+
+    /**
+     * An operation measured one call at a time.
+     */
+    private interface Operation {
+
+        /**
+         * Sets up the state the measured call starts from. This part is not measured.
+         */
+        default void prepare(int index) {
+        }
+
+        /**
+         * Makes the measured call.
+         */
+        void run(int index);
+    }
+
+    /**
+     * The measurements of one operation, and its budget.
+     */
+    static class Result {
+        final String name;
+        final long calls;
+        final double bytesPerOp;
+        final long p50Nanos;
+        final long p99Nanos;
+        final long maxNanos;
+        double bytesBudget = -1;
+        long p99Budget = -1;
+
+        Result(String name, long calls, double bytesPerOp, long p50Nanos, long p99Nanos, long maxNanos) {
+            this.name = name;
+            this.calls = calls;
+            this.bytesPerOp = bytesPerOp;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        boolean withinBudget() {
+            return (this.bytesBudget < 0 || this.bytesPerOp <= this.bytesBudget)
+                    && (this.p99Budget < 0 || this.p99Nanos <= this.p99Budget);
+        }
+    }
+
+    HotPathRegression() {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!this.threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM does not count allocated bytes per thread.");
+        }
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Runs the suite.
+     *
+     * @param args The options described in the class description.
+     * @throws IOException If the budget cannot be read or the report cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path budgetFile = Paths.get("tools", "hotpath-budget.properties");
+        Path reportFile = Paths.get("hotpath-report.json");
+        int positions = 2000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--budget":
+                    budgetFile = Paths.get(args[i + 1]);
+                    break;
+                case "--report":
+                    reportFile = Paths.get(args[i + 1]);
+                    break;
+                case "--positions":
+                    positions = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Usage: HotPathRegression [--budget FILE] [--report FILE] [--positions N]");
+                    System.exit(1);
+            }
+        }
+
+        Properties budget = new Properties();
+        try (Reader reader = Files.newBufferedReader(budgetFile, StandardCharsets.UTF_8)) {
+            budget.load(reader);
+        }
+        HotPathRegression suite = new HotPathRegression();
+        suite.runAll(corpus(positions));
+        boolean passed = suite.check(budget);
+        suite.writeReport(reportFile, passed);
+        System.out.println((passed ? "PASSED" : "FAILED") + ", report written to " + reportFile);
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Plays seeded random games from the start and keeps every position in which the player to move can move.
+     *
+     * @param size The number of positions.
+     * @return The positions.
+     */
+    static Position[] corpus(int size) {
+        Random random = new Random(CORPUS_SEED);
+        int[] moves = new int[Position.MAX_MOVES];
+        List<Position> positions = new ArrayList<>(size);
+        while (positions.size() < size) {
+            Position position = Position.initial();
+            for (int count = position.generateMoves(moves); count > 0 && positions.size() < size; count = position.generateMoves(moves)) {
+                positions.add(position);
+                position = position.play(moves[random.nextInt(count)]);
+            }
+        }
+        return positions.toArray(new Position[0]);
+    }
+
+    /**
+     * Measures every operation over the corpus.
+     */
+    void runAll(Position[] corpus) {
+        int[] moves = new int[Position.MAX_MOVES];
+        MoveCursor cursor = new MoveCursor();
+        int[] firstMoves = new int[corpus.length];
+        String[] firstLegs = new String[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i].generateMoves(moves);
+            firstMoves[i] = moves[0];
+            firstLegs[i] = Moves.toNotation(Moves.encode(Moves.from(moves[0]), Moves.to(moves[0])));
+        }
+        CheckersLogic game = new CheckersLogic("PvP");
+        Computer x = new Computer('x', game, new AlphaBetaStrategy(), TAKE_TURN_LIMITS);
+        Computer o = new Computer('o', game, new AlphaBetaStrategy(), TAKE_TURN_LIMITS);
+        int[] sink = new int[1];
+
+        this.overheadNanos = 0;
+        Result empty = measure("empty", corpus.length, index -> sink[0]++);
+        this.overheadNanos = empty.p50Nanos;
+
+        measure("generateMoves", corpus.length, index -> sink[0] += corpus[index].generateMoves(moves));
+        measure("moveCursor", corpus.length, index -> {
+            cursor.reset(corpus[index]);
+            for (int move = cursor.next(); move != Moves.NONE; move = cursor.next()) {
+                sink[0]++;
+            }
+        });
+        measure("hasMoves", corpus.length, index -> sink[0] += corpus[index].hasMoves() ? 1 : 0);
+        measure("makeMove", corpus.length, new Operation() {
+            @Override
+            public void prepare(int index) {
+                game.restorePosition(corpus[index]);
+            }
+
+            @Override
+            public void run(int index) {
+                game.makeMove(firstLegs[index]);
+            }
+        });
+        measure("playMove", corpus.length, new Operation() {
+            @Override
+            public void prepare(int index) {
+                game.restorePosition(corpus[index]);
+            }
+
+            @Override
+            public void run(int index) {
+                sink[0] += game.playMove(firstMoves[index]);
+            }
+        });
+        measure("checkWin", corpus.length, new Operation() {
+            @Override
+            public void prepare(int index) {
+                game.restorePosition(corpus[index]);
+            }
+
+            @Override
+            public void run(int index) {
+                sink[0] += game.checkWin() ? 1 : 0;
+            }
+        });
+        measure("takeTurn", corpus.length / TAKE_TURN_STRIDE, new Operation() {
+            @Override
+            public void prepare(int index) {
+                game.restorePosition(corpus[index * TAKE_TURN_STRIDE]);
+            }
+
+            @Override
+            public void run(int index) {
+                Computer computer = game.getCurrentPlayersTurn().getPlayerIcon() == 'x' ? x : o;
+                sink[0] += computer.takeTurn().length();
+            }
+        });
+    }
+
+    /**
+     * Runs an operation on every index, first to warm it up and then measuring every call. The allocation and
+     * latency of an empty call, which the measuring itself costs, are subtracted.
+     */
+    private Result measure(String name, int size, Operation operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (int i = 0; i < size; i++) {
+                operation.prepare(i);
+                operation.run(i);
+            }
+        }
+        long calls = (long) size * MEASURED_ROUNDS;
+        long[] nanos = new long[(int) calls];
+        long bytes = 0;
+        int call = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (int i = 0; i < size; i++) {
+                operation.prepare(i);
+                long allocatedBefore = this.threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                operation.run(i);
+                long end = System.nanoTime();
+                bytes += this.threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                nanos[call++] = Math.max(0, end - start - this.overheadNanos);
+            }
+        }
+        Arrays.sort(nanos);
+        Result result = new Result(name, calls, (double) bytes / calls, percentile(nanos, 0.50), percentile(nanos, 0.99), nanos[nanos.length - 1]);
+        if (!name.equals("empty")) {
+            this.results.put(name, result);
+        }
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    /**
+     * Compares every result with its budget and prints them.
+     *
+     * @param budget The budget properties.
+     * @return true if every operation is within budget, false otherwise.
+     */
+    boolean check(Properties budget) {
+        boolean passed = true;
+        System.out.printf("%-14s %10s %12s %10s %10s %12s  %s%n", "operation", "calls", "bytes/op", "p50 ns", "p99 ns", "max ns", "budget");
+        for (Result result : this.results.values()) {
+            String bytes = budget.getProperty(result.name + ".bytesPerOp");
+            String p99 = budget.getProperty(result.name + ".p99Nanos");
+            if (bytes != null) {
+                result.bytesBudget = Double.parseDouble(bytes.trim());
+            }
+            if (p99 != null) {
+                result.p99Budget = Long.parseLong(p99.trim());
+            }
+            boolean within = result.withinBudget();
+            passed &= within;
+            System.out.printf("%-14s %,10d %12.1f %,10d %,10d %,12d  %s%n", result.name, result.calls, result.bytesPerOp,
+                    result.p50Nanos, result.p99Nanos, result.maxNanos,
+                    (within ? "ok" : "OVER") + " (" + (bytes == null ? "-" : bytes.trim()) + " bytes, " + (p99 == null ? "-" : p99.trim()) + " ns)");
+        }
+        return passed;
+    }
+
+    /**
+     * Writes the results as JSON.
+     */
+    private void writeReport(Path file, boolean passed) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"passed\": ").append(passed).append(",\n");
+        json.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"operations\": [\n");
+        int written = 0;
+        for (Result result : this.results.values()) {
+            json.append(String.format(Locale.ROOT,
+                    "    {\"name\": \"%s\", \"calls\": %d, \"bytesPerOp\": %.2f, \"p50Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d,"
+                            + " \"bytesPerOpBudget\": %s, \"p99NanosBudget\": %s, \"passed\": %b}",
+                    result.name, result.calls, result.bytesPerOp, result.p50Nanos, result.p99Nanos, result.maxNanos,
+                    result.bytesBudget < 0 ? "null" : String.format(Locale.ROOT, "%.2f", result.bytesBudget),
+                    result.p99Budget < 0 ? "null" : Long.toString(result.p99Budget), result.withinBudget()));
+            json.append(++written < this.results.size() ? ",\n" : "\n");
+        }
+        json.append("  ]\n}\n");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+    }
+}
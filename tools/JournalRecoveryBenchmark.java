@@ -0,0 +1,137 @@
+package tools;
+import core.CheckersLogic;
+import core.Position;
+import server.JournaledSession;
+import server.MoveJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import java.util.Random;
+
+/**
+ * The JournalRecoveryBenchmark class measures MoveJournal. It plays random moves in many sessions from several
+ * threads, reports the journaled move rate and how many forces the group commit needed, compacts the journal,
+ * then recovers every session from the directory and checks each recovered position against the live one.
+ * Usage: JournalRecoveryBenchmark directory [sessions] [plies] [threads]
+ * @author Samuel White
+ */
+public class JournalRecoveryBenchmark {
+    private static final long SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The journal directory, the number of sessions, the plies per session and the number of threads.
+     * @throws IOException If the journal cannot be written or read.
+     * @throws InterruptedException If the main thread is interrupted while waiting for the players.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: JournalRecoveryBenchmark <directory> [sessions] [plies] [threads]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        int sessionCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                if (files.findAny().isPresent()) {
+                    System.out.println(directory + " is not empty");
+                    return;
+                }
+            }
+        }
+
+        JournaledSession[] sessions = new JournaledSession[sessionCount];
+        boolean[] ended = new boolean[sessionCount];
+        long start = System.nanoTime();
+        long moves;
+        try (MoveJournal journal = MoveJournal.open(directory, SEGMENT_BYTES)) {
+            for (int i = 0; i < sessionCount; i++) {
+                sessions[i] = new JournaledSession(journal, i);
+            }
+            for (JournaledSession session : sessions) {
+                session.setSynchronous(false);
+            }
+            long[] played = new long[threads];
+            Thread[] players = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                players[t] = new Thread(() -> played[thread] = play(sessions, ended, thread, threads, plies), "player-" + t);
+                players[t].start();
+            }
+            moves = 0;
+            for (int t = 0; t < threads; t++) {
+                players[t].join();
+                moves += played[t];
+            }
+            journal.sync();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%,d sessions, %,d moves, %,d records in %.2f s: %,.0f moves/sec%n", sessionCount, moves,
+                    journal.getRecordCount(), seconds, moves / seconds);
+            System.out.printf("%,d group commits (%.0f records per force), %,.1f MB written%n", journal.getCommitCount(),
+                    (double) journal.getRecordCount() / journal.getCommitCount(), journal.getBytesWritten() / 1e6);
+
+            recover("Replayed", directory, sessions, ended);
+            long compactStart = System.nanoTime();
+            int deleted = journal.compact();
+            System.out.printf("Compaction deleted %d segments in %d ms%n", deleted, (System.nanoTime() - compactStart) / 1_000_000);
+        }
+
+        recover("Recovered", directory, sessions, ended);
+    }
+
+    /**
+     * Recovers the journal, reporting how long it took and how many sessions it got wrong.
+     */
+    private static void recover(String label, Path directory, JournaledSession[] sessions, boolean[] ended) throws IOException {
+        long start = System.nanoTime();
+        MoveJournal.Recovery recovery = MoveJournal.recover(directory);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        int mismatches = 0;
+        for (int i = 0; i < sessions.length; i++) {
+            CheckersLogic live = sessions[i].getGame();
+            CheckersLogic recovered = recovery.games.get((long) i);
+            if (ended[i] ? recovered != null : recovered == null || !position(live).equals(position(recovered))) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%s %,d sessions from %,d records in %d segments in %d ms, %d mismatches, %d torn segments, %d dropped sessions%n",
+                label, recovery.games.size(), recovery.records, recovery.segments, millis, mismatches, recovery.tornSegments,
+                recovery.droppedSessions);
+    }
+
+    private static Position position(CheckersLogic game) {
+        return game.getPosition(game.getCurrentPlayersTurn().getPlayerIcon());
+    }
+
+    /**
+     * Plays random legal moves in every step-th session from the first, ending the sessions whose player to move cannot move.
+     */
+    private static long play(JournaledSession[] sessions, boolean[] ended, int first, int step, int plies) {
+        Random random = new Random(first);
+        long moves = 0;
+        for (int ply = 0; ply < plies; ply++) {
+            for (int i = first; i < sessions.length; i += step) {
+                JournaledSession session = sessions[i];
+                if (ended[i]) {
+                    continue;
+                }
+                CheckersLogic game = session.getGame();
+                int[] legal = game.getLegalMoves(game.getCurrentPlayersTurn());
+                if (legal.length == 0) {
+                    session.end();
+                    ended[i] = true;
+                    continue;
+                }
+                session.playMove(legal[random.nextInt(legal.length)]);
+                moves++;
+            }
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,512 @@
+package tools;
+import core.AlphaBetaStrategy;
+import core.CheckersLogic;
+import core.Computer;
+import core.Difficulty;
+import core.EvaluationWeights;
+import core.Evaluator;
+import core.GreedyStrategy;
+import core.MaterialEvaluator;
+import core.MctsStrategy;
+import core.MoveCache;
+import core.MoveStrategy;
+import core.Moves;
+import core.NeuralEvaluator;
+import core.Position;
+import core.RandomStrategy;
+import core.SearchBudget;
+import core.SearchLimits;
+import core.TranspositionTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The MatchHarness class decides whether engine A is stronger than engine B. It plays them against each other
+ * from a set of balanced openings, every opening twice with colors swapped, on several threads at once.
+ * After every game it runs a sequential probability ratio test (SPRT) of H0, A is elo0 stronger, against H1,
+ * A is elo1 stronger, and stops as soon as either is accepted at the given error rates, or at the game limit.
+ * It reports the score, the Elo difference with its 95% error bars, the log-likelihood ratio and the nodes per
+ * second each engine searched, so a change that is stronger only because it searches more is visible.
+ * An engine is written "strategy[:option=value,...]": strategy is alphabeta, mcts, greedy or random, and the
+ * options are nodes, millis and depth for the budget of every move, weights=FILE for MaterialEvaluator weights,
+ * net=FILE for a NeuralEvaluator and hash=MB for a transposition table.
+ * Without an openings file the openings are every distinct position after --plies moves that a shallow search
+ * scores as roughly even. An openings file has one line of moves in notation per opening.
+ * Usage: MatchHarness A B [--games N] [--threads T] [--openings FILE | --plies P]
+ * [--elo0 E] [--elo1 E] [--alpha A] [--beta B]
+ * @author Samuel White
+ */
+public class MatchHarness {
+    private static final long REPORT_MILLIS = 5000;
+    private static final long MOVE_CACHE_BYTES = 4L * 1024 * 1024;
+    private static final int BALANCE_DEPTH = 6;
+    private static final int BALANCE_MARGIN = 60;
+
+    private final Engine first;
+    private final Engine second;
+    private final List<int[]> openings;
+    private final int maxGames;
+    private final double lowerBound;
+    private final double upperBound;
+    private final double expected0;
+    private final double expected1;
+    private final AtomicInteger nextPair = new AtomicInteger();
+    private int wins;
+    private int draws;
+    private int losses;
+    private final long[] nodes = new long[2];
+    private final long[] nanos = new long[2];
+    private String verdict;
+
+    /**
+     * One engine configuration, parsed from its command line description.
+     */
+    static class Engine {
+        private final String description;
+        private final String strategy;
+        private final SearchLimits limits;
+        private final String weights;
+        private final String network;
+        private final long hashBytes;
+
+        Engine(String description) {
+            this.description = description;
+            String[] parts = description.split(":", 2);
+            this.strategy = parts[0];
+            if (!List.of("alphabeta", "mcts", "greedy", "random").contains(this.strategy)) {
+                throw new IllegalArgumentException("Unknown strategy: " + this.strategy);
+            }
+            long maxNodes = SearchLimits.UNLIMITED;
+            long maxMillis = SearchLimits.UNLIMITED;
+            int maxDepth = Integer.MAX_VALUE;
+            String weights = null;
+            String network = null;
+            long hashBytes = 0;
+            for (String option : parts.length > 1 ? parts[1].split(",") : new String[0]) {
+                String[] pair = option.split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Invalid engine option: " + option);
+                }
+                switch (pair[0]) {
+                    case "nodes":
+                        maxNodes = Long.parseLong(pair[1]);
+                        break;
+                    case "millis":
+                        maxMillis = Long.parseLong(pair[1]);
+                        break;
+                    case "depth":
+                        maxDepth = Integer.parseInt(pair[1]);
+                        break;
+                    case "weights":
+                        weights = pair[1];
+                        break;
+                    case "net":
+                        network = pair[1];
+                        break;
+                    case "hash":
+                        hashBytes = Long.parseLong(pair[1]) * 1024 * 1024;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown engine option: " + pair[0]);
+                }
+            }
+            // an engine given no budget searches like the casual difficulty
+            boolean unlimited = maxNodes == SearchLimits.UNLIMITED && maxMillis == SearchLimits.UNLIMITED && maxDepth == Integer.MAX_VALUE;
+            this.limits = unlimited ? Difficulty.CASUAL.limits() : new SearchLimits(maxNodes, maxMillis, maxDepth);
+            this.weights = weights;
+            this.network = network;
+            this.hashBytes = hashBytes;
+        }
+
+        /**
+         * Creates the strategy of one player, with its own evaluator and table, as strategies are not thread safe.
+         * The table, if any, is added to tables so it can be cleared between games.
+         */
+        MoveStrategy create(Random random, List<TranspositionTable> tables) throws IOException {
+            switch (this.strategy) {
+                case "mcts":
+                    return new MctsStrategy(random);
+                case "greedy":
+                    return new GreedyStrategy(random);
+                case "random":
+                    return new RandomStrategy(random);
+                default:
+                    Evaluator evaluator;
+                    if (this.network != null) {
+                        evaluator = NeuralEvaluator.load(Paths.get(this.network));
+                    } else if (this.weights != null) {
+                        evaluator = new MaterialEvaluator(EvaluationWeights.load(Paths.get(this.weights)));
+                    } else {
+                        evaluator = new MaterialEvaluator();
+                    }
+                    AlphaBetaStrategy alphaBeta = new AlphaBetaStrategy(evaluator);
+                    if (this.hashBytes > 0) {
+                        TranspositionTable table = new TranspositionTable(this.hashBytes);
+                        alphaBeta.setTranspositionTable(table);
+                        tables.add(table);
+                    }
+                    return alphaBeta;
+            }
+        }
+
+        SearchLimits getLimits() {
+            return this.limits;
+        }
+
+        @Override
+        public String toString() {
+            return this.description;
+        }
+    }
+
+    /**
+     * Constructs a MatchHarness.
+     *
+     * @param first Engine A, the one tested for being stronger.
+     * @param second Engine B.
+     * @param openings The openings as packed move lines from the starting position.
+     * @param maxGames The most games to play if the test does not end earlier.
+     * @param elo0 The Elo difference of H0.
+     * @param elo1 The Elo difference of H1.
+     * @param alpha The chance of accepting H1 when H0 is true.
+     * @param beta The chance of accepting H0 when H1 is true.
+     */
+    MatchHarness(Engine first, Engine second, List<int[]> openings, int maxGames, double elo0, double elo1, double alpha, double beta) {
+        this.first = first;
+        this.second = second;
+        this.openings = openings;
+        this.maxGames = maxGames;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+        this.expected0 = expectedScore(elo0);
+        this.expected1 = expectedScore(elo1);
+    }
+
+    /**
+     * Runs a match from the command line.
+     *
+     * @param args The engines and options described in the class description.
+     * @throws IOException If the openings file or an evaluator file cannot be read.
+     * @throws InterruptedException If the main thread is interrupted while waiting for the games.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: MatchHarness <engine A> <engine B> [--games N] [--threads T] [--openings FILE | --plies P]"
+                    + " [--elo0 E] [--elo1 E] [--alpha A] [--beta B]");
+            return;
+        }
+        Engine first = new Engine(args[0]);
+        Engine second = new Engine(args[1]);
+        int maxGames = 20_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String openingsFile = null;
+        int plies = 4;
+        double elo0 = 0;
+        double elo1 = 20;
+        double alpha = 0.05;
+        double beta = 0.05;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--games":
+                    maxGames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--openings":
+                    openingsFile = args[i + 1];
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--elo0":
+                    elo0 = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--elo1":
+                    elo1 = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--beta":
+                    beta = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        List<int[]> openings = openingsFile != null ? readOpenings(openingsFile) : balancedOpenings(plies);
+        if (openings.isEmpty()) {
+            System.out.println("No openings to play.");
+            return;
+        }
+        System.out.printf("%s vs %s, %d openings, %d threads, SPRT elo0=%.1f elo1=%.1f alpha=%.3f beta=%.3f%n",
+                first, second, openings.size(), threads, elo0, elo1, alpha, beta);
+        MatchHarness match = new MatchHarness(first, second, openings, maxGames, elo0, elo1, alpha, beta);
+        match.run(threads);
+    }
+
+    /**
+     * Plays the match on the given number of threads, reporting the standing every few seconds and at the end.
+     *
+     * @param threads The number of games played at once.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the games.
+     */
+    void run(int threads) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    playPairs(new Random(seed));
+                } catch (IOException e) {
+                    failure[0] = new UncheckedIOException(e);
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                }
+            }, "match-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(REPORT_MILLIS);
+                if (worker.isAlive()) {
+                    System.out.println(standing());
+                }
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        System.out.println(standing());
+        synchronized (this) {
+            System.out.println(this.verdict != null ? this.verdict
+                    : "Inconclusive after " + (this.wins + this.draws + this.losses) + " games.");
+        }
+    }
+
+    /**
+     * Plays opening pairs until the test is decided or every game has been started.
+     */
+    private void playPairs(Random random) throws IOException {
+        MoveCache moveCache = new MoveCache(MOVE_CACHE_BYTES);
+        List<TranspositionTable> tables = new ArrayList<>();
+        MoveStrategy firstStrategy = this.first.create(random, tables);
+        MoveStrategy secondStrategy = this.second.create(random, tables);
+        while (true) {
+            int pair = this.nextPair.getAndIncrement();
+            if (2 * pair >= this.maxGames || isDecided()) {
+                return;
+            }
+            int[] opening = this.openings.get(pair % this.openings.size());
+            for (int game = 0; game < 2 && 2 * pair + game < this.maxGames; game++) {
+                // A plays 'x' in the first game of the pair and 'o' in the second
+                char firstIcon = game == 0 ? 'x' : 'o';
+                for (TranspositionTable table : tables) {
+                    table.clear();
+                }
+                long[] gameNodes = new long[2];
+                long[] gameNanos = new long[2];
+                char winner = playGame(opening, firstIcon, firstStrategy, secondStrategy, moveCache, gameNodes, gameNanos);
+                record(winner == 'd' ? 0.5 : winner == firstIcon ? 1 : 0, gameNodes, gameNanos);
+            }
+        }
+    }
+
+    /**
+     * Plays one game through CheckersLogic with a Computer for each engine.
+     * Returns the icon of the winner or 'd' for a draw, and adds the nodes and time of each engine, A first.
+     */
+    private char playGame(int[] opening, char firstIcon, MoveStrategy firstStrategy, MoveStrategy secondStrategy,
+                          MoveCache moveCache, long[] gameNodes, long[] gameNanos) {
+        CheckersLogic game = new CheckersLogic("PvP");
+        game.setMoveCache(moveCache);
+        for (int move : opening) {
+            game.playMove(move);
+        }
+        char secondIcon = firstIcon == 'x' ? 'o' : 'x';
+        Computer[] computers = {
+            new Computer(firstIcon, game, firstStrategy, this.first.getLimits()),
+            new Computer(secondIcon, game, secondStrategy, this.second.getLimits())
+        };
+        while (true) {
+            char icon = game.getCurrentPlayersTurn().getPlayerIcon();
+            int engine = icon == firstIcon ? 0 : 1;
+            Computer computer = computers[engine];
+            long start = System.nanoTime();
+            String move = computer.takeTurn();
+            gameNanos[engine] += System.nanoTime() - start;
+            gameNodes[engine] += computer.getLastNodes();
+            if (move == null) {
+                return icon == 'x' ? 'o' : 'x';
+            }
+            game.makeMove(move);
+            if (game.getCurrentPlayersTurn().goAgain) {
+                game.selectDoubleOption(computer.getDoubleJumpSelection());
+            }
+            if (game.checkWin()) {
+                return icon;
+            }
+            game.swapTurn();
+            if (game.checkDraw()) {
+                return 'd';
+            }
+        }
+    }
+
+    private synchronized void record(double score, long[] gameNodes, long[] gameNanos) {
+        // games still running when the test ends do not count, the result stands as it was decided
+        if (this.verdict != null) {
+            return;
+        }
+        if (score == 1) {
+            this.wins++;
+        } else if (score == 0) {
+            this.losses++;
+        } else {
+            this.draws++;
+        }
+        for (int engine = 0; engine < 2; engine++) {
+            this.nodes[engine] += gameNodes[engine];
+            this.nanos[engine] += gameNanos[engine];
+        }
+        double llr = logLikelihoodRatio();
+        int games = this.wins + this.draws + this.losses;
+        if (llr >= this.upperBound) {
+            this.verdict = "H1 accepted after " + games + " games: " + this.first + " is stronger.";
+        } else if (llr <= this.lowerBound) {
+            this.verdict = "H0 accepted after " + games + " games: " + this.first + " is not stronger.";
+        }
+    }
+
+    private synchronized boolean isDecided() {
+        return this.verdict != null;
+    }
+
+    /**
+     * Computes the log-likelihood ratio of H1 against H0 with the normal approximation of the game scores
+     * (generalized SPRT). The variance counts half a win and half a loss more than were played, so a test that
+     * starts with a run of one-sided results cannot end on an estimated variance of zero.
+     */
+    private double logLikelihoodRatio() {
+        int games = this.wins + this.draws + this.losses;
+        if (games == 0) {
+            return 0;
+        }
+        double score = (this.wins + 0.5 * this.draws) / games;
+        double priorWins = this.wins + 0.5;
+        double priorLosses = this.losses + 0.5;
+        double priorGames = priorWins + this.draws + priorLosses;
+        double priorScore = (priorWins + 0.5 * this.draws) / priorGames;
+        double variance = (priorWins * Math.pow(1 - priorScore, 2) + this.draws * Math.pow(0.5 - priorScore, 2)
+                + priorLosses * Math.pow(priorScore, 2)) / priorGames;
+        return games * (this.expected1 - this.expected0) * (2 * score - this.expected0 - this.expected1) / (2 * variance);
+    }
+
+    /**
+     * Describes the standing: the score of A, its Elo difference with 95% error bars, the log-likelihood ratio
+     * with the bounds of the test, and the nodes per second of both engines.
+     */
+    private synchronized String standing() {
+        int games = this.wins + this.draws + this.losses;
+        if (games == 0) {
+            return "No games finished yet.";
+        }
+        double score = (this.wins + 0.5 * this.draws) / games;
+        double deviation = Math.sqrt((this.wins * Math.pow(1 - score, 2) + this.draws * Math.pow(0.5 - score, 2)
+                + this.losses * Math.pow(score, 2)) / games);
+        double margin = 1.96 * deviation / Math.sqrt(games);
+        double elo = elo(score);
+        return String.format("games %d  +%d =%d -%d  score %.1f%%  elo %+.1f [%+.1f, %+.1f]  llr %.2f [%.2f, %.2f]"
+                        + "  nps A %,.0f B %,.0f",
+                games, this.wins, this.draws, this.losses, 100 * score, elo, elo(score - margin), elo(score + margin),
+                logLikelihoodRatio(), this.lowerBound, this.upperBound,
+                this.nodes[0] * 1e9 / Math.max(1, this.nanos[0]), this.nodes[1] * 1e9 / Math.max(1, this.nanos[1]));
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        double clamped = Math.min(1 - 1e-6, Math.max(1e-6, score));
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+
+    /**
+     * Reads openings, one line of moves in notation each, checking every line is legal.
+     */
+    static List<int[]> readOpenings(String file) throws IOException {
+        List<int[]> openings = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] notations = trimmed.split("\\s+");
+            int[] opening = new int[notations.length];
+            CheckersLogic game = new CheckersLogic("PvP");
+            for (int i = 0; i < notations.length; i++) {
+                int move = Moves.parse(notations[i]);
+                if (move == Moves.NONE) {
+                    throw new IllegalArgumentException("Invalid opening move: " + notations[i]);
+                }
+                opening[i] = game.playMove(move);
+            }
+            openings.add(opening);
+        }
+        return openings;
+    }
+
+    /**
+     * Finds every distinct position after the given number of moves from the start that a shallow search scores
+     * within a third of a man of even, in a fixed shuffled order, and returns a line reaching each.
+     */
+    static List<int[]> balancedOpenings(int plies) {
+        List<int[]> lines = new ArrayList<>();
+        collect(Position.initial(), new int[plies], 0, new HashSet<>(), lines);
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+        List<int[]> balanced = new ArrayList<>();
+        for (int[] line : lines) {
+            Position position = Position.initial();
+            for (int move : line) {
+                position = position.play(move);
+            }
+            strategy.selectMove(position, new SearchBudget(SearchLimits.depth(BALANCE_DEPTH)));
+            if (Math.abs(strategy.getLastScore()) <= BALANCE_MARGIN) {
+                balanced.add(line);
+            }
+        }
+        Collections.shuffle(balanced, new Random(1));
+        return balanced;
+    }
+
+    private static void collect(Position position, int[] line, int ply, Set<Position> seen, List<int[]> lines) {
+        if (ply == line.length) {
+            if (seen.add(position)) {
+                lines.add(line.clone());
+            }
+            return;
+        }
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            line[ply] = moves[i];
+            collect(position.play(moves[i]), line, ply + 1, seen, lines);
+        }
+    }
+}
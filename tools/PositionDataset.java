@@ -0,0 +1,351 @@
+package tools;
+import core.GameRecord;
+import core.Position;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PositionDataset class is a binary file of labeled positions for training and tuning the evaluation.
+ * After a 32 byte header holding the record count, every position is a fixed width 24 byte record:
+ * the 'x' and 'o' piece masks, the search score from the point of view of the player to move, the ply,
+ * the player to move and the result of the game ('x', 'o' or 'd'). Records are read in chunks, so a
+ * dataset of any size can be streamed in constant memory.
+ * @author Samuel White
+ */
+public class PositionDataset implements Closeable {
+    public static final int HEADER_BYTES = 32;
+    public static final int RECORD_BYTES = 24;
+
+    static final int MAGIC = 0x434B5044;
+    static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final long recordCount;
+
+    /**
+     * A block of consecutive records read from a dataset.
+     */
+    public static class Chunk {
+        private final ByteBuffer buffer;
+        private int size;
+
+        /**
+         * Constructs a Chunk holding at most capacity records.
+         *
+         * @param capacity The number of records the chunk can hold.
+         */
+        public Chunk(int capacity) {
+            this.buffer = ByteBuffer.allocate(capacity * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Retrieves the number of records in the chunk.
+         *
+         * @return The record count.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Retrieves the mask of 'x' pieces of a record.
+         *
+         * @param record The record index within the chunk.
+         * @return The piece mask.
+         */
+        public long xPieces(int record) {
+            return this.buffer.getLong(record * RECORD_BYTES);
+        }
+
+        /**
+         * Retrieves the mask of 'o' pieces of a record.
+         *
+         * @param record The record index within the chunk.
+         * @return The piece mask.
+         */
+        public long oPieces(int record) {
+            return this.buffer.getLong(record * RECORD_BYTES + 8);
+        }
+
+        /**
+         * Retrieves the search score of a record.
+         *
+         * @param record The record index within the chunk.
+         * @return The score from the point of view of the player to move.
+         */
+        public int score(int record) {
+            return this.buffer.getShort(record * RECORD_BYTES + 16);
+        }
+
+        /**
+         * Retrieves the ply of a record.
+         *
+         * @param record The record index within the chunk.
+         * @return The number of moves played before the position.
+         */
+        public int ply(int record) {
+            return this.buffer.getShort(record * RECORD_BYTES + 18) & 0xFFFF;
+        }
+
+        /**
+         * Retrieves the player to move of a record.
+         *
+         * @param record The record index within the chunk.
+         * @return The icon of the player to move.
+         */
+        public char sideToMove(int record) {
+            return (char) this.buffer.get(record * RECORD_BYTES + 20);
+        }
+
+        /**
+         * Retrieves the result of the game a record was taken from.
+         *
+         * @param record The record index within the chunk.
+         * @return 'x' or 'o' for the winner, or 'd' for a draw.
+         */
+        public char result(int record) {
+            return (char) this.buffer.get(record * RECORD_BYTES + 21);
+        }
+
+        /**
+         * Retrieves a record as a Position.
+         *
+         * @param record The record index within the chunk.
+         * @return The position.
+         */
+        public Position position(int record) {
+            return new Position(xPieces(record), oPieces(record), sideToMove(record));
+        }
+    }
+
+    /**
+     * Appends records to a new dataset file. The record count in the header is written on close.
+     */
+    public static class Writer implements Closeable {
+        private static final int BUFFER_RECORDS = 4096;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long recordCount;
+
+        /**
+         * Constructs a Writer, replacing any existing file.
+         *
+         * @param file The dataset file.
+         * @throws IOException If the file cannot be created.
+         */
+        public Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * Appends a record.
+         *
+         * @param position The position.
+         * @param score The search score from the point of view of the player to move.
+         * @param ply The number of moves played before the position.
+         * @param result The result of the game: 'x', 'o' or 'd'.
+         * @throws IOException If the file cannot be written.
+         */
+        public void add(Position position, int score, int ply, char result) throws IOException {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            putRecord(this.buffer, position, score, ply, result);
+            this.recordCount++;
+        }
+
+        /**
+         * Retrieves the number of records written so far.
+         *
+         * @return The record count.
+         */
+        public long size() {
+            return this.recordCount;
+        }
+
+        /**
+         * Writes the remaining records and the header, then closes the file.
+         *
+         * @throws IOException If the file cannot be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                writeHeader(header, this.recordCount);
+                header.flip();
+                this.channel.write(header, 0);
+            } finally {
+                this.channel.close();
+            }
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    private PositionDataset(FileChannel channel, long recordCount) {
+        this.channel = channel;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Opens a dataset file for reading.
+     *
+     * @param file The dataset file.
+     * @return The opened dataset.
+     * @throws IOException If the file cannot be read or is not a dataset.
+     */
+    public static PositionDataset open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new PositionDataset(channel, readHeader(channel, file));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the number of records.
+     *
+     * @return The record count.
+     */
+    public long size() {
+        return this.recordCount;
+    }
+
+    /**
+     * Reads consecutive records into a chunk, as many as fit or remain. Safe to call from several threads at once.
+     *
+     * @param first The index of the first record to read.
+     * @param count The number of records wanted.
+     * @param chunk The chunk to fill.
+     * @return The number of records read.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public int read(long first, int count, Chunk chunk) {
+        int records = (int) Math.min(Math.min(count, chunk.buffer.capacity() / RECORD_BYTES), this.recordCount - first);
+        ByteBuffer buffer = chunk.buffer;
+        buffer.clear().limit(records * RECORD_BYTES);
+        long offset = HEADER_BYTES + first * RECORD_BYTES;
+        try {
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of dataset");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.size = records;
+        return records;
+    }
+
+    /**
+     * Closes the dataset file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Converts a file of game records into a dataset, labeling every position with the result of its game.
+     * Unfinished games are skipped and the score field is left at 0.
+     * Usage: "convert games.txt positions.bin".
+     *
+     * @param args The command line arguments.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[0].equals("convert")) {
+            System.out.println("Usage: PositionDataset convert <games> <dataset>");
+            return;
+        }
+        long skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[1]));
+             Writer writer = new Writer(Paths.get(args[2]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                GameRecord record = GameRecord.parse(line);
+                if (record.getResult() == '*') {
+                    skipped++;
+                    continue;
+                }
+                List<Position> positions = new ArrayList<>();
+                try {
+                    record.replay((ply, position, nextMove) -> positions.add(position));
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    continue;
+                }
+                for (int ply = 0; ply < positions.size(); ply++) {
+                    writer.add(positions.get(ply), 0, ply, record.getResult());
+                }
+            }
+            System.out.println("Wrote " + writer.size() + " positions, skipped " + skipped + " games");
+        }
+    }
+
+    static void putRecord(ByteBuffer buffer, Position position, int score, int ply, char result) {
+        buffer.putLong(position.getPieces('x'));
+        buffer.putLong(position.getPieces('o'));
+        buffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+        buffer.putShort((short) Math.min(0xFFFF, ply));
+        buffer.put((byte) position.getSideToMove());
+        buffer.put((byte) result);
+        buffer.putShort((short) 0);
+    }
+
+    /**
+     * Reads and checks the header of a dataset file.
+     *
+     * @return The record count.
+     */
+    static long readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int read = channel.read(header, 0);
+        header.flip();
+        if (read < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a position dataset: " + file);
+        }
+        long recordCount = header.getLong();
+        if (HEADER_BYTES + recordCount * RECORD_BYTES > channel.size()) {
+            throw new IOException("Truncated position dataset: " + file);
+        }
+        return recordCount;
+    }
+
+    static void writeHeader(ByteBuffer header, long recordCount) {
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(recordCount);
+    }
+}
@@ -0,0 +1,525 @@
+package tools;
+import core.GameRecord;
+import core.Moves;
+import core.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The PositionIndex class is an on-disk index from position hashes to the archived games that reached them.
+ * The index is built by replaying game records through CheckersLogic, writing sorted runs of fixed width
+ * entries to temporary files and merging them into one file sorted by hash. Lookups memory-map that file
+ * and binary search it, so only the entries of the wanted position are ever read.
+ * Positions are keyed by their 64 bit Zobrist hash alone.
+ * @author Samuel White
+ */
+public class PositionIndex implements Closeable {
+    private static final int MAGIC = 0x434B5049;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 24;
+    private static final int ENTRIES_PER_CHUNK = 1 << 25;
+    private static final int DEFAULT_RUN_ENTRIES = 1 << 22;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long entryCount;
+
+    /**
+     * One game that reached an indexed position.
+     */
+    public static class Occurrence {
+        public final long gameId;
+        public final int ply;
+        public final int nextMove;
+        public final char result;
+
+        private Occurrence(long gameId, int ply, int nextMove, char result) {
+            this.gameId = gameId;
+            this.ply = ply;
+            this.nextMove = nextMove;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            String move = this.nextMove == Moves.NONE ? "end" : Moves.toNotation(this.nextMove);
+            return "game " + this.gameId + " ply " + this.ply + " next " + move + " result " + this.result;
+        }
+    }
+
+    /**
+     * The statistics of one move played from an indexed position, from the point of view of the player making it.
+     */
+    public static class Continuation {
+        public final int move;
+        public long games;
+        public long wins;
+        public long draws;
+        public long losses;
+
+        private Continuation(int move) {
+            this.move = move;
+        }
+
+        @Override
+        public String toString() {
+            return Moves.toNotation(this.move) + " games=" + this.games + " wins=" + this.wins
+                    + " draws=" + this.draws + " losses=" + this.losses;
+        }
+    }
+
+    /**
+     * A callback receiving the occurrences of a position one at a time.
+     */
+    public interface OccurrenceVisitor {
+
+        /**
+         * Receives one occurrence.
+         *
+         * @param occurrence The occurrence.
+         * @param sideToMove The player to move in the indexed position.
+         */
+        void visit(Occurrence occurrence, char sideToMove);
+    }
+
+    private PositionIndex(FileChannel channel, MappedByteBuffer[] chunks, long entryCount) {
+        this.channel = channel;
+        this.chunks = chunks;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Builds an index from a file of game records.
+     *
+     * @param games The game record file, one record per line.
+     * @param index The index file to write.
+     * @return The number of indexed positions.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static long build(Path games, Path index) throws IOException {
+        return build(games, index, DEFAULT_RUN_ENTRIES);
+    }
+
+    /**
+     * Builds an index from a file of game records, sorting at most runEntries entries in memory at a time.
+     *
+     * @param games The game record file, one record per line.
+     * @param index The index file to write.
+     * @param runEntries The number of entries sorted in memory before a run is written to disk.
+     * @return The number of indexed positions.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static long build(Path games, Path index, int runEntries) throws IOException {
+        Path directory = index.toAbsolutePath().getParent();
+        Run run = new Run(runEntries);
+        List<Path> runFiles = new ArrayList<>();
+        List<Position> gamePositions = new ArrayList<>();
+        List<Integer> gameMoves = new ArrayList<>();
+        long skipped = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(games)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                GameRecord game;
+                // a game is only added to the run once all of it replayed, so a bad move leaves nothing behind
+                gamePositions.clear();
+                gameMoves.clear();
+                try {
+                    game = GameRecord.parse(line);
+                    game.replay((ply, position, nextMove) -> {
+                        gamePositions.add(position);
+                        gameMoves.add(nextMove);
+                    });
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    System.err.println("Skipping game: " + e.getMessage());
+                    continue;
+                }
+                for (int ply = 0; ply < gamePositions.size(); ply++) {
+                    if (run.isFull()) {
+                        runFiles.add(run.writeSorted(directory));
+                    }
+                    run.add(gamePositions.get(ply), game.getId(), ply, gameMoves.get(ply), game.getResult());
+                }
+            }
+        }
+        if (run.size > 0 || runFiles.isEmpty()) {
+            runFiles.add(run.writeSorted(directory));
+        }
+
+        long total = merge(runFiles, index);
+        for (Path runFile : runFiles) {
+            Files.deleteIfExists(runFile);
+        }
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " invalid games.");
+        }
+        return total;
+    }
+
+    /**
+     * Opens an index for lookups.
+     *
+     * @param index The index file.
+     * @return The opened index.
+     * @throws IOException If the file cannot be read or is not an index.
+     */
+    public static PositionIndex open(Path index) throws IOException {
+        FileChannel channel = FileChannel.open(index, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        int read = channel.read(header, 0);
+        header.flip();
+        if (read < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            throw new IOException("Not a position index: " + index);
+        }
+        long entryCount = header.getLong();
+
+        int chunkCount = (int) ((entryCount + ENTRIES_PER_CHUNK - 1) / ENTRIES_PER_CHUNK);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long first = (long) i * ENTRIES_PER_CHUNK;
+            long entries = Math.min(ENTRIES_PER_CHUNK, entryCount - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * ENTRY_BYTES, entries * ENTRY_BYTES);
+        }
+        return new PositionIndex(channel, chunks, entryCount);
+    }
+
+    /**
+     * Retrieves the number of indexed positions.
+     *
+     * @return The entry count.
+     */
+    public long size() {
+        return this.entryCount;
+    }
+
+    /**
+     * Streams every occurrence of a position to a visitor, in game id order.
+     *
+     * @param position The position to look up.
+     * @param visitor The callback receiving each occurrence.
+     * @return The number of occurrences.
+     */
+    public long forEach(Position position, OccurrenceVisitor visitor) {
+        long hash = position.hash();
+        long count = 0;
+        for (long i = lowerBound(hash); i < this.entryCount && hashAt(i) == hash; i++) {
+            ByteBuffer chunk = this.chunks[(int) (i / ENTRIES_PER_CHUNK)];
+            int offset = (int) (i % ENTRIES_PER_CHUNK) * ENTRY_BYTES;
+            Occurrence occurrence = new Occurrence(chunk.getLong(offset + 8), chunk.getShort(offset + 20) & 0xFFFF,
+                    chunk.getInt(offset + 16), (char) chunk.get(offset + 22));
+            visitor.visit(occurrence, (char) chunk.get(offset + 23));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the occurrences of a position.
+     *
+     * @param position The position to look up.
+     * @param limit The maximum number of occurrences to return.
+     * @return The occurrences, in game id order.
+     */
+    public List<Occurrence> lookup(Position position, int limit) {
+        List<Occurrence> found = new ArrayList<>();
+        long hash = position.hash();
+        for (long i = lowerBound(hash); i < this.entryCount && hashAt(i) == hash && found.size() < limit; i++) {
+            ByteBuffer chunk = this.chunks[(int) (i / ENTRIES_PER_CHUNK)];
+            int offset = (int) (i % ENTRIES_PER_CHUNK) * ENTRY_BYTES;
+            found.add(new Occurrence(chunk.getLong(offset + 8), chunk.getShort(offset + 20) & 0xFFFF,
+                    chunk.getInt(offset + 16), (char) chunk.get(offset + 22)));
+        }
+        return found;
+    }
+
+    /**
+     * Aggregates what was played from a position and how those games ended, reading the occurrences one at a time.
+     *
+     * @param position The position to look up.
+     * @return The continuations, most played first.
+     */
+    public List<Continuation> continuations(Position position) {
+        HashMap<Integer, Continuation> byMove = new HashMap<>();
+        forEach(position, (occurrence, sideToMove) -> {
+            if (occurrence.nextMove == Moves.NONE) {
+                return;
+            }
+            Continuation continuation = byMove.computeIfAbsent(occurrence.nextMove, Continuation::new);
+            continuation.games++;
+            if (occurrence.result == 'd') {
+                continuation.draws++;
+            } else if (occurrence.result == sideToMove) {
+                continuation.wins++;
+            } else if (occurrence.result != '*') {
+                continuation.losses++;
+            }
+        });
+        List<Continuation> sorted = new ArrayList<>(byMove.values());
+        sorted.sort((a, b) -> Long.compare(b.games, a.games));
+        return sorted;
+    }
+
+    /**
+     * Closes the index file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Builds or queries an index from the command line.
+     * Usage: "build games.txt positions.idx" or "query positions.idx 'x:_o_o_o_o/...'".
+     *
+     * @param args The command line arguments.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            long entries = build(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.printf("Indexed %d positions in %.1f s%n", entries, (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 3 && args[0].equals("query")) {
+            try (PositionIndex index = open(Paths.get(args[1]))) {
+                Position position = Position.parse(args[2]);
+                long start = System.nanoTime();
+                List<Continuation> continuations = index.continuations(position);
+                long micros = (System.nanoTime() - start) / 1000;
+                for (Continuation continuation : continuations) {
+                    System.out.println(continuation);
+                }
+                System.out.println("Lookup took " + micros + " us");
+            }
+        } else {
+            System.out.println("Usage: PositionIndex build <games> <index> | query <index> <position>");
+        }
+    }
+
+    private long hashAt(long entry) {
+        return this.chunks[(int) (entry / ENTRIES_PER_CHUNK)].getLong((int) (entry % ENTRIES_PER_CHUNK) * ENTRY_BYTES);
+    }
+
+    private long lowerBound(long hash) {
+        long low = 0;
+        long high = this.entryCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (hashAt(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long merge(List<Path> runFiles, Path index) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(RunReader::compareTo);
+        List<RunReader> readers = new ArrayList<>();
+        long total = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+            out.write(new byte[HEADER_BYTES - 16]);
+            for (Path runFile : runFiles) {
+                RunReader reader = new RunReader(runFile);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                out.write(reader.entry);
+                total++;
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            ByteBuffer count = ByteBuffer.allocate(8).putLong(0, total);
+            channel.write(count, 8);
+        }
+        return total;
+    }
+
+    /**
+     * The in-memory buffer of entries waiting to be sorted and written as a run.
+     */
+    private static class Run {
+        private final long[] hashes;
+        private final long[] gameIds;
+        private final int[] moves;
+        private final int[] plies;
+        private final byte[] results;
+        private final byte[] sides;
+        private int size;
+
+        private Run(int capacity) {
+            this.hashes = new long[capacity];
+            this.gameIds = new long[capacity];
+            this.moves = new int[capacity];
+            this.plies = new int[capacity];
+            this.results = new byte[capacity];
+            this.sides = new byte[capacity];
+        }
+
+        private boolean isFull() {
+            return this.size == this.hashes.length;
+        }
+
+        private void add(Position position, long gameId, int ply, int nextMove, char result) {
+            this.hashes[this.size] = position.hash();
+            this.gameIds[this.size] = gameId;
+            this.moves[this.size] = nextMove;
+            this.plies[this.size] = ply;
+            this.results[this.size] = (byte) result;
+            this.sides[this.size] = (byte) position.getSideToMove();
+            this.size++;
+        }
+
+        private Path writeSorted(Path directory) throws IOException {
+            sort(0, this.size - 1);
+            Path file = Files.createTempFile(directory, "positions", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                for (int i = 0; i < this.size; i++) {
+                    out.writeLong(this.hashes[i]);
+                    out.writeLong(this.gameIds[i]);
+                    out.writeInt(this.moves[i]);
+                    out.writeShort(this.plies[i]);
+                    out.writeByte(this.results[i]);
+                    out.writeByte(this.sides[i]);
+                }
+            }
+            this.size = 0;
+            return file;
+        }
+
+        private void sort(int low, int high) {
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                long pivotHash = this.hashes[middle];
+                long pivotGame = this.gameIds[middle];
+                int pivotPly = this.plies[middle];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(i, pivotHash, pivotGame, pivotPly) < 0) {
+                        i++;
+                    }
+                    while (compare(j, pivotHash, pivotGame, pivotPly) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (j - low < high - i) {
+                    sort(low, j);
+                    low = i;
+                } else {
+                    sort(i, high);
+                    high = j;
+                }
+            }
+        }
+
+        private int compare(int i, long hash, long gameId, int ply) {
+            if (this.hashes[i] != hash) {
+                return Long.compare(this.hashes[i], hash);
+            }
+            if (this.gameIds[i] != gameId) {
+                return Long.compare(this.gameIds[i], gameId);
+            }
+            return Integer.compare(this.plies[i], ply);
+        }
+
+        private void swap(int i, int j) {
+            long hash = this.hashes[i];
+            this.hashes[i] = this.hashes[j];
+            this.hashes[j] = hash;
+            long gameId = this.gameIds[i];
+            this.gameIds[i] = this.gameIds[j];
+            this.gameIds[j] = gameId;
+            int move = this.moves[i];
+            this.moves[i] = this.moves[j];
+            this.moves[j] = move;
+            int ply = this.plies[i];
+            this.plies[i] = this.plies[j];
+            this.plies[j] = ply;
+            byte result = this.results[i];
+            this.results[i] = this.results[j];
+            this.results[j] = result;
+            byte side = this.sides[i];
+            this.sides[i] = this.sides[j];
+            this.sides[j] = side;
+        }
+    }
+
+    /**
+     * A cursor over one sorted run file during the merge.
+     */
+    private static class RunReader implements Comparable<RunReader> {
+        private final DataInputStream in;
+        private final byte[] entry = new byte[ENTRY_BYTES];
+        private final ByteBuffer view = ByteBuffer.wrap(this.entry);
+
+        private RunReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        private boolean advance() throws IOException {
+            try {
+                this.in.readFully(this.entry);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int byHash = Long.compare(this.view.getLong(0), other.view.getLong(0));
+            if (byHash != 0) {
+                return byHash;
+            }
+            int byGame = Long.compare(this.view.getLong(8), other.view.getLong(8));
+            if (byGame != 0) {
+                return byGame;
+            }
+            return Integer.compare(this.view.getShort(20) & 0xFFFF, other.view.getShort(20) & 0xFFFF);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package tools;
+import core.AlphaBetaStrategy;
+import core.CheckersLogic;
+import core.Computer;
+import core.MoveCache;
+import core.Position;
+import core.SearchLimits;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * The SelfPlayGenerator class plays engine games in parallel and records every searched position with its
+ * search score and the final result of the game, as training data for the evaluation.
+ * Every thread owns one shard file in the PositionDataset format. The shard is preallocated and memory-mapped,
+ * so records are written without locks or system calls. The record count in the shard header only moves forward
+ * when a game has finished, so a run that is stopped part way resumes from the last complete game of every shard.
+ * Usage: SelfPlayGenerator directory positions [threads] [nodes]
+ * @author Samuel White
+ */
+public class SelfPlayGenerator {
+    private static final int RANDOM_OPENING_PLIES = 6;
+    private static final int GAME_SLACK_RECORDS = 1024;
+    private static final long MAX_SHARD_RECORDS = (Integer.MAX_VALUE - PositionDataset.HEADER_BYTES) / PositionDataset.RECORD_BYTES;
+    private static final long REPORT_MILLIS = 5000;
+    private static final long MOVE_CACHE_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * One memory-mapped shard file with its single writer thread.
+     */
+    private static class Shard implements Runnable {
+        private final Path file;
+        private final long target;
+        private final SearchLimits limits;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long capacity;
+        private final long resumedFrom;
+        private volatile long committed;
+
+        Shard(Path file, long target, SearchLimits limits) throws IOException {
+            this.file = file;
+            this.target = target;
+            this.limits = limits;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long existing = this.channel.size() == 0 ? 0 : PositionDataset.readHeader(this.channel, file);
+            this.capacity = Math.min(MAX_SHARD_RECORDS, Math.max(existing, target) + GAME_SLACK_RECORDS);
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    PositionDataset.HEADER_BYTES + this.capacity * PositionDataset.RECORD_BYTES);
+            this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.resumedFrom = existing;
+            this.committed = existing;
+            commit(existing);
+        }
+
+        @Override
+        public void run() {
+            Random random = new Random(this.file.hashCode() * 31L + this.committed);
+            MoveCache moveCache = new MoveCache(MOVE_CACHE_BYTES);
+            AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+            while (this.committed < this.target) {
+                long end = playGame(strategy, moveCache, random);
+                if (end < 0) {
+                    break;
+                }
+                commit(end);
+            }
+            this.buffer.force();
+        }
+
+        /**
+         * Plays one game, writing its positions after the committed records and filling in the result at the end.
+         * Returns the new record count, or -1 if the shard filled up before the game finished.
+         */
+        private long playGame(AlphaBetaStrategy strategy, MoveCache moveCache, Random random) {
+            CheckersLogic game = new CheckersLogic("PvP");
+            game.setMoveCache(moveCache);
+            Computer x = new Computer('x', game, strategy, this.limits);
+            Computer o = new Computer('o', game, strategy, this.limits);
+            for (int ply = 0; ply < RANDOM_OPENING_PLIES; ply++) {
+                int[] moves = game.getLegalMoves(game.getCurrentPlayersTurn());
+                game.playMove(moves[random.nextInt(moves.length)]);
+            }
+
+            long first = this.committed;
+            long next = first;
+            char result;
+            for (int ply = RANDOM_OPENING_PLIES; ; ply++) {
+                Computer computer = game.getCurrentPlayersTurn().getPlayerIcon() == 'x' ? x : o;
+                Position position = game.getPosition(computer.getPlayerIcon());
+                String move = computer.takeTurn();
+                if (move == null) {
+                    result = position.getOpponent();
+                    break;
+                }
+                if (next == this.capacity) {
+                    return -1;
+                }
+                this.buffer.position(PositionDataset.HEADER_BYTES + (int) next * PositionDataset.RECORD_BYTES);
+                PositionDataset.putRecord(this.buffer, position, strategy.getLastScore(), ply, '*');
+                next++;
+
+                game.makeMove(move);
+                if (game.getCurrentPlayersTurn().goAgain) {
+                    game.selectDoubleOption(computer.getDoubleJumpSelection());
+                }
+                if (game.checkWin()) {
+                    result = computer.getPlayerIcon();
+                    break;
+                }
+                game.swapTurn();
+                if (game.checkDraw()) {
+                    result = 'd';
+                    break;
+                }
+            }
+
+            for (long record = first; record < next; record++) {
+                this.buffer.put(PositionDataset.HEADER_BYTES + (int) record * PositionDataset.RECORD_BYTES + 21, (byte) result);
+            }
+            return next;
+        }
+
+        private void commit(long records) {
+            this.buffer.position(0);
+            PositionDataset.writeHeader(this.buffer, records);
+            this.committed = records;
+        }
+
+        void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Generates self-play positions from the command line.
+     *
+     * @param args The shard directory, the total number of positions, the number of threads and the nodes per move.
+     * @throws IOException If a shard cannot be created, read or written.
+     * @throws InterruptedException If the main thread is interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: SelfPlayGenerator <directory> <positions> [threads] [nodes]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        long positions = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long nodes = args.length > 3 ? Long.parseLong(args[3]) : 5000;
+        Files.createDirectories(directory);
+
+        long perShard = (positions + threads - 1) / threads;
+        Shard[] shards = new Shard[threads];
+        Thread[] workers = new Thread[threads];
+        long resumed = 0;
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new Shard(directory.resolve("shard-" + i + ".bin"), perShard, SearchLimits.nodes(nodes));
+            resumed += shards[i].resumedFrom;
+            workers[i] = new Thread(shards[i], "self-play-" + i);
+            workers[i].start();
+        }
+        if (resumed > 0) {
+            System.out.println("Resuming from " + resumed + " positions");
+        }
+
+        long start = System.nanoTime();
+        long lastTime = start;
+        long lastTotal = resumed;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(REPORT_MILLIS);
+                long now = System.nanoTime();
+                if (now - lastTime >= REPORT_MILLIS * 1_000_000) {
+                    long total = total(shards);
+                    System.out.printf("%,d / %,d positions, %,.0f positions/sec%n", total, positions,
+                            (total - lastTotal) / ((now - lastTime) / 1e9));
+                    lastTime = now;
+                    lastTotal = total;
+                }
+            }
+        }
+        for (Shard shard : shards) {
+            shard.close();
+        }
+        long total = total(shards);
+        System.out.printf("Wrote %,d positions in %d shards, %,.0f positions/sec overall%n", total, threads,
+                (total - resumed) / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static long total(Shard[] shards) {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.committed;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,108 @@
+package tools;
+import core.CheckersLogic;
+import core.Position;
+import server.SessionStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The SessionStoreBenchmark class measures what hosting idle games in a SessionStore saves over keeping a
+ * CheckersLogic per game. It first keeps a number of games on the heap and measures the heap they retain and the
+ * full collection pause they cause, then fills a SessionStore with the given number of sessions and measures the
+ * same, along with the off-heap memory of the records. Finally it plays random moves in random sessions, ending
+ * finished games and starting new ones, and reports the move rate and the collections the moves caused.
+ * Usage: SessionStoreBenchmark [sessions] [moves] [heap games], by default 1000000 sessions, 1000000 moves and
+ * 100000 heap games, which are extrapolated to the session count
+ * @author Samuel White
+ */
+public class SessionStoreBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The number of sessions, of moves to play and of games kept on the heap for comparison.
+     */
+    public static void main(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int heapGames = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        long empty = usedHeap();
+        double emptyPause = fullCollectionMillis();
+        List<CheckersLogic> games = new ArrayList<>(heapGames);
+        for (int i = 0; i < heapGames; i++) {
+            games.add(new CheckersLogic("PvP"));
+        }
+        double gameBytes = (double) (usedHeap() - empty) / heapGames;
+        double gamesPause = fullCollectionMillis();
+        System.out.printf("%,d CheckersLogic games: %,.0f heap bytes each, full collection %.1f ms (%.1f ms empty)%n",
+                games.size(), gameBytes, gamesPause, emptyPause);
+        System.out.printf("  at %,d games: %,.1f MB of heap%n", sessions, gameBytes * sessions / 1e6);
+        games = null;
+
+        empty = usedHeap();
+        SessionStore store = new SessionStore();
+        long[] ids = new long[sessions];
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = store.create();
+        }
+        double createSeconds = (System.nanoTime() - start) / 1e9;
+        // the id array belongs to the benchmark, not the store
+        long storeHeap = usedHeap() - empty - 16L - 8L * sessions;
+        double storePause = fullCollectionMillis();
+        System.out.printf("%,d sessions in %.2f s: %,d off-heap bytes (%.1f per session), %,d heap bytes, full collection %.1f ms (%.1f ms empty)%n",
+                store.size(), createSeconds, store.getOffHeapBytes(), (double) store.getOffHeapBytes() / sessions,
+                Math.max(0, storeHeap), storePause, emptyPause);
+
+        Random random = new Random(1);
+        int[] legal = new int[Position.MAX_MOVES];
+        long[] collections = collections();
+        int finished = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < moves; i++) {
+            int index = random.nextInt(sessions);
+            int count = store.getPosition(ids[index]).generateMoves(legal);
+            store.playMove(ids[index], legal[random.nextInt(count)]);
+            if (store.getWinner(ids[index]) != 0) {
+                store.remove(ids[index]);
+                ids[index] = store.create();
+                finished++;
+            }
+        }
+        double playSeconds = (System.nanoTime() - start) / 1e9;
+        long[] after = collections();
+        System.out.printf("%,d moves in %.2f s: %,.0f moves/sec, %,d games finished, %d collections taking %d ms%n",
+                moves, playSeconds, moves / playSeconds, finished, after[0] - collections[0], after[1] - collections[1]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double fullCollectionMillis() {
+        long start = System.nanoTime();
+        System.gc();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Retrieves the number of collections so far and the milliseconds they took, over all collectors.
+     */
+    private static long[] collections() {
+        long[] total = new long[2];
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total[0] += Math.max(0, collector.getCollectionCount());
+            total[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
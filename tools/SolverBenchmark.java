@@ -0,0 +1,105 @@
+package tools;
+import core.Moves;
+import core.Position;
+import core.ProofNumberSolver;
+import core.SearchBudget;
+import core.SearchLimits;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The SolverBenchmark class times ProofNumberSolver on a suite of endgame positions and checks every answer
+ * against the known result. Each position is solved with an empty table so the times are independent.
+ * The built-in suite runs from two to five men a side; the results of the smaller ones were checked by full minimax.
+ * A suite file has one "POSITION WIN|LOSS" per line, POSITION as written by Position.toString.
+ * Usage: SolverBenchmark [suite file] [--nodes N] [--hash MB]
+ * @author Samuel White
+ */
+public class SolverBenchmark {
+    private static final String[] SUITE = {
+        "x:________/________/_____x_o/____x___/_____o__/________/________/________ LOSS",
+        "o:________/x_______/_______o/________/___x___o/________/________/________ WIN",
+        "o:________/o_______/________/______x_/________/__x_o___/________/________ LOSS",
+        "o:________/________/_x_____x/__o_o___/________/________/________/________ WIN",
+        "o:________/________/_______x/____x_x_/_______o/____o___/_____o__/________ LOSS",
+        "x:________/o___x___/___o____/o_______/________/______x_/___x____/________ LOSS",
+        "x:________/x_______/_o_x____/________/_____x__/o_____o_/________/________ LOSS",
+        "o:________/________/_____o__/__o_____/_x_o___x/________/_____x__/________ WIN",
+        "x:________/o_______/_____x__/__x_____/_____x__/o_____o_/___x___o/________ WIN",
+        "o:________/____x___/________/o___x_o_/_o______/______x_/_____x_o/________ LOSS",
+        "x:________/____x___/___x____/__o___o_/_x_____o/x_______/_o______/________ LOSS",
+        "x:________/________/_o_o___x/__o_____/_x_x____/__o___x_/________/________ LOSS",
+        "o:________/________/_o_x___o/o_____x_/________/__o_x_x_/_x_o____/________ LOSS",
+        "o:________/o___x___/_______x/______o_/_o_____x/o_____o_/___x_x__/________ LOSS",
+        "x:________/__x___o_/_o_x___o/______x_/_______x/o_____o_/_x______/________ LOSS",
+        "o:________/__o___o_/___x___x/x_____o_/___x____/__o_o___/___x____/________ WIN"
+    };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The optional suite file, the node limit per position and the table size in megabytes.
+     * @throws IOException If the suite file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> suite = new ArrayList<>(Arrays.asList(SUITE));
+        long nodes = 20_000_000;
+        long hashMegabytes = 64;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--nodes") && i + 1 < args.length) {
+                nodes = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--hash") && i + 1 < args.length) {
+                hashMegabytes = Long.parseLong(args[++i]);
+            } else if (!args[i].startsWith("--")) {
+                suite = Files.readAllLines(Paths.get(args[i]), StandardCharsets.UTF_8);
+            } else {
+                System.out.println("Usage: SolverBenchmark [suite file] [--nodes N] [--hash MB]");
+                return;
+            }
+        }
+
+        ProofNumberSolver solver = new ProofNumberSolver(hashMegabytes * 1024 * 1024);
+        int solved = 0;
+        int wrong = 0;
+        long totalNodes = 0;
+        long totalMillis = 0;
+        int number = 0;
+        for (String entry : suite) {
+            String[] fields = entry.trim().split("\\s+");
+            if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+                continue;
+            }
+            number++;
+            Position position = Position.parse(fields[0]);
+            ProofNumberSolver.Result expected = fields.length > 1 ? ProofNumberSolver.Result.valueOf(fields[1]) : null;
+            solver.clear();
+            ProofNumberSolver.Solution solution = solver.solve(position, new SearchBudget(SearchLimits.nodes(nodes)));
+            ProofNumberSolver.Result result = solution.getResult();
+            String verdict = "";
+            if (result != ProofNumberSolver.Result.UNKNOWN) {
+                solved++;
+                if (expected != null && result != expected) {
+                    wrong++;
+                    verdict = " WRONG, expected " + expected;
+                }
+            }
+            totalNodes += solution.getNodes();
+            totalMillis += solution.getMillis();
+
+            StringBuilder line = new StringBuilder();
+            for (int move : solution.getLine()) {
+                line.append(' ').append(Moves.toNotation(move));
+            }
+            System.out.printf("%2d %-7s %,12d nodes %,8d ms%s%n   %s%n   line%s%n", number, result, solution.getNodes(),
+                    solution.getMillis(), verdict, position, line);
+        }
+        System.out.printf("%d of %d solved, %d wrong, %,d nodes in %,d ms (%,.0f nodes/sec)%n", solved, number, wrong,
+                totalNodes, totalMillis, totalNodes * 1000.0 / Math.max(1, totalMillis));
+    }
+}
@@ -0,0 +1,95 @@
+package tools;
+import core.GameRecord;
+import core.Position;
+import core.Symmetry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The SymmetryStats class measures what keying stores by canonical position (see Symmetry) saves on a game corpus.
+ * It counts the distinct positions of the games with and without canonical keys, which is the number of entries
+ * a book or table holding every position needs, and how many were reached both as themselves and as their
+ * flipped twin. It then fills both kinds of store from the first half of the games and reports the share of
+ * the positions of the second half each of them already holds.
+ * Usage: SymmetryStats games.txt
+ * @author Samuel White
+ */
+public class SymmetryStats {
+    private static final int ENTRY_BYTES = 24;
+
+    /**
+     * Runs the measurements.
+     *
+     * @param args The game record file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: SymmetryStats <games.txt>");
+            return;
+        }
+        List<GameRecord> games = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    GameRecord game = GameRecord.parse(line);
+                    game.replay(null);
+                    games.add(game);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping game: " + e.getMessage());
+                }
+            }
+        }
+
+        Set<Position> plain = new HashSet<>();
+        Set<Position> canonical = new HashSet<>();
+        long[] visits = new long[1];
+        for (GameRecord game : games) {
+            game.replay((ply, position, nextMove) -> {
+                visits[0]++;
+                plain.add(position);
+                canonical.add(Symmetry.canonical(position));
+            });
+        }
+        long twins = plain.size() - canonical.size();
+        System.out.printf("%,d games, %,d positions visited%n", games.size(), visits[0]);
+        System.out.printf("%,d distinct positions, %,d canonical: %,d reached as both twins, %.2f%% fewer entries (%,.1f MB at %d bytes each)%n",
+                plain.size(), canonical.size(), twins, 100.0 * twins / Math.max(1, plain.size()),
+                twins * (double) ENTRY_BYTES / 1e6, ENTRY_BYTES);
+
+        int half = games.size() / 2;
+        Set<Position> plainStore = new HashSet<>();
+        Set<Position> canonicalStore = new HashSet<>();
+        for (GameRecord game : games.subList(0, half)) {
+            game.replay((ply, position, nextMove) -> {
+                plainStore.add(position);
+                canonicalStore.add(Symmetry.canonical(position));
+            });
+        }
+        long[] hits = new long[3];
+        for (GameRecord game : games.subList(half, games.size())) {
+            game.replay((ply, position, nextMove) -> {
+                hits[0]++;
+                if (plainStore.contains(position)) {
+                    hits[1]++;
+                }
+                if (canonicalStore.contains(Symmetry.canonical(position))) {
+                    hits[2]++;
+                }
+            });
+        }
+        System.out.printf("store of the first %,d games answers %.2f%% of the %,d positions of the rest, %.2f%% keyed canonically%n",
+                half, 100.0 * hits[1] / Math.max(1, hits[0]), hits[0], 100.0 * hits[2] / Math.max(1, hits[0]));
+    }
+}
@@ -0,0 +1,194 @@
+package ui;
+import core.AlphaBetaStrategy;
+import core.AnalysisLine;
+import core.AnalysisService;
+import core.CheckersLogic;
+import core.Moves;
+import core.Position;
+import core.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The AnalysisConsole class analyzes positions from the command line, ranking the best few moves of each with
+ * their scores and expected lines of play. Every input line is one analysis request and all requests run at the
+ * same time on a shared AnalysisService, each streaming its ranking after every completed depth:
+ * <pre>
+ * startpos|POS [moves M..]   analyzes the position, POS as written by Position.toString, after the moves
+ * cancel N                   stops request N, which then reports its deepest completed depth
+ * </pre>
+ * Output lines are "N depth D nodes X time T", with the nodes searched and milliseconds taken so far, then
+ * "N line K score S pv M..." for every ranked move, and "N done" at the end.
+ * Usage: AnalysisConsole [--lines K] [--depth D] [--movetime MS] [--nodes N] [--threads T] [--hash MB]
+ * @author Samuel White
+ */
+public class AnalysisConsole {
+    private final AnalysisService service;
+    private final int lines;
+    private final SearchLimits limits;
+    private final PrintStream out;
+    private final List<AnalysisService.Request> requests = new ArrayList<>();
+    private final List<CompletableFuture<Void>> reported = new ArrayList<>();
+
+    /**
+     * Constructs an AnalysisConsole.
+     *
+     * @param service The service running the analyses.
+     * @param lines The number of moves to rank for every position.
+     * @param limits The limits of every analysis.
+     * @param out The stream results are written to.
+     */
+    public AnalysisConsole(AnalysisService service, int lines, SearchLimits limits, PrintStream out) {
+        this.service = service;
+        this.lines = lines;
+        this.limits = limits;
+        this.out = out;
+    }
+
+    /**
+     * Runs the console on standard input and output until the end of input, then waits for every analysis.
+     *
+     * @param args The options described in the class description.
+     * @throws IOException If standard input cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int lines = 3;
+        int depth = Integer.MAX_VALUE;
+        long millis = SearchLimits.UNLIMITED;
+        long nodes = SearchLimits.UNLIMITED;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long hashMegabytes = 64;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--lines":
+                    lines = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--movetime":
+                    millis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--nodes":
+                    nodes = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--hash":
+                    hashMegabytes = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Usage: AnalysisConsole [--lines K] [--depth D] [--movetime MS] [--nodes N] [--threads T] [--hash MB]");
+                    return;
+            }
+        }
+        if (depth == Integer.MAX_VALUE && millis == SearchLimits.UNLIMITED && nodes == SearchLimits.UNLIMITED) {
+            depth = 10;
+        }
+
+        try (AnalysisService service = new AnalysisService(threads, hashMegabytes * 1024 * 1024)) {
+            AnalysisConsole console = new AnalysisConsole(service, lines, new SearchLimits(nodes, millis, depth), System.out);
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                console.handle(line);
+            }
+            console.awaitAll();
+        }
+    }
+
+    /**
+     * Handles one input line.
+     *
+     * @param line The request or cancel command.
+     */
+    public void handle(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens[0].isEmpty()) {
+            return;
+        }
+        if (tokens[0].equals("cancel")) {
+            try {
+                this.requests.get(Integer.parseInt(tokens[1]) - 1).cancel();
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                send("error usage: cancel <request number>");
+            }
+            return;
+        }
+        Position position;
+        try {
+            position = setUp(tokens);
+        } catch (IllegalArgumentException e) {
+            send("error " + e.getMessage());
+            return;
+        }
+        int id = this.requests.size() + 1;
+        AnalysisService.Request request = this.service.submit(position, this.lines, this.limits,
+                (depth, ranked, nodes, elapsed) -> report(id, depth, ranked, nodes, elapsed));
+        this.requests.add(request);
+        this.reported.add(request.getResult().handle((result, error) -> {
+            send(id + (error == null ? " done" : " error " + error.getMessage()));
+            return null;
+        }));
+    }
+
+    /**
+     * Waits until every submitted analysis has ended and been reported.
+     */
+    public void awaitAll() {
+        for (CompletableFuture<Void> done : this.reported) {
+            done.join();
+        }
+    }
+
+    /**
+     * Sets up a request line's position in a CheckersLogic game and plays its moves, checking each is legal.
+     */
+    private static Position setUp(String[] tokens) {
+        int moves = Arrays.asList(tokens).indexOf("moves");
+        Position start = tokens[0].equals("startpos") ? Position.initial() : Position.parse(tokens[0]);
+        CheckersLogic game = new CheckersLogic(start);
+        for (int i = moves + 1; moves > 0 && i < tokens.length; i++) {
+            int move = Moves.parse(tokens[i]);
+            if (move == Moves.NONE) {
+                throw new IllegalArgumentException("Malformed move: " + tokens[i]);
+            }
+            game.playMove(move);
+        }
+        return game.getSnapshot();
+    }
+
+    private void report(int id, int depth, List<AnalysisLine> ranked, long nodes, long elapsed) {
+        StringBuilder text = new StringBuilder();
+        text.append(id).append(" depth ").append(depth).append(" nodes ").append(nodes).append(" time ").append(elapsed);
+        for (int i = 0; i < ranked.size(); i++) {
+            AnalysisLine line = ranked.get(i);
+            text.append('\n').append(id).append(" line ").append(i + 1).append(" score ").append(formatScore(line.getScore())).append(" pv");
+            for (int move : line.getPrincipalVariation()) {
+                text.append(' ').append(Moves.toNotation(move));
+            }
+        }
+        send(text.toString());
+    }
+
+    private static String formatScore(int score) {
+        if (AlphaBetaStrategy.isWinScore(score)) {
+            return "win " + AlphaBetaStrategy.movesToWin(score);
+        }
+        return "cp " + score;
+    }
+
+    private synchronized void send(String text) {
+        this.out.println(text);
+        this.out.flush();
+    }
+}
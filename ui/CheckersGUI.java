@@ -1,6 +1,12 @@
 package ui;
+import core.BoardGeometry;
 import core.CheckersLogic;
 import core.Computer;
+import core.GameListener;
+import core.GameRecord;
+import core.GameReplay;
+import core.Moves;
+import core.Position;
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -8,6 +14,7 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -15,6 +22,11 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.Circle;
 import javafx.stage.Stage;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 
 
 /**
@@ -35,7 +47,14 @@ public class CheckersGUI extends Application{
     private Label warning = new Label("");
     private Label options = new Label("");
     core.Computer computer;
-    private final int BOARD_SIZE = 8;
+    private final int BOARD_SIZE = BoardGeometry.STANDARD.getSize();
+    private GridPane board;
+    private final StackPane[][] cells = new StackPane[BOARD_SIZE][BOARD_SIZE];
+    private GameReplay replay;
+    private int replayPly;
+    private Position shownPosition;
+    private Label replayStatus;
+    private Slider replaySlider;
 
     /**
      * The main method of the CheckersGUI class.
@@ -66,22 +85,28 @@ public class CheckersGUI extends Application{
     public void showOpponentChoiceScreen() {
         Button playerButton = new Button();
         Button computerButton = new Button();
+        Button replayButton = new Button();
         playerButton.setText("Player");
         computerButton.setText("Computer");
+        replayButton.setText("Replay a game");
 
         playerButton.setOnAction(e -> {
             playComputer = false;
             game = new CheckersLogic("PvP");
+            watch(game);
             showMoveScreen();
         });
 
         computerButton.setOnAction(e -> {
             playComputer = true;
             game = new CheckersLogic("PvC");
+            watch(game);
             computer = (core.Computer) game.getCurrentPlayersTurn().getOtherPlayer();
             showMoveScreen();
         });
 
+        replayButton.setOnAction(e -> showReplayLoadScreen());
+
         Label question = new Label("Choose your opponent:");
 
         GridPane root = new GridPane();
@@ -90,13 +115,14 @@ public class CheckersGUI extends Application{
         root.add(question, 0, 0);
         root.add(playerButton, 0, 1);
         root.add(computerButton, 0, 2);
+        root.add(replayButton, 0, 3);
 
         // Apply CSS styles for margin and line spacing
         question.setStyle("-fx-font-size: 16px; -fx-margin-bottom: 10px;");
         playerButton.setStyle("-fx-margin-bottom: 10px;");
         computerButton.setStyle("-fx-margin-bottom: 10px;");
 
-        transitionToScreen(root, 200, 200);
+        transitionToScreen(root, 200, 240);
 
     }
 
@@ -154,6 +180,188 @@ public class CheckersGUI extends Application{
         transitionToScreen(root, 600,600);
     }
 
+    /**
+     * Displays the end game screen for a drawn game.
+     */
+    public void showDrawScreen() {
+        GridPane board = buildBoardState();
+        Label endGame = new Label("GAME OVER");
+        Label result = new Label("The game is a draw!");
+        Button closeButton = new Button();
+        closeButton.setText("Close");
+        closeButton.setOnMouseClicked(event -> primaryStage.close());
+
+        VBox root = new VBox();
+        root.getChildren().setAll(board, endGame, result, closeButton);
+
+        transitionToScreen(root, 600,600);
+    }
+
+    /**
+     * Displays the end game screen for the result the game announced.
+     */
+    private void showResultScreen() {
+        if (winnerChar == 'd') {
+            showDrawScreen();
+        } else if (winnerChar == 'x') {
+            showEndGameScreen("Green");
+        } else {
+            showEndGameScreen("Red");
+        }
+    }
+
+    /**
+     * Displays the screen for choosing a recorded game to replay.
+     * It asks for a file of game records, see GameRecord, and the id of the game, or the first game if left empty.
+     */
+    public void showReplayLoadScreen() {
+        Label directions = new Label("Enter a file of game records and the id of the game to replay.");
+        TextField fileInput = new TextField();
+        fileInput.setPromptText("games.txt");
+        TextField idInput = new TextField();
+        idInput.setPromptText("Game id, or empty for the first game");
+        Button load = new Button();
+        load.setText("Load");
+        load.setOnMouseClicked(e -> {
+            try {
+                GameRecord record = findRecord(fileInput.getText().trim(), idInput.getText().trim());
+                replay = new GameReplay(record);
+                this.warning.setText("");
+                showReplayScreen();
+            } catch (IOException | IllegalArgumentException m) {
+                this.warning.setText(m.getMessage());
+            }
+        });
+        Button back = new Button();
+        back.setText("Back");
+        back.setOnMouseClicked(e -> {
+            this.warning.setText("");
+            showOpponentChoiceScreen();
+        });
+
+        VBox root = new VBox();
+        root.setPadding(new Insets(10));
+        root.setSpacing(10);
+        root.getChildren().setAll(directions, fileInput, idInput, load, back, warning);
+
+        transitionToScreen(root, 500, 260);
+    }
+
+    /**
+     * Finds a game in a file of game records.
+     * @param file The path of the file.
+     * @param id The id of the game, or empty for the first game.
+     * @return The game record.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the id is not a number or the game is not in the file.
+     */
+    private GameRecord findRecord(String file, String id) throws IOException, IllegalArgumentException {
+        long wanted;
+        try {
+            wanted = id.isEmpty() ? 0 : Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid game id: " + id);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                GameRecord record = GameRecord.parse(line);
+                if (id.isEmpty() || record.getId() == wanted) {
+                    return record;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Game " + id + " is not in " + file);
+    }
+
+    /**
+     * Displays the replay screen for the loaded game. The board is built once, and seeking redraws only the
+     * squares that differ between the shown position and the new one, which the replay finds from its
+     * nearest checkpoint.
+     */
+    public void showReplayScreen() {
+        game = null;
+        board = null;
+        replayPly = 0;
+        shownPosition = replay.positionAt(0);
+        GridPane board = buildBoard(shownPosition);
+
+        replayStatus = new Label("");
+        replaySlider = new Slider(0, replay.getPlyCount(), 0);
+        replaySlider.setBlockIncrement(1);
+        replaySlider.setMajorTickUnit(1);
+        replaySlider.setSnapToTicks(true);
+        replaySlider.valueProperty().addListener((observable, oldValue, newValue) -> seekReplay((int) Math.round(newValue.doubleValue())));
+
+        Button first = new Button("|<");
+        Button previous = new Button("<");
+        Button next = new Button(">");
+        Button last = new Button(">|");
+        Button close = new Button("Close");
+        first.setOnMouseClicked(e -> seekReplay(0));
+        previous.setOnMouseClicked(e -> seekReplay(replayPly - 1));
+        next.setOnMouseClicked(e -> seekReplay(replayPly + 1));
+        last.setOnMouseClicked(e -> seekReplay(replay.getPlyCount()));
+        close.setOnMouseClicked(e -> {
+            replay = null;
+            showOpponentChoiceScreen();
+        });
+        updateReplayStatus();
+
+        HBox buttons = new HBox(10, first, previous, next, last, close);
+        VBox controls = new VBox();
+        controls.setSpacing(10);
+        controls.getChildren().setAll(replayStatus, replaySlider, buttons);
+
+        BorderPane root = new BorderPane();
+        root.setCenter(board);
+        root.setBottom(controls);
+
+        transitionToScreen(root, 600, 700);
+    }
+
+    /**
+     * Shows the replayed game at another ply.
+     * @param ply The number of moves played, clamped to the game.
+     */
+    private void seekReplay(int ply) {
+        ply = Math.max(0, Math.min(replay.getPlyCount(), ply));
+        if (ply == replayPly) {
+            return;
+        }
+        Position target = replay.positionAt(ply);
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int column = (row + 1) % 2; column < BOARD_SIZE; column += 2) {
+                int square = Moves.square(row, column);
+                if (target.pieceAt(square) != shownPosition.pieceAt(square)) {
+                    drawSquare(square, target.pieceAt(square));
+                }
+            }
+        }
+        shownPosition = target;
+        replayPly = ply;
+        if ((int) Math.round(replaySlider.getValue()) != ply) {
+            replaySlider.setValue(ply);
+        }
+        updateReplayStatus();
+    }
+
+    private void updateReplayStatus() {
+        String side = shownPosition.getSideToMove() == 'x' ? "Green" : "Red";
+        String text = "Game " + replay.getRecord().getId() + ", ply " + replayPly + " of " + replay.getPlyCount();
+        if (replayPly < replay.getPlyCount()) {
+            text += ": " + side + " plays " + Moves.toNotation(replay.getMove(replayPly));
+        } else if (!shownPosition.hasMoves()) {
+            text += ": " + side + " cannot move, " + (side.equals("Green") ? "Red" : "Green") + " wins";
+        } else {
+            text += ": result " + replay.getRecord().getResult();
+        }
+        replayStatus.setText(text);
+    }
+
     /**
      * Handles the player's move and checks for game over conditions.
      * @param move The move command provided by the player.
@@ -164,16 +372,9 @@ public class CheckersGUI extends Application{
             if (this.warning.getText().length() > 0) {
                 this.warning.setText("");
             }
-            if (game.checkWin()) {
-                gameOver = true;
-                winnerChar = game.getCurrentPlayersTurn().getPlayerIcon();
-                if (winnerChar == 'x') {
-                    showEndGameScreen("Green");
-                    return;
-                } else {
-                    showEndGameScreen("Red");
-                    return;
-                }
+            if (gameOver) {
+                showResultScreen();
+                return;
             }
         } catch (IllegalArgumentException m) {
             this.warning.setText("The move command given has an incorrect format, try again.");
@@ -189,22 +390,26 @@ public class CheckersGUI extends Application{
      */
     public void swapTurn() {
         game.swapTurn();
+        if (gameOver) {
+            showResultScreen();
+            return;
+        }
 
         if (playComputer) {
             String computerCommand = computer.takeTurn();
             game.makeMove(computerCommand);
-            if (game.checkWin()) {
-                gameOver = true;
-                winnerChar = game.getCurrentPlayersTurn().getPlayerIcon();
-                if (winnerChar == 'x') {
-                    showEndGameScreen("Green");
-                    return;
-                } else {
-                    showEndGameScreen("Red");
-                    return;
-                }
+            if (game.getCurrentPlayersTurn().goAgain) {
+                game.selectDoubleOption(computer.getDoubleJumpSelection());
+            }
+            if (gameOver) {
+                showResultScreen();
+                return;
             }
             game.swapTurn();
+            if (gameOver) {
+                showResultScreen();
+                return;
+            }
         }
 
         showMoveScreen();
@@ -217,7 +422,7 @@ public class CheckersGUI extends Application{
     public void doubleJump() {
         if (game.getCurrentPlayersTurn().goAgain) {
             if (game.getCurrentPlayersTurn() instanceof core.Computer) {
-                game.selectDoubleOption(1);
+                game.selectDoubleOption(((core.Computer) game.getCurrentPlayersTurn()).getDoubleJumpSelection());
                 return;
             }
             options.setText(game.getCurrentPlayersTurn().doubleJumpOptions);
@@ -228,34 +433,20 @@ public class CheckersGUI extends Application{
 
             option1.setOnMouseClicked(event -> {
                 game.selectDoubleOption(1);
-                if (game.checkWin()) {
+                if (gameOver) {
                     options.setText("");
-                    gameOver = true;
-                    winnerChar = game.getCurrentPlayersTurn().getPlayerIcon();
-                    if (winnerChar == 'x') {
-                        showEndGameScreen("Green");
-                        return;
-                    } else {
-                        showEndGameScreen("Red");
-                        return;
-                    }
+                    showResultScreen();
+                    return;
                 }
                 swapTurn();
             });
 
             option2.setOnMouseClicked(event -> {
                 game.selectDoubleOption(2);
-                if (game.checkWin()) {
+                if (gameOver) {
                     options.setText("");
-                    gameOver = true;
-                    winnerChar = game.getCurrentPlayersTurn().getPlayerIcon();
-                    if (winnerChar == 'x') {
-                        showEndGameScreen("Green");
-                        return;
-                    } else {
-                        showEndGameScreen("Red");
-                        return;
-                    }
+                    showResultScreen();
+                    return;
                 }
                 swapTurn();
             });
@@ -277,17 +468,60 @@ public class CheckersGUI extends Application{
     }
 
     /**
-     * Builds the graphical representation of the current state of the game board.
+     * Listens to a new game, so the board is redrawn square by square as pieces move
+     * and the end of the game is recorded when the game announces it.
+     * @param game The game to listen to.
+     */
+    private void watch(CheckersLogic game) {
+        board = null;
+        gameOver = false;
+        game.addListener(new GameListener() {
+            @Override
+            public void pieceMoved(char icon, int from, int to) {
+                if (board != null) {
+                    drawSquare(from, '_');
+                    drawSquare(to, icon);
+                }
+            }
+
+            @Override
+            public void pieceCaptured(char icon, int square) {
+                if (board != null) {
+                    drawSquare(square, '_');
+                }
+            }
+
+            @Override
+            public void gameOver(char winner) {
+                gameOver = true;
+                winnerChar = winner;
+            }
+        });
+    }
+
+    /**
+     * Retrieves the graphical representation of the game board. The board is built once per game
+     * and then kept up to date by the game's events, so only the squares that changed are redrawn.
      * @return The GridPane representing the game board.
      */
     public GridPane buildBoardState() {
-        char[] horizontalIndices = {'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h'};
-        GridPane board = new GridPane();
-        char[][] boardState = game.getBoardState();
+        if (board != null) {
+            return board;
+        }
+        return buildBoard(game.getSnapshot());
+    }
+
+    /**
+     * Builds the graphical board showing a position, and keeps it as the board of the current screen.
+     * @param snapshot The position to show.
+     * @return The GridPane representing the board.
+     */
+    private GridPane buildBoard(Position snapshot) {
+        board = new GridPane();
 
         for (int i = 1; i <= BOARD_SIZE; i++) {
-            board.add(new Label(String.valueOf(horizontalIndices[i-1])), i, 0);
-            board.add(new Label(String.valueOf(9-i)), 0, i);
+            board.add(new Label(String.valueOf((char) ('a' + i - 1))), i, 0);
+            board.add(new Label(String.valueOf(BOARD_SIZE + 1 - i)), 0, i);
         }
         int color = 0;
         for (int i = 0; i < BOARD_SIZE; i++) {
@@ -300,15 +534,9 @@ public class CheckersGUI extends Application{
                 } else {
                     square.setFill(Color.WHITE);
                 }
-                if (boardState[i][j] == 'x') {
-                    Circle piece = new Circle(20, Color.GREEN);
-                    newStackPane.getChildren().addAll(square,piece);
-                } else if (boardState[i][j] == 'o') {
-                    Circle piece = new Circle(20, Color.RED);
-                    newStackPane.getChildren().addAll(square,piece);
-                } else {
-                    newStackPane.getChildren().add(square);
-                }
+                newStackPane.getChildren().add(square);
+                cells[i][j] = newStackPane;
+                drawSquare(Moves.square(i, j), snapshot.pieceAt(Moves.square(i, j)));
                 board.add(newStackPane, j+1, i+1);
                 color++;
             }
@@ -317,6 +545,21 @@ public class CheckersGUI extends Application{
         return board;
     }
 
+    /**
+     * Draws the piece on one square of the board, keeping the square itself.
+     * @param square The square, numbered as in Moves.square.
+     * @param icon The icon of the piece on the square, or '_' for none.
+     */
+    private void drawSquare(int square, char icon) {
+        StackPane cell = cells[Moves.row(square)][Moves.column(square)];
+        cell.getChildren().subList(1, cell.getChildren().size()).clear();
+        if (icon == 'x') {
+            cell.getChildren().add(new Circle(20, Color.GREEN));
+        } else if (icon == 'o') {
+            cell.getChildren().add(new Circle(20, Color.RED));
+        }
+    }
+
 
     /**
      * Transitions to a new screen with the specified root element, width, and height.
@@ -1,25 +1,85 @@
 package ui;
 import core.CheckersLogic;
+import core.GameListener;
+import core.GameRecord;
+import core.Moves;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import javafx.application.Application;
 
 
 /**
  * The CheckersTextConsole class represents a text-based UI console for the Checkers game.
+ * Started with "--batch FILE" it replays games instead of prompting, reading "-" as standard input.
+ * Every line is one game, either a GameRecord line or just its moves separated by spaces, and lines starting with
+ * '#' are skipped. Every move is checked and applied through CheckersLogic and the board after it is written,
+ * or with "--quiet" only errors and a summary are. A recorded result that differs from the replayed one counts
+ * as a failure, and the exit status is 1 if any game failed.
  * @author Samuel White
  */
 public class CheckersTextConsole {
 
+    private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+    private static final String COLUMN_LABELS = "    a   b   c   d   e   f   g   h \n\n";
+
     private boolean gameOver = false;
     public char winnerChar;
 
+    /**
+     * Records how a replayed game ended, as the game announces it.
+     */
+    private static class Outcome implements GameListener {
+        private char result = '*';
+
+        @Override
+        public void gameOver(char winner) {
+            this.result = winner;
+        }
+    }
+
     /**
      * The main method is the entry point of the CheckersTextConsole program.
      *
      * @param args The commandline arguments passed to the program.
      */
     public static void main(String[] args) {
+        String batch = null;
+        boolean quiet = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch") && i + 1 < args.length) {
+                batch = args[++i];
+            } else if (args[i].equals("--quiet")) {
+                quiet = true;
+            }
+        }
+        if (batch != null) {
+            PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_BYTES), false);
+            int failed;
+            try (BufferedReader in = batch.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), OUTPUT_BUFFER_BYTES)
+                    : Files.newBufferedReader(Paths.get(batch), StandardCharsets.UTF_8)) {
+                failed = runBatch(in, out, quiet);
+            } catch (IOException e) {
+                out.flush();
+                System.err.println("Cannot read " + batch + ": " + e.getMessage());
+                failed = 1;
+            }
+            out.flush();
+            System.exit(failed > 0 ? 1 : 0);
+        }
+
         CheckersTextConsole game = new CheckersTextConsole();
         boolean pass = false;
         boolean result = false;
@@ -39,39 +99,37 @@ public class CheckersTextConsole {
 
         if (game.playComputer()) {
             CheckersLogic rules = new CheckersLogic("PvC");
+            game.watch(rules);
             core.Computer computer = (core.Computer) rules.getCurrentPlayersTurn().getOtherPlayer();
             while (!game.gameOver) {
                 game.printBoardState(rules);
                 game.displayTurn(rules);
                 game.userMove(rules);
-                if (rules.checkWin()) {
-                    game.gameOver = true;
-                    game.winnerChar = rules.getCurrentPlayersTurn().getPlayerIcon();
-                    game.displayResults();
+                if (game.gameOver) {
                     break;
                 }
                 rules.swapTurn();
+                if (game.gameOver) {
+                    break;
+                }
                 String computerCommand = computer.takeTurn();
                 rules.makeMove(computerCommand);
-                if (rules.checkWin()) {
-                    game.gameOver = true;
-                    game.winnerChar = rules.getCurrentPlayersTurn().getPlayerIcon();
-                    game.printBoardState(rules);
-                    game.displayResults();
+                if (rules.getCurrentPlayersTurn().goAgain) {
+                    rules.selectDoubleOption(computer.getDoubleJumpSelection());
+                }
+                if (game.gameOver) {
                     break;
                 }
                 rules.swapTurn();
             }
         } else {
             CheckersLogic rules = new CheckersLogic("PvP");
+            game.watch(rules);
             while (!game.gameOver) {
                 game.printBoardState(rules);
                 game.displayTurn(rules);
                 game.userMove(rules);
-                if (rules.checkWin()) {
-                    game.gameOver = true;
-                    game.winnerChar = rules.getCurrentPlayersTurn().getPlayerIcon();
-                    game.displayResults();
+                if (game.gameOver) {
                     break;
                 }
                 rules.swapTurn();
@@ -80,6 +138,145 @@ public class CheckersTextConsole {
     }
 
 
+    /**
+     * Listens to a game, so the console shows the result as soon as the game announces its end.
+     *
+     * @param rules The CheckersLogic object representing the game rules and state.
+     */
+    public void watch(CheckersLogic rules) {
+        rules.addListener(new GameListener() {
+            @Override
+            public void gameOver(char winner) {
+                gameOver = true;
+                printBoardState(rules);
+                if (winner == 'd') {
+                    displayDraw();
+                } else {
+                    winnerChar = winner;
+                    displayResults();
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Replays every game read from a reader without prompting, see the class description.
+     * Each board is rendered into one reused StringBuilder and written with a single call.
+     *
+     * @param in The reader the games are read from.
+     * @param out The stream the boards, errors and the summary are written to.
+     * @param quiet true to write only errors and the summary.
+     * @return The number of games that failed.
+     * @throws IOException If the games cannot be read.
+     */
+    public static int runBatch(BufferedReader in, PrintStream out, boolean quiet) throws IOException {
+        StringBuilder text = new StringBuilder(1024);
+        List<String> moves = new ArrayList<>();
+        long start = System.nanoTime();
+        long games = 0;
+        long plies = 0;
+        int failed = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                continue;
+            }
+            char expected = '*';
+            moves.clear();
+            try {
+                if (line.indexOf('\t') >= 0) {
+                    GameRecord record = GameRecord.parse(line);
+                    expected = record.getResult();
+                    moves.addAll(record.getMoves());
+                } else {
+                    for (String move : trimmed.split("\\s+")) {
+                        moves.add(move);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                out.println("Line " + lineNumber + ": " + e.getMessage());
+                failed++;
+                continue;
+            }
+
+            games++;
+            CheckersLogic rules = new CheckersLogic("PvP");
+            Outcome outcome = new Outcome();
+            rules.addListener(outcome);
+            String error = null;
+            for (int ply = 0; ply < moves.size() && error == null; ply++) {
+                String notation = moves.get(ply);
+                int move = Moves.parse(notation);
+                if (outcome.result != '*') {
+                    error = "move " + (ply + 1) + " " + notation + " after the end of the game";
+                } else if (move == Moves.NONE) {
+                    error = "move " + (ply + 1) + " " + notation + " has an incorrect format";
+                } else {
+                    char player = rules.getCurrentPlayersTurn().getPlayerIcon();
+                    try {
+                        rules.playMove(move);
+                        plies++;
+                    } catch (IllegalArgumentException e) {
+                        error = "move " + (ply + 1) + " " + notation + " is illegal for player " + player;
+                    }
+                    if (error == null && !quiet) {
+                        text.setLength(0);
+                        text.append("Game ").append(games).append(", move ").append(ply + 1).append(": player ")
+                                .append(player).append(' ').append(notation).append('\n');
+                        renderBoard(text, rules.getBoardState());
+                        out.append(text);
+                    }
+                }
+            }
+            if (error == null && expected != '*' && expected != outcome.result) {
+                error = "recorded result " + expected + " but the replay ended with " + outcome.result;
+            }
+
+            text.setLength(0);
+            if (error != null) {
+                failed++;
+                text.append("Line ").append(lineNumber).append(": ").append(error).append('\n');
+            } else if (!quiet) {
+                if (outcome.result == 'd') {
+                    text.append("The game is a draw!\n\n");
+                } else if (outcome.result != '*') {
+                    text.append("Player ").append(outcome.result).append(" Wins!\n\n");
+                } else {
+                    text.append("The game is unfinished.\n\n");
+                }
+            }
+            out.append(text);
+        }
+
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        out.printf("Replayed %d games, %d moves in %.3f s (%.0f games/sec, %.0f moves/sec), %d failed%n",
+                games, plies, seconds, games / seconds, plies / seconds, failed);
+        return failed;
+    }
+
+    /**
+     * Appends the board in the layout of printBoardState.
+     *
+     * @param text The builder the board is appended to.
+     * @param boardState The game board.
+     */
+    public static void renderBoard(StringBuilder text, char[][] boardState) {
+        text.append('\n');
+        for (int i = 0; i < boardState.length; i++) {
+            text.append(8 - i).append(" |");
+            for (int n = 0; n < boardState[0].length; n++) {
+                text.append(' ').append(boardState[i][n]).append(" |");
+            }
+            text.append('\n');
+        }
+        text.append(COLUMN_LABELS);
+    }
+
+
     /**
 
      Prompts the user to choose between playing with Console or GUI.
@@ -128,16 +325,9 @@ public class CheckersTextConsole {
      * @param rules The CheckersLogic object representing the game rules and state.
      */
     public void printBoardState(CheckersLogic rules) {
-        char[][] boardState = rules.getBoardState();
-        System.out.print("\n");
-        for (int i = 0; i < boardState.length; i++) {
-            System.out.print(8 - i + " |");
-            for (int n = 0; n < boardState[0].length; n++) {
-                System.out.print(" " + boardState[i][n] + " |");
-            }
-            System.out.print("\n");
-        }
-        System.out.print("    a   b   c   d   e   f   g   h \n\n");
+        StringBuilder text = new StringBuilder(256);
+        renderBoard(text, rules.getBoardState());
+        System.out.print(text);
     }
 
     /**
@@ -174,7 +364,7 @@ public class CheckersTextConsole {
             while (!pass2) {
                 if (rules.getCurrentPlayersTurn().goAgain) {
                     if (rules.getCurrentPlayersTurn() instanceof core.Computer) {
-                        rules.selectDoubleOption(1);
+                        rules.selectDoubleOption(((core.Computer) rules.getCurrentPlayersTurn()).getDoubleJumpSelection());
                         return;
                     }
                     System.out.println("There are double jump options, please select one by typing it's respective number. i.e. 1");
@@ -199,4 +389,11 @@ public class CheckersTextConsole {
     public void displayResults() {
         System.out.print("Player " + winnerChar + " Wins!");
     }
+
+    /**
+     * Displays that the game ended in a draw.
+     */
+    public void displayDraw() {
+        System.out.print("The game is a draw!");
+    }
 }
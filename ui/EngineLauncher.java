@@ -0,0 +1,177 @@
+package ui;
+import core.AlphaBetaStrategy;
+import core.CheckersLogic;
+import core.Computer;
+import core.Position;
+import core.SearchBudget;
+import core.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * The EngineLauncher class starts the engine for short-lived worker processes. It is headless and, like
+ * EngineProtocol, only loads the core package and never the JavaFX classes, and it does not prompt.
+ * Given commands as arguments, it runs them as EngineProtocol commands in order, waiting for every search to
+ * finish before the next command, and exits; without commands it runs the protocol on standard input.
+ * Options:
+ * <pre>
+ * --warmup N   before the first command, plays N short games and searches to warm up the engine's hot paths,
+ *              which delays the first move but speeds up the searches of a worker that makes many
+ * --timing     writes the milliseconds from process start to the first command and to the first best move
+ *              to standard error
+ * --train      plays through what a worker does once and exits, for a class data sharing training run
+ * </pre>
+ * A worker starts faster from an application class data sharing archive, which holds the classes the training
+ * run loaded already parsed and verified. tools/build-cds-archive.sh builds the launcher, creates the archive
+ * and measures the difference; by hand:
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=engine.jsa -cp engine.jar ui.EngineLauncher --train
+ * java -XX:SharedArchiveFile=engine.jsa -cp engine.jar ui.EngineLauncher "position startpos" "go nodes 2000"
+ * </pre>
+ * Usage: EngineLauncher [--warmup N] [--timing] [--train] [command..]
+ * @author Samuel White
+ */
+public class EngineLauncher {
+    private static final long WARMUP_SEED = 7L;
+    private static final SearchLimits WARMUP_LIMITS = SearchLimits.nodes(2000);
+
+    /**
+     * Launches the engine.
+     *
+     * @param args The options and commands described in the class description.
+     * @throws IOException If standard input cannot be read.
+     * @throws InterruptedException If the launcher is interrupted while waiting for a search.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int warmup = 0;
+        boolean timing = false;
+        boolean train = false;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            switch (args[first]) {
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++first]);
+                    break;
+                case "--timing":
+                    timing = true;
+                    break;
+                case "--train":
+                    train = true;
+                    break;
+                default:
+                    System.err.println("Usage: EngineLauncher [--warmup N] [--timing] [--train] [command..]");
+                    System.exit(1);
+            }
+            first++;
+        }
+
+        if (train) {
+            train();
+            return;
+        }
+        warmUp(warmup);
+        if (timing) {
+            System.err.println("info string ready ms " + millisSinceStart());
+        }
+        EngineProtocol engine = new EngineProtocol(System.out);
+        if (first == args.length) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!engine.handle(line)) {
+                    break;
+                }
+            }
+            engine.handle("stop");
+            return;
+        }
+        boolean moved = false;
+        for (int i = first; i < args.length; i++) {
+            boolean go = args[i].trim().startsWith("go");
+            if (!engine.handle(args[i])) {
+                break;
+            }
+            engine.awaitSearch();
+            if (go && timing && !moved) {
+                System.err.println("info string first move ms " + millisSinceStart());
+                moved = true;
+            }
+        }
+    }
+
+    /**
+     * Plays short games and searches, so the engine's hot paths are compiled before the first real command.
+     *
+     * @param games The number of games to play.
+     */
+    static void warmUp(int games) {
+        Random random = new Random(WARMUP_SEED);
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+        for (int game = 0; game < games; game++) {
+            playGame(strategy, random);
+            Position position = Position.initial();
+            int[] moves = new int[Position.MAX_MOVES];
+            for (int count = position.generateMoves(moves); count > 0; count = position.generateMoves(moves)) {
+                strategy.selectMove(position, new SearchBudget(WARMUP_LIMITS));
+                position = position.play(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    /**
+     * Plays through what a worker does once, to load every class it needs: a game through CheckersLogic and
+     * Computer, and the protocol commands of an engine match, with the replies discarded.
+     */
+    static void train() throws InterruptedException {
+        warmUp(1);
+        EngineProtocol engine = new EngineProtocol(new PrintStream(OutputStream.nullOutputStream()));
+        String[] commands = {
+            "uci", "isready", "ucinewgame", "position startpos moves 3a-4b 6b-5a", "go depth 4",
+            "position fen " + Position.initial() + " moves 3c-4d", "go nodes 2000 xtime 1000 otime 1000", "quit"
+        };
+        for (String command : commands) {
+            engine.handle(command);
+            engine.awaitSearch();
+        }
+    }
+
+    private static void playGame(AlphaBetaStrategy strategy, Random random) {
+        CheckersLogic game = new CheckersLogic("PvP");
+        Computer x = new Computer('x', game, strategy, WARMUP_LIMITS);
+        Computer o = new Computer('o', game, strategy, WARMUP_LIMITS);
+        // a random first move so the warm-up games differ
+        int[] moves = game.getLegalMoves(game.getCurrentPlayersTurn());
+        game.playMove(moves[random.nextInt(moves.length)]);
+        while (true) {
+            Computer computer = game.getCurrentPlayersTurn().getPlayerIcon() == 'x' ? x : o;
+            String move = computer.takeTurn();
+            if (move == null) {
+                return;
+            }
+            game.makeMove(move);
+            if (game.getCurrentPlayersTurn().goAgain) {
+                game.selectDoubleOption(computer.getDoubleJumpSelection());
+            }
+            if (game.checkWin()) {
+                return;
+            }
+            game.swapTurn();
+            if (game.checkDraw()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the time since the JVM started. The management classes are only loaded when timing is wanted.
+     */
+    private static long millisSinceStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
@@ -0,0 +1,318 @@
+package ui;
+import core.AlphaBetaStrategy;
+import core.EvaluationWeights;
+import core.MaterialEvaluator;
+import core.Moves;
+import core.NeuralEvaluator;
+import core.Position;
+import core.SearchBudget;
+import core.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The EngineProtocol class runs the engine headless, reading commands from standard input and writing replies
+ * to standard output, so tournament managers can play it against other engines. It only uses the core package
+ * and never loads the JavaFX classes, so it starts quickly.
+ * The commands follow the UCI conventions, with 'x' and 'o' in place of white and black:
+ * <pre>
+ * uci                                   replies with the engine id and "uciok"
+ * isready                               replies "readyok"
+ * ucinewgame                            forgets the current game
+ * setoption name Weights value FILE     evaluates with tuned MaterialEvaluator weights
+ * setoption name Network value FILE     evaluates with a NeuralEvaluator weight file
+ * position startpos|fen POS [moves M..] sets up a position, POS as written by Position.toString
+ * go [depth D] [nodes N] [movetime MS] [xtime MS] [otime MS] [xinc MS] [oinc MS] [movestogo N] [infinite]
+ * stop                                  ends the search and replies with the best move
+ * quit                                  exits
+ * </pre>
+ * While searching, an "info" line is written for every completed depth, and "bestmove" when the search ends.
+ * Moves are written in the notation of Moves.toNotation, e.g. "6b-5a" or "6b-4d-2f".
+ * @author Samuel White
+ */
+public class EngineProtocol {
+    private static final String NAME = "CheckersGame";
+    private static final String AUTHOR = "Samuel White";
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final long MOVE_OVERHEAD_MILLIS = 20;
+
+    private final PrintStream out;
+    private AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+    private Position position = Position.initial();
+    private Thread searchThread;
+    private SearchBudget budget;
+    private CountDownLatch stopSignal;
+
+    /**
+     * Constructs an EngineProtocol writing to the given stream.
+     *
+     * @param out The stream replies are written to.
+     */
+    public EngineProtocol(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Runs the protocol on standard input and output until "quit" or the end of input.
+     *
+     * @param args The command line arguments, which are ignored.
+     * @throws IOException If standard input cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        EngineProtocol engine = new EngineProtocol(System.out);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!engine.handle(line)) {
+                break;
+            }
+        }
+        engine.stopSearch();
+    }
+
+    /**
+     * Handles one command line.
+     *
+     * @param line The command.
+     * @return false if the command was "quit", true otherwise.
+     */
+    public boolean handle(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Weights type string default <standard>");
+                send("option name Network type string default <none>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "ucinewgame":
+                stopSearch();
+                this.position = Position.initial();
+                break;
+            case "setoption":
+                stopSearch();
+                setOption(tokens);
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "quit":
+                return false;
+            case "":
+                break;
+            default:
+                send("info string unknown command " + tokens[0]);
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        int value = indexOf(tokens, "value");
+        if (tokens.length < 5 || !tokens[1].equals("name") || value < 0 || value + 1 >= tokens.length) {
+            send("info string usage: setoption name <name> value <file>");
+            return;
+        }
+        String file = String.join(" ", Arrays.copyOfRange(tokens, value + 1, tokens.length));
+        try {
+            if (tokens[2].equalsIgnoreCase("Weights")) {
+                this.strategy = new AlphaBetaStrategy(new MaterialEvaluator(EvaluationWeights.load(Paths.get(file))));
+            } else if (tokens[2].equalsIgnoreCase("Network")) {
+                this.strategy = new AlphaBetaStrategy(NeuralEvaluator.load(Paths.get(file)));
+            } else {
+                send("info string unknown option " + tokens[2]);
+            }
+        } catch (IOException e) {
+            send("info string " + e.getMessage());
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int moves = indexOf(tokens, "moves");
+        Position next;
+        try {
+            if (tokens.length > 1 && tokens[1].equals("startpos")) {
+                next = Position.initial();
+            } else if (tokens.length > 2 && tokens[1].equals("fen")) {
+                next = Position.parse(tokens[2]);
+            } else {
+                send("info string usage: position startpos|fen <position> [moves ...]");
+                return;
+            }
+            for (int i = moves + 1; moves > 0 && i < tokens.length; i++) {
+                next = next.play(resolve(next, tokens[i]));
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+        this.position = next;
+    }
+
+    /**
+     * Finds the legal move a notation refers to, as Moves.resolve does.
+     */
+    private static int resolve(Position position, String notation) {
+        int move = Moves.parse(notation);
+        if (move == Moves.NONE) {
+            throw new IllegalArgumentException("Malformed move: " + notation);
+        }
+        int[] legal = new int[Position.MAX_MOVES];
+        return Moves.resolve(legal, position.generateMoves(legal), move);
+    }
+
+    private void go(String[] tokens) {
+        long nodes = SearchLimits.UNLIMITED;
+        long millis = SearchLimits.UNLIMITED;
+        int depth = Integer.MAX_VALUE;
+        long[] time = {-1, -1};
+        long[] increment = {0, 0};
+        long movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean infinite = false;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    case "depth":
+                        depth = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "movetime":
+                        millis = Long.parseLong(tokens[++i]);
+                        break;
+                    case "xtime":
+                        time[0] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "otime":
+                        time[1] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "xinc":
+                        increment[0] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "oinc":
+                        increment[1] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "movestogo":
+                        movesToGo = Math.max(1, Long.parseLong(tokens[++i]));
+                        break;
+                    default:
+                        send("info string unknown go parameter " + tokens[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            send("info string malformed go command");
+            return;
+        }
+        int side = this.position.getSideToMove() == 'x' ? 0 : 1;
+        if (!infinite && millis == SearchLimits.UNLIMITED && time[side] >= 0) {
+            long allotted = time[side] / movesToGo + increment[side] / 2;
+            millis = Math.max(1, Math.min(allotted, time[side] - MOVE_OVERHEAD_MILLIS));
+        }
+
+        SearchBudget budget = new SearchBudget(new SearchLimits(nodes, millis, depth));
+        boolean waitForStop = infinite;
+        Position root = this.position;
+        AlphaBetaStrategy searcher = this.strategy;
+        CountDownLatch stopSignal = new CountDownLatch(1);
+        this.budget = budget;
+        this.stopSignal = stopSignal;
+        searcher.setListener((iterationDepth, score, searched, elapsed, line) -> {
+            StringBuilder info = new StringBuilder("info depth ").append(iterationDepth)
+                    .append(" score ").append(formatScore(score))
+                    .append(" nodes ").append(searched)
+                    .append(" nps ").append(searched * 1000 / Math.max(1, elapsed))
+                    .append(" time ").append(elapsed)
+                    .append(" pv");
+            for (int move : line) {
+                info.append(' ').append(Moves.toNotation(move));
+            }
+            send(info.toString());
+        });
+        this.searchThread = new Thread(() -> {
+            int move = searcher.selectMove(root, budget);
+            if (waitForStop) {
+                try {
+                    stopSignal.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            send("bestmove " + (move == Moves.NONE ? "none" : Moves.toNotation(move)));
+        }, "search");
+        this.searchThread.setDaemon(true);
+        this.searchThread.start();
+    }
+
+    /**
+     * Waits for a running search to end by itself and write its best move. A search started with "go infinite"
+     * only ends when stopped, so this must not be called while one is running.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void awaitSearch() throws InterruptedException {
+        if (this.searchThread == null) {
+            return;
+        }
+        this.searchThread.join();
+        this.searchThread = null;
+    }
+
+    /**
+     * Stops a running search and waits for it to write its best move.
+     */
+    private void stopSearch() {
+        if (this.searchThread == null) {
+            return;
+        }
+        this.budget.stop();
+        this.stopSignal.countDown();
+        try {
+            this.searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.searchThread = null;
+    }
+
+    private static String formatScore(int score) {
+        if (AlphaBetaStrategy.isWinScore(score)) {
+            return "mate " + AlphaBetaStrategy.movesToWin(score);
+        }
+        return "cp " + score;
+    }
+
+    private static int indexOf(String[] tokens, String token) {
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].equals(token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized void send(String line) {
+        this.out.println(line);
+        this.out.flush();
+    }
+}